@@ -0,0 +1,104 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.airport.AirportDatabaseKdTree;
+import com.crossover.trial.weather.airport.AirportDatabaseMemory;
+import com.crossover.trial.weather.common.RandomDataFactory;
+import com.crossover.trial.weather.data.AirportData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark for airport database implementations, runs in-process without the server.
+ * Each implementation is loaded with the same random airports and then queried with the same random requests:
+ * with radius distribution of the performance profiler client and with small radius only.
+ */
+public class AirportDatabaseProfiler
+{
+	/* Database sizes to compare implementations at */
+	private static final int[] NUMBERS_OF_AIRPORTS = {1000, 10000, 100000};
+	/* Number of radius requests for each measurement */
+	private static final int QUERIES_NUMBER = 1000;
+	/* Number of rounds before measurement, lets JIT compile the search */
+	private static final int WARMUP_ROUNDS = 1;
+
+	private final List<AirportData> airports;
+	private final List<AirportData> centers;
+	private final double[] randomRadius;
+	private final double[] smallRadius;
+
+	public AirportDatabaseProfiler(int numberOfAirports)
+	{
+		Random random = new Random(numberOfAirports);
+		airports = new ArrayList<>(numberOfAirports);
+		for (int i = 0; i < numberOfAirports; i++)
+		{
+			/* Random iata codes would collide on large sizes, so only coordinates are random */
+			AirportData airportData = RandomDataFactory.createRandomAirportData();
+			airports.add(new AirportData("A" + i, airportData.getLatitude(), airportData.getLongitude()));
+		}
+
+		centers = new ArrayList<>(QUERIES_NUMBER);
+		randomRadius = new double[QUERIES_NUMBER];
+		smallRadius = new double[QUERIES_NUMBER];
+		for (int i = 0; i < QUERIES_NUMBER; i++)
+		{
+			centers.add(airports.get(random.nextInt(numberOfAirports)));
+			randomRadius[i] = RandomDataFactory.createRandomDistance();
+			smallRadius[i] = RandomDataFactory.createRandomDistance() / 100;
+		}
+	}
+
+	/**
+	 * Measure and report performance of particular implementation
+	 *
+	 * @param name     implementation name for the report
+	 * @param supplier creates empty database
+	 */
+	public void profile(String name, Supplier<AirportDatabase> supplier)
+	{
+		AirportDatabase airportDatabase = null;
+		long loadTime = 0, randomRadiusTime = 0, smallRadiusTime = 0;
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			long start = System.nanoTime();
+			airportDatabase = supplier.get();
+			for (AirportData airportData : airports)
+				airportDatabase.addAirport(airportData);
+			loadTime = System.nanoTime() - start;
+
+			randomRadiusTime = query(airportDatabase, randomRadius);
+			smallRadiusTime = query(airportDatabase, smallRadius);
+		}
+
+		System.out.println(String.format("%-8s %7d airports: load %8.2f ms, random radius %8.3f ms/query, small radius %8.3f ms/query",
+				name, airports.size(), loadTime / 1e6, randomRadiusTime / 1e6 / QUERIES_NUMBER, smallRadiusTime / 1e6 / QUERIES_NUMBER));
+	}
+
+	private long query(AirportDatabase airportDatabase, double[] radius)
+	{
+		long start = System.nanoTime();
+		long found = 0;
+		for (int i = 0; i < QUERIES_NUMBER; i++)
+			found += airportDatabase.getAirportsAround(centers.get(i), radius[i]).size();
+		long time = System.nanoTime() - start;
+
+		/* Use result, so the search is not optimized away */
+		if (found < 0)
+			throw new IllegalStateException();
+		return time;
+	}
+
+	public static void main(String[] args)
+	{
+		for (int numberOfAirports : NUMBERS_OF_AIRPORTS)
+		{
+			AirportDatabaseProfiler profiler = new AirportDatabaseProfiler(numberOfAirports);
+			profiler.profile("memory", AirportDatabaseMemory::new);
+			profiler.profile("kdtree", AirportDatabaseKdTree::new);
+		}
+	}
+}
@@ -53,50 +53,58 @@ public class AirportLoader
 
 		BufferedReader reader = new BufferedReader(new InputStreamReader(airportDataStream));
 		csvReader = new CSVReader(reader);
-		while ((fields = csvReader.readNext()) != null)
+		/* Server rebuilds its search structures once, not for every airport */
+		collectClientHelper.airportsBulkBegin();
+		try
 		{
-			recordNumber++;
-			iata = fields[IATA_COLUMN_NUMBER - 1];
-
-			/* Check for correct IATA */
-			if (iata.length() != 3)
+			while ((fields = csvReader.readNext()) != null)
 			{
-				System.out.println("Warning. IATA length is not three characters: '" + iata + "', line #" + recordNumber + (SKIP_INCORRECT_IATA ? " - skipped" : ""));
-				if (SKIP_INCORRECT_IATA)
+				recordNumber++;
+				iata = fields[IATA_COLUMN_NUMBER - 1];
+
+				/* Check for correct IATA */
+				if (iata.length() != 3)
 				{
-					recordsSkipped++;
-					continue;
+					System.out.println("Warning. IATA length is not three characters: '" + iata + "', line #" + recordNumber + (SKIP_INCORRECT_IATA ? " - skipped" : ""));
+					if (SKIP_INCORRECT_IATA)
+					{
+						recordsSkipped++;
+						continue;
+					}
 				}
-			}
 
-			/* Check for duplicates */
-			if (iataSet.contains(iata))
-			{
-				System.out.println("Warning. Duplicate IATA: '" + iata + "', line #" + recordNumber + (SKIP_INCORRECT_IATA ? " - skipped" : ""));
-				if (SKIP_INCORRECT_IATA)
+				/* Check for duplicates */
+				if (iataSet.contains(iata))
 				{
-					recordsSkipped++;
-					continue;
+					System.out.println("Warning. Duplicate IATA: '" + iata + "', line #" + recordNumber + (SKIP_INCORRECT_IATA ? " - skipped" : ""));
+					if (SKIP_INCORRECT_IATA)
+					{
+						recordsSkipped++;
+						continue;
+					}
 				}
-			}
-			else
-				iataSet.add(iata);
+				else
+					iataSet.add(iata);
 
-			try
-			{
-				latitude = Calculations.parseDouble(fields[LATITUDE_COLUMN_NUMBER - 1]);
-				longitude = Calculations.parseDouble(fields[LONGITUDE_COLUMN_NUMBER - 1]);
-				collectClientHelper.airportPost(iata, latitude, longitude);
-				recordsImported++;
-			} catch (ParseException e)
-			{
-				System.out.println("Warning. Number format exception, line #" + recordNumber + ": " + e.getMessage() + " - skipped");
-				recordsSkipped++;
-			} catch (BadRequestException e)
-			{
-				System.out.println("Warning. Server rejected line #" + recordNumber + ": " + e.getMessage() + " - skipped");
-				recordsSkipped++;
+				try
+				{
+					latitude = Calculations.parseDouble(fields[LATITUDE_COLUMN_NUMBER - 1]);
+					longitude = Calculations.parseDouble(fields[LONGITUDE_COLUMN_NUMBER - 1]);
+					collectClientHelper.airportPost(iata, latitude, longitude);
+					recordsImported++;
+				} catch (ParseException e)
+				{
+					System.out.println("Warning. Number format exception, line #" + recordNumber + ": " + e.getMessage() + " - skipped");
+					recordsSkipped++;
+				} catch (BadRequestException e)
+				{
+					System.out.println("Warning. Server rejected line #" + recordNumber + ": " + e.getMessage() + " - skipped");
+					recordsSkipped++;
+				}
 			}
+		} finally
+		{
+			collectClientHelper.airportsBulkEnd();
 		}
 		System.out.println("\nNumber of records imported: " + recordsImported);
 		System.out.println("Number of records skipped: " + recordsSkipped);
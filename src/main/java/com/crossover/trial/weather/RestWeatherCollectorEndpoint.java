@@ -1,18 +1,36 @@
 package com.crossover.trial.weather;
 
 import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationCoalescing;
 import com.crossover.trial.weather.airport.AirportDatabase;
 import com.crossover.trial.weather.common.AirportNotFoundException;
 import com.crossover.trial.weather.common.Calculations;
 import com.crossover.trial.weather.common.WeatherException;
 import com.crossover.trial.weather.data.*;
+import com.crossover.trial.weather.history.WeatherHistory;
+import com.crossover.trial.weather.ingest.IngestPipeline;
 import com.crossover.trial.weather.performance.PerformanceMonitor;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jvnet.hk2.annotations.Optional;
 
 import javax.inject.Inject;
 import javax.ws.rs.Path;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -27,6 +45,14 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint
 {
 	public final static Logger LOGGER = Logger.getLogger(RestWeatherCollectorEndpoint.class.getName());
 
+	/* Seconds to wait before retrying the update refused for the full queue */
+	private static final String RETRY_AFTER = "1";
+
+	private static final String QUEUE_FULL = "Weather update queue is full";
+
+	/* How long the stream waits for the space in the queue before it is stopped, ms */
+	private static final long STREAM_OFFER_TIMEOUT = 1000;
+
 	@Inject
 	/* Gson object for serialization and deserialization of basic project data types, configured for such operations */
 	private Gson gson;
@@ -39,10 +65,24 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint
 	/* Atmospheric information provider */
 	private AirportAtmosphericInformation airportAtmosphericInformation;
 
+	@Inject
+	/* History of the collected data points */
+	private WeatherHistory weatherHistory;
+
 	@Inject
 	/* Performance logging and monitoring system */
 	private PerformanceMonitor performanceMonitor;
 
+	@Inject
+	@Optional
+	/* Asynchronous application of the single weather updates, null if they are applied by the request thread */
+	private IngestPipeline ingestPipeline;
+
+	@Inject
+	@Optional
+	/* Atmospheric information provider as the coalescing storage, null if updates are not coalesced */
+	private AirportAtmosphericInformationCoalescing coalescingAtmosphericInformation;
+
 	@Override
 	public Response ping()
 	{
@@ -56,16 +96,155 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint
 	{
 		try
 		{
-			addDataPoint(iataCode, pointType, gson.fromJson(datapointJson, DataPoint.class));
+			if (ingestPipeline == null)
+			{
+				addDataPoint(iataCode, pointType, gson.fromJson(datapointJson, DataPoint.class));
+				return Response.ok().build();
+			}
+
+			DataPoint dp = gson.fromJson(datapointJson, DataPoint.class);
+			AirportData airportData = getAirportData(iataCode);
+			if (!ingestPipeline.offer(airportData, getDataPointType(pointType, dp), dp))
+				return Response.status(Response.Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, RETRY_AFTER)
+						.entity(QUEUE_FULL).build();
+			return Response.accepted().build();
 		} catch (WeatherException e)
 		{
 			LOGGER.warning(e.getMessage());
 			return e.createResponse();
 		}
-		return Response.ok().build();
 	}
 
 
+	@Override
+	public Response updateWeatherBatch(String recordsJson)
+	{
+		WeatherRecord[] records;
+		try
+		{
+			records = gson.fromJson(recordsJson, WeatherRecord[].class);
+		} catch (JsonParseException e)
+		{
+			WeatherException exception = new WeatherException("Malformed weather records: " + e.getMessage(), Response.Status.BAD_REQUEST);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+		if (records == null)
+			records = new WeatherRecord[0];
+
+		/* Valid records are grouped by airport, the last data point of every type is stored */
+		List<WeatherRecordStatus> statuses = new ArrayList<>(records.length);
+		Map<AirportData, AtmosphericInformationSnapshot> updates = new LinkedHashMap<>();
+		List<AirportData> airports = new ArrayList<>(records.length);
+		List<DataPointType> types = new ArrayList<>(records.length);
+		for (WeatherRecord record : records)
+		{
+			try
+			{
+				if (record == null || record.getIata() == null || record.getDataPoint() == null)
+					throw new WeatherException("Weather record is incomplete: " + record, Response.Status.BAD_REQUEST);
+
+				AirportData airportData = airportDatabase.getAirportData(record.getIata());
+				if (airportData == null)
+					throw new AirportNotFoundException(record.getIata());
+				DataPointType type = getDataPointType(record.getPointType(), record.getDataPoint());
+
+				updates.put(airportData, updates.getOrDefault(airportData, AtmosphericInformationSnapshot.EMPTY).with(type, record.getDataPoint()));
+				airports.add(airportData);
+				types.add(type);
+				statuses.add(WeatherRecordStatus.OK);
+			} catch (WeatherException e)
+			{
+				LOGGER.warning(e.getMessage());
+				airports.add(null);
+				types.add(null);
+				statuses.add(new WeatherRecordStatus(e.getStatus().getStatusCode(), e.getMessage()));
+			}
+		}
+
+		if (ingestPipeline != null)
+			return queueRecords(records, airports, types, statuses);
+
+		/* Airport removed since the lookup fails its records only, the other airports are updated */
+		Set<AirportData> removed = new HashSet<>();
+		updates.forEach((airportData, snapshot) ->
+		{
+			try
+			{
+				airportAtmosphericInformation.updateDataPoints(airportData, snapshot);
+			} catch (IllegalArgumentException e)
+			{
+				removed.add(airportData);
+			}
+		});
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < records.length; i++)
+		{
+			AirportData airportData = airports.get(i);
+			if (airportData == null)
+				continue;
+
+			if (!removed.contains(airportData))
+			{
+				try
+				{
+					weatherHistory.addDataPoint(airportData, types.get(i), records[i].getDataPoint(), time);
+					continue;
+				} catch (IllegalArgumentException e)
+				{
+					removed.add(airportData);
+				}
+			}
+			WeatherException exception = new AirportNotFoundException(airportData.getIata());
+			LOGGER.warning(exception.getMessage());
+			statuses.set(i, new WeatherRecordStatus(exception.getStatus().getStatusCode(), exception.getMessage()));
+		}
+		return Response.ok(statuses).build();
+	}
+
+	/* Request thread applies or queues every record before reading the next one, so a slow update leaves unread
+	   records in the connection and the sender waits for it */
+	@Override
+	public Response updateWeatherStream(InputStream records)
+	{
+		IngestSummary summary = new IngestSummary();
+		String failure = null;
+		try
+		{
+			JsonReader reader = new JsonReader(new InputStreamReader(records, StandardCharsets.UTF_8));
+			reader.setLenient(true);
+			while (reader.peek() != JsonToken.END_DOCUMENT)
+			{
+				WeatherRecord record = gson.fromJson(reader, WeatherRecord.class);
+				summary.receive();
+				if (!applyRecord(record, summary))
+				{
+					/* Sender resumes from the refused record, so the later ones are not read */
+					failure = "Weather stream stopped at record " + summary.getReceived() + ": " + QUEUE_FULL;
+					LOGGER.warning(failure);
+					summary.finish(failure);
+					return Response.status(Response.Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, RETRY_AFTER)
+							.entity(summary).build();
+				}
+			}
+		} catch (JsonParseException | IOException e)
+		{
+			failure = "Malformed weather stream after record " + summary.getReceived() + ": " + e.getMessage();
+			LOGGER.warning(failure);
+		}
+
+		summary.finish(failure);
+		return Response.status(failure == null ? Response.Status.OK : Response.Status.BAD_REQUEST).entity(summary).build();
+	}
+
+	@Override
+	public Response getMetrics()
+	{
+		return Response.ok(new CollectMetrics(ingestPipeline != null, ingestPipeline == null ? new int[0] : ingestPipeline.getQueueDepths(),
+				coalescingAtmosphericInformation == null ? 0 : coalescingAtmosphericInformation.getCoalesced(),
+				coalescingAtmosphericInformation == null ? 0 : coalescingAtmosphericInformation.getCommitted())).build();
+	}
+
 	@Override
 	public Response getAirports()
 	{
@@ -119,10 +298,25 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint
 
 		performanceMonitor.clearPerformanceLog(airport);
 		airportAtmosphericInformation.clearAtmosphericInformation(airport);
+		weatherHistory.clearHistory(airport);
 		airportDatabase.removeAirport(airport);
 		return Response.ok().build();
 	}
 
+	@Override
+	public Response beginBulkLoad()
+	{
+		airportDatabase.beginBulkLoad();
+		return Response.ok().build();
+	}
+
+	@Override
+	public Response endBulkLoad()
+	{
+		airportDatabase.endBulkLoad();
+		return Response.ok().build();
+	}
+
 	@Override
 	public Response exit()
 	{
@@ -143,25 +337,130 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint
 	 * @throws WeatherException if the update can not be completed
 	 */
 	private void addDataPoint(String iataCode, String pointType, DataPoint dp) throws WeatherException
+	{
+		AirportData airportData = getAirportData(iataCode);
+		DataPointType type = getDataPointType(pointType, dp);
+		try
+		{
+			airportAtmosphericInformation.updateDataPoint(airportData, type, dp);
+			weatherHistory.addDataPoint(airportData, type, dp, System.currentTimeMillis());
+		} catch (IllegalArgumentException e)
+		{
+			/* Airport was removed since the lookup */
+			throw new AirportNotFoundException(iataCode);
+		}
+	}
+
+	/**
+	 * Queue valid records of the batch to the pipeline in their order. Once a record of the airport is refused, the
+	 * later records of this airport are refused too, so the retried ones are never applied after them.
+	 *
+	 * @param records  records of the batch
+	 * @param airports airports of the valid records, null for the invalid ones
+	 * @param types    data point types of the valid records
+	 * @param statuses statuses of the records, replaced for the valid ones
+	 * @return HTTP Response code and a json list of statuses
+	 */
+	private Response queueRecords(WeatherRecord[] records, List<AirportData> airports, List<DataPointType> types, List<WeatherRecordStatus> statuses)
+	{
+		Set<AirportData> refused = new HashSet<>();
+		for (int i = 0; i < records.length; i++)
+		{
+			AirportData airportData = airports.get(i);
+			if (airportData == null)
+				continue;
+
+			if (!refused.contains(airportData) && ingestPipeline.offer(airportData, types.get(i), records[i].getDataPoint()))
+			{
+				statuses.set(i, WeatherRecordStatus.ACCEPTED);
+				continue;
+			}
+			refused.add(airportData);
+			statuses.set(i, new WeatherRecordStatus(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), QUEUE_FULL));
+		}
+
+		Response.ResponseBuilder response = Response.accepted(statuses);
+		if (!refused.isEmpty())
+			response.header(HttpHeaders.RETRY_AFTER, RETRY_AFTER);
+		return response.build();
+	}
+
+	/**
+	 * Apply a record of the stream, or queue it to the pipeline if it is used, an invalid one is skipped
+	 *
+	 * @param record  record parsed from the stream, null for the json null
+	 * @param summary counts of applied and skipped records
+	 * @return false if the record is refused, as the queue is full
+	 */
+	private boolean applyRecord(WeatherRecord record, IngestSummary summary)
+	{
+		try
+		{
+			if (record == null || record.getIata() == null || record.getDataPoint() == null)
+				throw new WeatherException("Weather record is incomplete: " + record, Response.Status.BAD_REQUEST);
+
+			if (ingestPipeline == null)
+				addDataPoint(record.getIata(), record.getPointType(), record.getDataPoint());
+			else if (!queueDataPoint(record.getIata(), record.getPointType(), record.getDataPoint()))
+			{
+				summary.reject(summary.getReceived(), QUEUE_FULL);
+				return false;
+			}
+			summary.accept();
+		} catch (WeatherException e)
+		{
+			LOGGER.warning(e.getMessage());
+			summary.reject(summary.getReceived(), e.getMessage());
+		}
+		return true;
+	}
+
+	/**
+	 * Queue data point of the stream to the pipeline, waiting for the space in the queue
+	 *
+	 * @param iataCode  the 3 letter IATA code
+	 * @param pointType the point type {@link DataPointType}
+	 * @param dp        a datapoint object holding pointType data
+	 * @return false if the queue is still full
+	 * @throws WeatherException if the data point is not valid
+	 */
+	private boolean queueDataPoint(String iataCode, String pointType, DataPoint dp) throws WeatherException
+	{
+		AirportData airportData = getAirportData(iataCode);
+		DataPointType type = getDataPointType(pointType, dp);
+		try
+		{
+			return ingestPipeline.offer(airportData, type, dp, STREAM_OFFER_TIMEOUT);
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Find airport to update
+	 *
+	 * @param iataCode the 3 letter IATA code
+	 * @return airport
+	 * @throws AirportNotFoundException if there's no such airport
+	 */
+	private AirportData getAirportData(String iataCode) throws AirportNotFoundException
 	{
 		AirportData airportData = airportDatabase.getAirportData(iataCode);
 		if (airportData == null)
 			throw new AirportNotFoundException(iataCode);
-		AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
-		if (atmosphericInformation == null)
-			atmosphericInformation = new AtmosphericInformationHolder();
-		updateAtmosphericInformation(atmosphericInformation, pointType, dp);
-		airportAtmosphericInformation.updateAtmosphericInformation(airportData, atmosphericInformation);
+		return airportData;
 	}
 
 	/**
-	 * update atmospheric information with the given data point for the given point type
+	 * Find data point type and check the data point is valid for it
 	 *
-	 * @param ai        the atmospheric information object to update
 	 * @param pointType the data point type as a string
 	 * @param dp        the actual data point
+	 * @return data point type
 	 */
-	private void updateAtmosphericInformation(AtmosphericInformation ai, String pointType, DataPoint dp) throws WeatherException
+	private DataPointType getDataPointType(String pointType, DataPoint dp) throws WeatherException
 	{
 		for (DataPointType type : DataPointType.values())
 		{
@@ -170,29 +469,8 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint
 
 			if ((dp.getMean() >= AtmosphericInformationConstraints.getLowBound(type)) &&
 					(dp.getMean() < AtmosphericInformationConstraints.getUpperBound(type)))
-			{
-				switch (type)
-				{
-					case WIND:
-						ai.setWind(dp);
-						return;
-					case HUMIDITY:
-						ai.setHumidity(dp);
-						return;
-					case PRESSURE:
-						ai.setPressure(dp);
-						return;
-					case CLOUDCOVER:
-						ai.setCloudCover(dp);
-						return;
-					case TEMPERATURE:
-						ai.setTemperature(dp);
-						return;
-					case PRECIPITATION:
-						ai.setPrecipitation(dp);
-						return;
-				}
-			}
+				return type;
+
 			throw new WeatherException("Data point mean value is outside of regular bounds for " + pointType, Response.Status.BAD_REQUEST);
 		}
 		throw new WeatherException("Data point type is not recognized: '" + pointType + "'", Response.Status.BAD_REQUEST);
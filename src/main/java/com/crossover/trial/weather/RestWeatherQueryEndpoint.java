@@ -7,12 +7,21 @@ import com.crossover.trial.weather.common.Calculations;
 import com.crossover.trial.weather.common.WeatherException;
 import com.crossover.trial.weather.data.AirportData;
 import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.GeoBox;
+import com.crossover.trial.weather.data.GeoPolygon;
+import com.crossover.trial.weather.history.WeatherHistory;
 import com.crossover.trial.weather.performance.PerformanceMonitor;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
 
 import javax.inject.Inject;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.*;
 import java.util.logging.Logger;
@@ -34,6 +43,10 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint
 	/* Atmospheric information provider */
 	private AirportAtmosphericInformation airportAtmosphericInformation;
 
+	@Inject
+	/* History of the collected data points */
+	private WeatherHistory weatherHistory;
+
 	@Inject
 	/* Performance logging and monitoring system */
 	private PerformanceMonitor performanceMonitor;
@@ -123,4 +136,257 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint
 		}
 		return Response.ok(retval).build();
 	}
+
+	/**
+	 * Extracts atmosphere information of the airports within the radius around the point.
+	 *
+	 * @param latitudeString  latitude of the point in degrees
+	 * @param longitudeString longitude of the point in degrees
+	 * @param radiusString    the radius in km
+	 * @return a list of atmospheric information
+	 */
+	@Override
+	public Response weatherPoint(String latitudeString, String longitudeString, String radiusString)
+	{
+		double latitude, longitude, radius;
+		try
+		{
+			latitude = Calculations.parseDouble(latitudeString);
+			longitude = Calculations.parseDouble(longitudeString);
+			radius = Calculations.parseDouble(radiusString);
+		} catch (ParseException e)
+		{
+			LOGGER.warning(e.getMessage());
+			WeatherException exception = new WeatherException(String.format("Number format exception, point: '%s', '%s', radius: '%s'",
+					latitudeString, longitudeString, radiusString), Response.Status.BAD_REQUEST);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+		if (!(latitude >= -90 && latitude <= 90) || !Double.isFinite(longitude))
+		{
+			WeatherException exception = new WeatherException(String.format("Invalid point: '%s', '%s'", latitudeString, longitudeString),
+					Response.Status.BAD_REQUEST);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+
+		performanceMonitor.recordRadiusRequest(radius);
+
+		return Response.ok(getAtmosphericInformation(airportDatabase.getAirportsAround(latitude, longitude, radius))).build();
+	}
+
+	/**
+	 * Extracts atmosphere information of the airports inside the latitude/longitude rectangle.
+	 *
+	 * @param southString south border latitude in degrees
+	 * @param westString  west border longitude in degrees
+	 * @param northString north border latitude in degrees
+	 * @param eastString  east border longitude in degrees
+	 * @return a list of atmospheric information
+	 */
+	@Override
+	public Response weatherBox(String southString, String westString, String northString, String eastString)
+	{
+		GeoBox box;
+		try
+		{
+			box = new GeoBox(Calculations.parseDouble(southString), Calculations.parseDouble(westString),
+					Calculations.parseDouble(northString), Calculations.parseDouble(eastString));
+		} catch (ParseException | IllegalArgumentException e)
+		{
+			WeatherException exception = new WeatherException(String.format("Invalid box: '%s', '%s', '%s', '%s'",
+					southString, westString, northString, eastString), Response.Status.BAD_REQUEST);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+
+		return Response.ok(getAtmosphericInformation(airportDatabase.getAirportsInBox(box))).build();
+	}
+
+	/**
+	 * Extracts atmosphere information of the airports inside the polygon.
+	 *
+	 * @param polygonJson json list of polygon vertices, each one is a list of latitude and longitude
+	 * @return a list of atmospheric information
+	 */
+	@Override
+	public Response weatherPolygon(String polygonJson)
+	{
+		GeoPolygon polygon;
+		try
+		{
+			polygon = new GeoPolygon(gson.fromJson(polygonJson, double[][].class));
+		} catch (JsonParseException | IllegalArgumentException e)
+		{
+			WeatherException exception = new WeatherException("Invalid polygon: " + e.getMessage(), Response.Status.BAD_REQUEST);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+
+		return Response.ok(getAtmosphericInformation(airportDatabase.getAirportsInPolygon(polygon))).build();
+	}
+
+	/**
+	 * Retrieve atmosphere information of the airports nearest to the requested one, ordered by distance.
+	 *
+	 * @param iata        the iataCode
+	 * @param countString the number of airports
+	 * @param withWeather skip airports with no atmospheric information
+	 * @return a list of atmospheric information
+	 */
+	@Override
+	public Response nearest(String iata, String countString, boolean withWeather)
+	{
+		int count;
+		try
+		{
+			count = Integer.parseInt(countString);
+		} catch (NumberFormatException e)
+		{
+			count = -1;
+		}
+		if (count < 0)
+		{
+			WeatherException exception = new WeatherException("Invalid number of airports: '" + countString + "'", Response.Status.BAD_REQUEST);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+		AirportData airport = airportDatabase.getAirportData(iata);
+		if (airport == null)
+		{
+			WeatherException exception = new AirportNotFoundException(iata);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+
+		performanceMonitor.recordAirportRequest(airport);
+
+		List<AirportData> nearest = airportDatabase.getNearestAirports(airport, count,
+				x -> !withWeather || airportAtmosphericInformation.getAtmosphericInformation(x) != null);
+		return Response.ok(getAtmosphericInformation(nearest)).build();
+	}
+
+	/**
+	 * Retrieve history of the data points of particular type collected at the airport within the time range.
+	 *
+	 * @param iata       the iataCode
+	 * @param pointType  the data point type
+	 * @param fromString start of the time range in ms, unlimited if null
+	 * @param toString   end of the time range in ms, unlimited if null
+	 * @return a list of data points with collection time, streamed as the history is read
+	 */
+	@Override
+	public Response history(String iata, String pointType, String fromString, String toString)
+	{
+		return queryHistory(iata, pointType, fromString, toString, (airport, type, from, to) -> (StreamingOutput) output ->
+		{
+			/* Data points are written as they are decoded, in the same format as TimedDataPoint */
+			JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+			writer.setLenient(true);
+			writer.beginArray();
+			weatherHistory.visitHistory(airport, type, from, to, (time, mean, first, second, third, count) -> writer.beginObject()
+					.name("time").value(time)
+					.name("dataPoint").beginObject()
+					.name("mean").value(mean)
+					.name("first").value(first)
+					.name("second").value(second)
+					.name("third").value(third)
+					.name("count").value(count)
+					.endObject()
+					.endObject());
+			writer.endArray();
+			writer.flush();
+		});
+	}
+
+	/**
+	 * Retrieve history of the data points of particular type collected at the airport within the time range,
+	 * downsampled to fit the number of points.
+	 *
+	 * @param iata            the iataCode
+	 * @param pointType       the data point type
+	 * @param fromString      start of the time range in ms, unlimited if null
+	 * @param toString        end of the time range in ms, unlimited if null
+	 * @param maxPointsString max number of points
+	 * @return points of the chosen resolution
+	 */
+	@Override
+	public Response rollup(String iata, String pointType, String fromString, String toString, String maxPointsString)
+	{
+		int maxPoints;
+		try
+		{
+			maxPoints = Integer.parseInt(maxPointsString);
+		} catch (NumberFormatException e)
+		{
+			maxPoints = 0;
+		}
+		if (maxPoints <= 0)
+		{
+			WeatherException exception = new WeatherException("Invalid number of points: '" + maxPointsString + "'", Response.Status.BAD_REQUEST);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+
+		int points = maxPoints;
+		return queryHistory(iata, pointType, fromString, toString,
+				(airport, type, from, to) -> weatherHistory.getDownsampledHistory(airport, type, from, to, points));
+	}
+
+	/* Parse common history query parameters and run the query */
+	private Response queryHistory(String iata, String pointType, String fromString, String toString, HistoryQuery query)
+	{
+		long from, to;
+		try
+		{
+			from = fromString == null ? Long.MIN_VALUE : Long.parseLong(fromString);
+			to = toString == null ? Long.MAX_VALUE : Long.parseLong(toString);
+		} catch (NumberFormatException e)
+		{
+			WeatherException exception = new WeatherException(String.format("Invalid time range: '%s', '%s'", fromString, toString),
+					Response.Status.BAD_REQUEST);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+		DataPointType type = null;
+		for (DataPointType value : DataPointType.values())
+			if (value.name().equalsIgnoreCase(pointType))
+				type = value;
+		if (type == null)
+		{
+			WeatherException exception = new WeatherException("Data point type is not recognized: '" + pointType + "'", Response.Status.BAD_REQUEST);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+		AirportData airport = airportDatabase.getAirportData(iata);
+		if (airport == null)
+		{
+			WeatherException exception = new AirportNotFoundException(iata);
+			LOGGER.warning(exception.getMessage());
+			return exception.createResponse();
+		}
+
+		return Response.ok(query.get(airport, type, from, to)).build();
+	}
+
+	/* Atmospheric information of the airports in the same order, airports with no information are skipped */
+	private List<AtmosphericInformation> getAtmosphericInformation(List<AirportData> airports)
+	{
+		List<AtmosphericInformation> retval = new ArrayList<>();
+		for (AirportData airportData : airports)
+		{
+			AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+			if (atmosphericInformation != null)
+				retval.add(atmosphericInformation);
+		}
+		return retval;
+	}
+
+	/**
+	 * History query with the common parameters parsed
+	 */
+	private interface HistoryQuery
+	{
+		Object get(AirportData airport, DataPointType type, long from, long to);
+	}
 }
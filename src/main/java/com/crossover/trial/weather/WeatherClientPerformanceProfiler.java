@@ -4,11 +4,12 @@ import com.crossover.trial.weather.client.CollectClientHelper;
 import com.crossover.trial.weather.client.QueryClientHelper;
 import com.crossover.trial.weather.common.RandomDataFactory;
 import com.crossover.trial.weather.data.AirportData;
-import com.crossover.trial.weather.data.DataPoint;
 import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.WeatherRecord;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.function.Function;
@@ -24,6 +25,8 @@ public class WeatherClientPerformanceProfiler
 	private static final int QUERIES_NUMBER = 1000;
 	/* Number of airports to add */
 	private static final int NUMBER_OF_AIRPORTS = 1000;
+	/* Number of data points in a single batch update request */
+	private static final int BATCH_SIZE = 600;
 	/* Length of random queries test in ms */
 	private static final int RANDOM_QUERY_LENGTH = 30000;
 	/* Proportion of query requests to ping requests in random test */
@@ -61,22 +64,29 @@ public class WeatherClientPerformanceProfiler
 	}
 
 	/**
-	 * Perform a number of update data requests: one request for each aiport.
+	 * Update data of every airport with batch requests, all data point types for each airport.
 	 * All values are generated randomly within stated constraints.
 	 *
-	 * @return number of requests sent (for performance measurements)
+	 * @return number of data points sent (for performance measurements)
 	 */
 	public int addData()
 	{
 		System.out.println("\nAdding data");
 		int id = 0;
 		List<String> iataList = collectClientHelper.airportsGet();
+		List<WeatherRecord> records = new ArrayList<>();
 		for (String iata : iataList)
+		{
 			for (DataPointType type : DataPointType.values())
+				records.add(new WeatherRecord(iata, type.name(), RandomDataFactory.createDataPoint(type, id++)));
+			if (records.size() >= BATCH_SIZE)
 			{
-				DataPoint dataPoint = RandomDataFactory.createDataPoint(type, id++);
-				collectClientHelper.weatherPost(iata, type, dataPoint);
+				collectClientHelper.weatherPostBatch(records);
+				records.clear();
 			}
+		}
+		if (!records.isEmpty())
+			collectClientHelper.weatherPostBatch(records);
 
 		return iataList.size() * DataPointType.values().length;
 	}
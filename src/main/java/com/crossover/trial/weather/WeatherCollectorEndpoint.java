@@ -6,6 +6,7 @@ import com.crossover.trial.weather.data.DataPointType;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.InputStream;
 
 /**
  * The interface shared to airport weather collection systems.
@@ -31,7 +32,8 @@ public interface WeatherCollectorEndpoint
 	 * @param iataCode      the 3 letter airport code
 	 * @param pointType     the point type, {@link DataPointType} for a complete list
 	 * @param datapointJson a json dict containing mean, first, second, third and count keys
-	 * @return HTTP Response code
+	 * @return HTTP Response code: OK if the update is applied, ACCEPTED if it is queued in asynchronous mode, or
+	 * SERVICE_UNAVAILABLE with Retry-After header if the queue is full
 	 */
 	@POST
 	@Path("/weather/{iata}/{pointType}")
@@ -39,6 +41,51 @@ public interface WeatherCollectorEndpoint
 	                       @PathParam("pointType") String pointType,
 	                       String datapointJson);
 
+	/**
+	 * Update atmospheric information of many airports at once. Every record is validated the same way as a single
+	 * update, valid ones are applied with a single update per airport, invalid ones are skipped. In asynchronous
+	 * mode valid records are queued one by one in their order, and once a record of the airport is refused for the
+	 * full queue, the later records of this airport are refused too.
+	 *
+	 * @param recordsJson a json list of {@link com.crossover.trial.weather.data.WeatherRecord} with iata, pointType
+	 *                    and dataPoint keys
+	 * @return HTTP Response code and a json list of {@link com.crossover.trial.weather.data.WeatherRecordStatus}
+	 * in the order of the records: OK, or ACCEPTED in asynchronous mode, with Retry-After header if any record is
+	 * refused
+	 */
+	@POST
+	@Path("/weather/batch")
+	@Produces(MediaType.APPLICATION_JSON)
+	Response updateWeatherBatch(String recordsJson);
+
+	/**
+	 * Update atmospheric information with a stream of records, one json object per line, usually sent with chunked
+	 * transfer. Records are parsed and applied one by one as they arrive, so the stream may be of any length, and
+	 * the stream is read no faster than the records are applied. Invalid records are skipped the same way as in
+	 * the batch update. In asynchronous mode records are queued, and the stream waits for the space in the queue;
+	 * if the queue stays full, the stream is stopped at the refused record.
+	 *
+	 * @param records newline-delimited json objects of {@link com.crossover.trial.weather.data.WeatherRecord}
+	 * @return HTTP Response code and a json {@link com.crossover.trial.weather.data.IngestSummary}: OK if the
+	 * stream was read to its end, BAD_REQUEST if it was malformed or broken, SERVICE_UNAVAILABLE with Retry-After
+	 * header if it was stopped for the full queue
+	 */
+	@POST
+	@Path("/weather/stream")
+	@Produces(MediaType.APPLICATION_JSON)
+	Response updateWeatherStream(InputStream records);
+
+	/**
+	 * Collection metrics: whether single updates are applied asynchronously, the number of updates waiting in the
+	 * queue of every shard, and the numbers of data point updates coalesced and committed
+	 *
+	 * @return HTTP Response code and a json {@link com.crossover.trial.weather.data.CollectMetrics}
+	 */
+	@GET
+	@Path("/metrics")
+	@Produces(MediaType.APPLICATION_JSON)
+	Response getMetrics();
+
 	/**
 	 * Return a list of known airports as a json formatted list
 	 *
@@ -84,6 +131,25 @@ public interface WeatherCollectorEndpoint
 	@Path("/airport/{iata}")
 	Response deleteAirport(@PathParam("iata") String iata);
 
+	/**
+	 * Begin bulk airport load. Airports added during it are available immediately, but geographical search
+	 * structures are rebuilt only when bulk load ends.
+	 *
+	 * @return HTTP Response code
+	 */
+	@POST
+	@Path("/airports/bulk/begin")
+	Response beginBulkLoad();
+
+	/**
+	 * End bulk airport load. Geographical search structures are rebuilt in the background.
+	 *
+	 * @return HTTP Response code
+	 */
+	@POST
+	@Path("/airports/bulk/end")
+	Response endBulkLoad();
+
 	@GET
 	@Path("/exit")
 	Response exit();
@@ -2,10 +2,13 @@ package com.crossover.trial.weather;
 
 import com.crossover.trial.weather.data.AtmosphericInformation;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -40,4 +43,96 @@ public interface WeatherQueryEndpoint
 	@Path("/weather/{iata}/{radius}")
 	@Produces(MediaType.APPLICATION_JSON)
 	Response weather(@PathParam("iata") String iata, @PathParam("radius") String radiusString);
+
+	/**
+	 * Retrieve the most up to date atmospheric information from the airports in the given radius around the point.
+	 *
+	 * @param latitudeString  latitude of the point in degrees
+	 * @param longitudeString longitude of the point in degrees
+	 * @param radiusString    the radius, in km, from which to collect weather data
+	 * @return an HTTP Response and a list of {@link AtmosphericInformation} from the airports in the given radius
+	 */
+	@GET
+	@Path("/weather/point/{latitude}/{longitude}/{radius}")
+	@Produces(MediaType.APPLICATION_JSON)
+	Response weatherPoint(@PathParam("latitude") String latitudeString, @PathParam("longitude") String longitudeString,
+						  @PathParam("radius") String radiusString);
+
+	/**
+	 * Retrieve the most up to date atmospheric information from the airports inside the latitude/longitude rectangle.
+	 * Box with west border greater than east one crosses the antimeridian.
+	 *
+	 * @param southString south border latitude in degrees
+	 * @param westString  west border longitude in degrees
+	 * @param northString north border latitude in degrees
+	 * @param eastString  east border longitude in degrees
+	 * @return an HTTP Response and a list of {@link AtmosphericInformation} from the airports inside the box
+	 */
+	@GET
+	@Path("/weather/box/{south}/{west}/{north}/{east}")
+	@Produces(MediaType.APPLICATION_JSON)
+	Response weatherBox(@PathParam("south") String southString, @PathParam("west") String westString,
+						@PathParam("north") String northString, @PathParam("east") String eastString);
+
+	/**
+	 * Retrieve the most up to date atmospheric information from the airports inside the polygon.
+	 *
+	 * @param polygonJson a json list of polygon vertices, each one is a list of latitude and longitude in degrees
+	 * @return an HTTP Response and a list of {@link AtmosphericInformation} from the airports inside the polygon
+	 */
+	@POST
+	@Path("/weather/polygon")
+	@Produces(MediaType.APPLICATION_JSON)
+	Response weatherPolygon(String polygonJson);
+
+	/**
+	 * Retrieve the most up to date atmospheric information from the given number of airports nearest to the given one,
+	 * including the airport itself.
+	 *
+	 * @param iata        the three letter airport code
+	 * @param countString the number of airports to collect weather data from
+	 * @param withWeather skip airports with no atmospheric information, so they are not counted
+	 * @return an HTTP Response and a list of {@link AtmosphericInformation} from the nearest airports, ordered by distance
+	 */
+	@GET
+	@Path("/nearest/{iata}/{count}")
+	@Produces(MediaType.APPLICATION_JSON)
+	Response nearest(@PathParam("iata") String iata, @PathParam("count") String countString,
+					 @QueryParam("withWeather") @DefaultValue("false") boolean withWeather);
+
+	/**
+	 * Retrieve the history of data points of the given type collected at the airport. Only a limited number of the
+	 * latest data points is kept.
+	 *
+	 * @param iata       the three letter airport code
+	 * @param pointType  the point type, {@link com.crossover.trial.weather.data.DataPointType} for a complete list
+	 * @param fromString start of the time range in ms since epoch, inclusive, unlimited if absent
+	 * @param toString   end of the time range in ms since epoch, inclusive, unlimited if absent
+	 * @return an HTTP Response and a list of {@link com.crossover.trial.weather.data.TimedDataPoint} in the order
+	 * of collection
+	 */
+	@GET
+	@Path("/history/{iata}/{pointType}")
+	@Produces(MediaType.APPLICATION_JSON)
+	Response history(@PathParam("iata") String iata, @PathParam("pointType") String pointType,
+					 @QueryParam("from") String fromString, @QueryParam("to") String toString);
+
+	/**
+	 * Retrieve the history of data points of the given type collected at the airport, downsampled to fit the number
+	 * of points: collected data points themselves, or their minute, hour or day rollups with min, max and mean.
+	 *
+	 * @param iata            the three letter airport code
+	 * @param pointType       the point type, {@link com.crossover.trial.weather.data.DataPointType} for a complete list
+	 * @param fromString      start of the time range in ms since epoch, inclusive, unlimited if absent
+	 * @param toString        end of the time range in ms since epoch, inclusive, unlimited if absent
+	 * @param maxPointsString max number of points, 1000 if absent
+	 * @return an HTTP Response and {@link com.crossover.trial.weather.data.DownsampledHistory} with the resolution
+	 * chosen
+	 */
+	@GET
+	@Path("/rollup/{iata}/{pointType}")
+	@Produces(MediaType.APPLICATION_JSON)
+	Response rollup(@PathParam("iata") String iata, @PathParam("pointType") String pointType,
+					@QueryParam("from") String fromString, @QueryParam("to") String toString,
+					@QueryParam("maxPoints") @DefaultValue("1000") String maxPointsString);
 }
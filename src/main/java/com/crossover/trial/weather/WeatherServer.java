@@ -1,12 +1,27 @@
 package com.crossover.trial.weather;
 
 import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationCoalescing;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationExpiring;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationMapped;
 import com.crossover.trial.weather.airport.AirportAtmosphericInformationMemory;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationOffHeap;
 import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.airport.AirportDatabaseKdTree;
+import com.crossover.trial.weather.airport.AirportDatabaseMapped;
 import com.crossover.trial.weather.airport.AirportDatabaseMemory;
 import com.crossover.trial.weather.common.WeatherGsonFactory;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.history.WeatherHistory;
+import com.crossover.trial.weather.history.WeatherHistoryMemory;
+import com.crossover.trial.weather.ingest.BinaryIngestServer;
+import com.crossover.trial.weather.ingest.IngestPipeline;
 import com.crossover.trial.weather.performance.PerformanceMonitor;
 import com.crossover.trial.weather.performance.PerformanceMonitorMemory;
+import com.crossover.trial.weather.wal.AirportAtmosphericInformationWal;
+import com.crossover.trial.weather.wal.AirportDatabaseWal;
+import com.crossover.trial.weather.wal.FsyncPolicy;
+import com.crossover.trial.weather.wal.WriteAheadLog;
 import com.google.gson.Gson;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.http.server.HttpServer;
@@ -17,8 +32,14 @@ import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,15 +56,74 @@ public class WeatherServer
 {
 	private static final String BASE_URL = "http://localhost:9090/";
 
+	/* System property to choose airport database implementation: "memory" (grid index, default), "kdtree" or
+	   "mapped" (grid index, persisted to the data directory) */
+	private static final String AIRPORT_DATABASE_PROPERTY = "weather.airportDatabase";
+
+	/* System property to choose atmospheric information storage: "memory" (default), "offheap" or "mapped"
+	   (persisted to the data directory, requires "mapped" airport database) */
+	private static final String ATMOSPHERIC_STORE_PROPERTY = "weather.atmosphericStore";
+
+	/* System property to set directory for the persisted data, "data" by default */
+	private static final String DATA_DIRECTORY_PROPERTY = "weather.dataDirectory";
+
+	/* System property to enable write-ahead log in the data directory with fsync policy: "always", "interval" or "none" */
+	private static final String WAL_PROPERTY = "weather.wal";
+
+	/* System property to set min time between write-ahead log forces for "interval" policy, ms */
+	private static final String WAL_FSYNC_INTERVAL_PROPERTY = "weather.walFsyncInterval";
+
+	/* System property to set time between write-ahead log snapshots, ms */
+	private static final String WAL_SNAPSHOT_INTERVAL_PROPERTY = "weather.walSnapshotInterval";
+
+	/* Prefix of system properties to set time to live of data points by type, e.g. "weather.ttl.wind", ms.
+	   Data points of the types not listed never expire */
+	private static final String TTL_PROPERTY_PREFIX = "weather.ttl.";
+
+	/* System property to set number of data points kept in history for every airport and data point type */
+	private static final String HISTORY_CAPACITY_PROPERTY = "weather.historyCapacity";
+
+	/* System property to set port of the binary weather collection, it is not started if the port is not set */
+	private static final String BINARY_INGEST_PORT_PROPERTY = "weather.binaryIngestPort";
+
+	/* System property to apply single weather updates asynchronously with the stated number of shards */
+	private static final String INGEST_SHARDS_PROPERTY = "weather.ingestShards";
+
+	/* System property to set max number of updates queued in every shard */
+	private static final String INGEST_QUEUE_CAPACITY_PROPERTY = "weather.ingestQueueCapacity";
+
+	/* System property to set window of data point update coalescing, ms. Updates are not coalesced if it is not set */
+	private static final String COALESCE_WINDOW_PROPERTY = "weather.coalesceWindow";
+
 	public static void main(String[] args)
 	{
 		try
 		{
 			System.out.println("Starting Weather App local testing server: " + BASE_URL);
 
-			final AirportDatabase airportDatabase = new AirportDatabaseMemory();
-			final AirportAtmosphericInformation airportAtmosphericInformation = new AirportAtmosphericInformationMemory();
+			final Path dataDirectory = Paths.get(System.getProperty(DATA_DIRECTORY_PROPERTY, "data"));
+			final AirportDatabase airportDatabase = createAirportDatabase(System.getProperty(AIRPORT_DATABASE_PROPERTY, "memory"), dataDirectory);
+			final AirportAtmosphericInformation airportAtmosphericInformation = createAtmosphericStore(System.getProperty(ATMOSPHERIC_STORE_PROPERTY, "memory"),
+					dataDirectory, airportDatabase);
+			final WriteAheadLog writeAheadLog = openWriteAheadLog(System.getProperty(WAL_PROPERTY), dataDirectory, airportDatabase,
+					airportAtmosphericInformation);
+			final AirportDatabase loggedAirportDatabase = writeAheadLog == null ? airportDatabase :
+					new AirportDatabaseWal(airportDatabase, writeAheadLog);
+			final AirportAtmosphericInformation loggedAtmosphericInformation = writeAheadLog == null ? airportAtmosphericInformation :
+					new AirportAtmosphericInformationWal(airportAtmosphericInformation, writeAheadLog);
+			final Map<DataPointType, Long> timesToLive = getTimesToLive();
+			final AirportAtmosphericInformation expiringAtmosphericInformation = timesToLive.isEmpty() ? loggedAtmosphericInformation :
+					createExpiringStore(loggedAtmosphericInformation, timesToLive, airportDatabase);
+			final Long coalesceWindow = Long.getLong(COALESCE_WINDOW_PROPERTY);
+			final AirportAtmosphericInformationCoalescing coalescingAtmosphericInformation = coalesceWindow == null ? null :
+					new AirportAtmosphericInformationCoalescing(expiringAtmosphericInformation, coalesceWindow);
+			final AirportAtmosphericInformation collectedAtmosphericInformation = coalescingAtmosphericInformation == null ?
+					expiringAtmosphericInformation : coalescingAtmosphericInformation;
+			final WeatherHistory weatherHistory = new WeatherHistoryMemory(Integer.getInteger(HISTORY_CAPACITY_PROPERTY, WeatherHistoryMemory.DEFAULT_CAPACITY));
 			final PerformanceMonitor performanceMonitor = new PerformanceMonitorMemory();
+			final Integer ingestShards = Integer.getInteger(INGEST_SHARDS_PROPERTY);
+			final IngestPipeline ingestPipeline = ingestShards == null ? null : new IngestPipeline(collectedAtmosphericInformation, weatherHistory,
+					ingestShards, Integer.getInteger(INGEST_QUEUE_CAPACITY_PROPERTY, 4096));
 
 			final ResourceConfig resourceConfig = new ResourceConfig();
 			resourceConfig.register(new AbstractBinder()
@@ -51,16 +131,35 @@ public class WeatherServer
 				@Override
 				protected void configure()
 				{
-					bind(airportDatabase).to(AirportDatabase.class);
-					bind(airportAtmosphericInformation).to(AirportAtmosphericInformation.class);
+					bind(loggedAirportDatabase).to(AirportDatabase.class);
+					bind(collectedAtmosphericInformation).to(AirportAtmosphericInformation.class);
+					if (coalescingAtmosphericInformation != null)
+						bind(coalescingAtmosphericInformation).to(AirportAtmosphericInformationCoalescing.class);
+					bind(weatherHistory).to(WeatherHistory.class);
 					bind(performanceMonitor).to(PerformanceMonitor.class);
 					bind(WeatherGsonFactory.createGson()).to(Gson.class);
+					if (ingestPipeline != null)
+						bind(ingestPipeline).to(IngestPipeline.class);
 				}
 			});
 			resourceConfig.packages(true, "com.crossover.trial.weather");
 
 			HttpServer server = GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URL), resourceConfig, false);
-			Runtime.getRuntime().addShutdownHook(new Thread(server::shutdownNow));
+			final Integer binaryIngestPort = Integer.getInteger(BINARY_INGEST_PORT_PROPERTY);
+			final BinaryIngestServer binaryIngestServer = binaryIngestPort == null ? null :
+					new BinaryIngestServer(URI.create(BASE_URL).getHost(), binaryIngestPort, loggedAirportDatabase, collectedAtmosphericInformation,
+							weatherHistory, ingestPipeline);
+			Runtime.getRuntime().addShutdownHook(new Thread(() ->
+			{
+				server.shutdownNow();
+				close(binaryIngestServer);
+				close(ingestPipeline);
+				close(coalescingAtmosphericInformation);
+				close(expiringAtmosphericInformation);
+				close(writeAheadLog);
+				close(airportAtmosphericInformation);
+				close(airportDatabase);
+			}));
 
 			HttpServerProbe probe = new HttpServerProbe.Adapter()
 			{
@@ -83,4 +182,124 @@ public class WeatherServer
 			Logger.getLogger(WeatherServer.class.getName()).log(Level.SEVERE, null, ex);
 		}
 	}
+
+	/**
+	 * Create airport database of the requested type
+	 *
+	 * @param type          "memory", "kdtree" or "mapped"
+	 * @param dataDirectory directory for the persisted data
+	 * @return airport database
+	 * @throws IOException if persisted data can't be opened
+	 */
+	private static AirportDatabase createAirportDatabase(String type, Path dataDirectory) throws IOException
+	{
+		switch (type)
+		{
+			case "memory":
+				return new AirportDatabaseMemory();
+			case "kdtree":
+				return new AirportDatabaseKdTree();
+			case "mapped":
+				return new AirportDatabaseMapped(Files.createDirectories(dataDirectory));
+		}
+		throw new IllegalArgumentException("Unknown airport database type: '" + type + "'");
+	}
+
+	/**
+	 * Create atmospheric information storage of the requested type
+	 *
+	 * @param type            "memory", "offheap" or "mapped"
+	 * @param dataDirectory   directory for the persisted data
+	 * @param airportDatabase airport database, used to restore persisted data
+	 * @return atmospheric information storage
+	 * @throws IOException if persisted data can't be opened
+	 */
+	private static AirportAtmosphericInformation createAtmosphericStore(String type, Path dataDirectory, AirportDatabase airportDatabase)
+			throws IOException
+	{
+		switch (type)
+		{
+			case "memory":
+				return new AirportAtmosphericInformationMemory();
+			case "offheap":
+				return new AirportAtmosphericInformationOffHeap();
+			case "mapped":
+				return new AirportAtmosphericInformationMapped(Files.createDirectories(dataDirectory), airportDatabase);
+		}
+		throw new IllegalArgumentException("Unknown atmospheric information storage type: '" + type + "'");
+	}
+
+	/**
+	 * Recover airports and atmospheric information from the write-ahead log and start logging the changes
+	 *
+	 * @param fsyncPolicy                   "always", "interval" or "none", null if the log is not used
+	 * @param dataDirectory                 directory for the persisted data
+	 * @param airportDatabase               empty airport database
+	 * @param airportAtmosphericInformation empty atmospheric information storage
+	 * @return write-ahead log, or null if it is not used
+	 * @throws IOException if the log can't be opened
+	 */
+	private static WriteAheadLog openWriteAheadLog(String fsyncPolicy, Path dataDirectory, AirportDatabase airportDatabase,
+												   AirportAtmosphericInformation airportAtmosphericInformation) throws IOException
+	{
+		if (fsyncPolicy == null)
+			return null;
+
+		WriteAheadLog writeAheadLog = new WriteAheadLog(Files.createDirectories(dataDirectory.resolve("wal")),
+				FsyncPolicy.valueOf(fsyncPolicy.toUpperCase()), Long.getLong(WAL_FSYNC_INTERVAL_PROPERTY, 100));
+		int records = writeAheadLog.recover(airportDatabase, airportAtmosphericInformation);
+		System.out.println(format("Recovered %d write-ahead log records", records));
+		writeAheadLog.start();
+		writeAheadLog.scheduleSnapshots(airportDatabase, airportAtmosphericInformation, Long.getLong(WAL_SNAPSHOT_INTERVAL_PROPERTY, 600000));
+		return writeAheadLog;
+	}
+
+	/**
+	 * Wrap atmospheric information storage to expire data points, including the ones restored from the persisted data
+	 *
+	 * @param airportAtmosphericInformation storage with the restored data points
+	 * @param timesToLive                   time to live by data point type, ms
+	 * @param airportDatabase               airport database with the restored airports
+	 * @return expiring storage
+	 */
+	private static AirportAtmosphericInformationExpiring createExpiringStore(AirportAtmosphericInformation airportAtmosphericInformation,
+																			 Map<DataPointType, Long> timesToLive, AirportDatabase airportDatabase)
+	{
+		AirportAtmosphericInformationExpiring expiringAtmosphericInformation = new AirportAtmosphericInformationExpiring(airportAtmosphericInformation,
+				timesToLive);
+		expiringAtmosphericInformation.scheduleStored(airportDatabase);
+		return expiringAtmosphericInformation;
+	}
+
+	/**
+	 * Get time to live of data points by type from the system properties
+	 *
+	 * @return time to live by data point type, ms, for the types which expire
+	 */
+	private static Map<DataPointType, Long> getTimesToLive()
+	{
+		Map<DataPointType, Long> timesToLive = new EnumMap<>(DataPointType.class);
+		for (DataPointType type : DataPointType.values())
+		{
+			Long timeToLive = Long.getLong(TTL_PROPERTY_PREFIX + type.name().toLowerCase());
+			if (timeToLive != null)
+				timesToLive.put(type, timeToLive);
+		}
+		return timesToLive;
+	}
+
+	/* Write persisted data on shutdown */
+	private static void close(Object storage)
+	{
+		if (!(storage instanceof Closeable))
+			return;
+
+		try
+		{
+			((Closeable) storage).close();
+		} catch (IOException ex)
+		{
+			Logger.getLogger(WeatherServer.class.getName()).log(Level.SEVERE, null, ex);
+		}
+	}
 }
@@ -2,10 +2,17 @@ package com.crossover.trial.weather.airport;
 
 import com.crossover.trial.weather.data.AirportData;
 import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.TimedDataPoint;
 import org.glassfish.jersey.spi.Contract;
 
 /**
  * Atmospheric information database.
+ * <p>
+ * Information is kept by airport ordinal, so airports should be registered in the airport database: updates of the
+ * airports not registered there, including removed ones, throw {@link IllegalArgumentException}, and the other
+ * operations find no information for them.
  */
 @Contract
 public interface AirportAtmosphericInformation
@@ -18,14 +25,68 @@ public interface AirportAtmosphericInformation
 	 */
 	AtmosphericInformation getAtmosphericInformation(AirportData airportData);
 
+	/**
+	 * Get data point of particular type along with its last update time
+	 *
+	 * @param airportData airport, where data point is requested
+	 * @param type        type of the data point
+	 * @return data point with its last update time, or null if none present
+	 */
+	TimedDataPoint getTimedDataPoint(AirportData airportData, DataPointType type);
+
 	/**
 	 * Update current airport information with a new one. Only last state is stored.
 	 *
 	 * @param airportData            airport, where atmospheric information is updated
 	 * @param atmosphericInformation current atmospheric information
+	 * @throws IllegalArgumentException if the airport is not registered in the airport database
 	 */
 	void updateAtmosphericInformation(AirportData airportData, AtmosphericInformation atmosphericInformation);
 
+	/**
+	 * Atomically replace data point of particular type, leaving the other ones as is.
+	 * Concurrent updates of different types don't affect each other.
+	 *
+	 * @param airportData airport, where atmospheric information is updated
+	 * @param type        type of the data point
+	 * @param dataPoint   new data point
+	 * @throws IllegalArgumentException if the airport is not registered in the airport database
+	 */
+	void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint);
+
+	/**
+	 * Replace data points of the types present in the atmospheric information, leaving the other ones as is.
+	 * Costs a single update of the airport, unlike replacing the data points one by one.
+	 *
+	 * @param airportData airport, where atmospheric information is updated
+	 * @param dataPoints  new data points, null for the types which are not updated
+	 * @throws IllegalArgumentException if the airport is not registered in the airport database
+	 */
+	void updateDataPoints(AirportData airportData, AtmosphericInformation dataPoints);
+
+	/**
+	 * Replace data point of particular type with the one updated at the stated time, e.g. when the data point is
+	 * restored from the persisted data, so it is not seen as a fresh one.
+	 *
+	 * @param airportData airport, where atmospheric information is restored
+	 * @param type        type of the data point
+	 * @param dataPoint   restored data point, null to remove the data point of the type
+	 * @param updateTime  original update time of the data point, ms
+	 * @throws IllegalArgumentException if the airport is not registered in the airport database
+	 */
+	void restoreDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint, long updateTime);
+
+	/**
+	 * Atomically remove data point of particular type, unless it was updated after the stated time.
+	 * Concurrent update is never lost: it either gets the data point back or is seen as a later one.
+	 *
+	 * @param airportData   airport, where data point expires
+	 * @param type          type of the data point
+	 * @param updatedBefore last update time of the data point, which should be removed, ms
+	 * @return last update time of the data point left, or 0 if there's none
+	 */
+	long expireDataPoint(AirportData airportData, DataPointType type, long updatedBefore);
+
 	/**
 	 * Clear atmospheric information for particular airport.
 	 * Not very common scenario, used when airport is not tracked anymore.
@@ -0,0 +1,246 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.common.OrdinalArray;
+import com.crossover.trial.weather.common.TimerWheel;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.AtmosphericInformationSnapshot;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.TimedDataPoint;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Atmospheric information storage, which coalesces frequent updates of the same data point. Data point update is
+ * kept pending for the coalescing window, and only the latest one of the window is committed to the storage, so
+ * stations resending data points many times a second cost a single storage update per window. The other updates
+ * are committed at once, superseding the pending data points of their types.
+ * <p>
+ * Pending data points are not visible to the reads until the end of the window. Clear drops pending data points of
+ * the airport, so they are never committed to the storage after the airport is removed.
+ * <p>
+ * Every scheduled commit belongs to a generation of its slot. Slot emptied by another update gets a new generation,
+ * so the commit scheduled before does nothing, and the next data point waits for the whole window.
+ */
+public class AirportAtmosphericInformationCoalescing implements AirportAtmosphericInformation, Closeable
+{
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	/* Number of timer ticks within the window, so commit is late by a quarter of the window at most */
+	private static final int TICKS_IN_WINDOW = 4;
+
+	/* Number of timer buckets, enough to cover the window and the delay of the scheduled commits */
+	private static final int TIMER_BUCKETS = 64;
+
+	private final AirportAtmosphericInformation airportAtmosphericInformation;
+
+	/* Coalescing window, ms */
+	private final long window;
+
+	private final TimerWheel timerWheel;
+
+	/* Pending data points of the airports by airport ordinal */
+	private final OrdinalArray<Pending> pendings;
+
+	/* Numbers of the data point updates dropped as superseded and committed to the storage */
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder committed = new LongAdder();
+
+	/**
+	 * Create the storage
+	 *
+	 * @param airportAtmosphericInformation storage to commit data points to
+	 * @param window                        coalescing window, ms
+	 */
+	public AirportAtmosphericInformationCoalescing(AirportAtmosphericInformation airportAtmosphericInformation, long window)
+	{
+		if (window <= 0)
+			throw new IllegalArgumentException("Coalescing window should be positive: " + window);
+
+		this.airportAtmosphericInformation = airportAtmosphericInformation;
+		this.window = window;
+		timerWheel = new TimerWheel(Math.max(window / TICKS_IN_WINDOW, 1), TIMER_BUCKETS);
+		pendings = new OrdinalArray<>();
+	}
+
+	/**
+	 * @return number of the data point updates dropped as superseded within the window, or by the other updates
+	 */
+	public long getCoalesced()
+	{
+		return coalesced.sum();
+	}
+
+	/**
+	 * @return number of the data point updates committed to the storage at the end of the window
+	 */
+	public long getCommitted()
+	{
+		return committed.sum();
+	}
+
+	@Override
+	public AtmosphericInformation getAtmosphericInformation(AirportData airportData)
+	{
+		return airportAtmosphericInformation.getAtmosphericInformation(airportData);
+	}
+
+	@Override
+	public TimedDataPoint getTimedDataPoint(AirportData airportData, DataPointType type)
+	{
+		return airportAtmosphericInformation.getTimedDataPoint(airportData, type);
+	}
+
+	@Override
+	public void updateAtmosphericInformation(AirportData airportData, AtmosphericInformation atmosphericInformation)
+	{
+		for (DataPointType type : TYPES)
+			dropPending(airportData, type);
+		airportAtmosphericInformation.updateAtmosphericInformation(airportData, atmosphericInformation);
+	}
+
+	/* First update of the window schedules the commit of the slot generation, the later ones just replace the pending
+	   data point */
+	@Override
+	public void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint)
+	{
+		if (dataPoint == null || airportData.ordinal() < 0)
+		{
+			dropPending(airportData, type);
+			airportAtmosphericInformation.updateDataPoint(airportData, type, dataPoint);
+			return;
+		}
+
+		Pending pending = pendings.get(airportData.ordinal(), current -> current.airport.equals(airportData) && !current.closed,
+				() -> new Pending(airportData));
+		if (pending.dataPoints.getAndSet(type.ordinal(), dataPoint) != null)
+			coalesced.increment();
+		else
+		{
+			long generation = pending.generations.incrementAndGet(type.ordinal());
+			timerWheel.schedule(window, () -> commit(pending, type, generation));
+		}
+	}
+
+	@Override
+	public void updateDataPoints(AirportData airportData, AtmosphericInformation dataPoints)
+	{
+		AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.of(dataPoints);
+		for (DataPointType type : TYPES)
+			if (snapshot.get(type) != null)
+				dropPending(airportData, type);
+		airportAtmosphericInformation.updateDataPoints(airportData, dataPoints);
+	}
+
+	@Override
+	public void restoreDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint, long updateTime)
+	{
+		dropPending(airportData, type);
+		airportAtmosphericInformation.restoreDataPoint(airportData, type, dataPoint, updateTime);
+	}
+
+	@Override
+	public long expireDataPoint(AirportData airportData, DataPointType type, long updatedBefore)
+	{
+		return airportAtmosphericInformation.expireDataPoint(airportData, type, updatedBefore);
+	}
+
+	/* Entry is closed under its lock, so commit in progress is done before the storage is cleared, and the later ones
+	   find the entry closed */
+	@Override
+	public void clearAtmosphericInformation(AirportData airportData)
+	{
+		Pending pending = pendings.get(airportData.ordinal());
+		if (pending != null && pending.airport.equals(airportData))
+		{
+			synchronized (pending)
+			{
+				pending.closed = true;
+				for (DataPointType type : TYPES)
+					pending.dataPoints.set(type.ordinal(), null);
+			}
+			pendings.remove(airportData.ordinal(), current -> current == pending);
+		}
+		airportAtmosphericInformation.clearAtmosphericInformation(airportData);
+	}
+
+	@Override
+	public int size(long validTimePeriod)
+	{
+		return airportAtmosphericInformation.size(validTimePeriod);
+	}
+
+	/**
+	 * Stop the timer and commit all pending data points
+	 */
+	@Override
+	public void close()
+	{
+		timerWheel.close();
+		pendings.forEach(pending ->
+		{
+			for (DataPointType type : TYPES)
+				commit(pending, type, pending.generations.get(type.ordinal()));
+		});
+	}
+
+	/* Update racing with the clear may still put a data point to the closed entry, it is never committed */
+	private void commit(Pending pending, DataPointType type, long generation)
+	{
+		synchronized (pending)
+		{
+			if (pending.closed || pending.generations.get(type.ordinal()) != generation)
+				return;
+
+			DataPoint dataPoint = pending.dataPoints.getAndSet(type.ordinal(), null);
+			if (dataPoint == null)
+				return;
+
+			airportAtmosphericInformation.updateDataPoint(pending.airport, type, dataPoint);
+			committed.increment();
+		}
+	}
+
+	/* Pending data point is older than the update, which is about to be committed. Generation is changed before the
+	   slot is emptied, so it never outdates the commit of the update, which finds the slot empty */
+	private void dropPending(AirportData airportData, DataPointType type)
+	{
+		if (airportData.ordinal() < 0)
+			return;
+
+		Pending pending = pendings.get(airportData.ordinal());
+		if (pending == null || !pending.airport.equals(airportData) || pending.dataPoints.get(type.ordinal()) == null)
+			return;
+
+		pending.generations.incrementAndGet(type.ordinal());
+		if (pending.dataPoints.getAndSet(type.ordinal(), null) != null)
+			coalesced.increment();
+	}
+
+	/**
+	 * Pending data points of a single airport
+	 */
+	private static class Pending
+	{
+		private final AirportData airport;
+
+		/* Latest data point of the window, by type ordinal, null if there's no update pending */
+		private final AtomicReferenceArray<DataPoint> dataPoints = new AtomicReferenceArray<>(TYPES.length);
+
+		/* Generation of the scheduled commit, by type ordinal */
+		private final AtomicLongArray generations = new AtomicLongArray(TYPES.length);
+
+		/* Set by the clear under the lock of the entry, its data points are not committed anymore, and the updates
+		   replace it with a new entry */
+		private volatile boolean closed;
+
+		private Pending(AirportData airport)
+		{
+			this.airport = airport;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.common.OrdinalArray;
+import com.crossover.trial.weather.common.TimerWheel;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.AtmosphericInformationSnapshot;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.TimedDataPoint;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Atmospheric information storage, which removes data points not updated within time to live of their type.
+ * Every stored data point has a single pending expiry in the timer wheel, scheduled on its first update. Expiry
+ * removes the data point only if it was not updated since, otherwise it is rescheduled for the last update time, so
+ * frequent updates cost nothing but a flag check and the storage is never scanned. Data points stored before the
+ * storage was created, such as the restored ones, expire only after {@link #scheduleStored}.
+ */
+public class AirportAtmosphericInformationExpiring implements AirportAtmosphericInformation, Closeable
+{
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	/* Timer tick, expiry may be late by that much */
+	private static final long TICK_DURATION = 1000;
+
+	/* Number of timer buckets, a turn of the wheel takes about 8.5 minutes with 1 second ticks */
+	private static final int TIMER_BUCKETS = 512;
+
+	private final AirportAtmosphericInformation airportAtmosphericInformation;
+
+	/* Time to live by data point type ordinal, ms, 0 if data points of the type never expire */
+	private final long[] timesToLive;
+
+	private final TimerWheel timerWheel;
+
+	/* Expiry flags of the airports by airport ordinal */
+	private final OrdinalArray<Expiry> expiries;
+
+	/**
+	 * Create the storage with timer of 1 second ticks
+	 *
+	 * @param airportAtmosphericInformation storage to keep data points in
+	 * @param timesToLive                   time to live by data point type, ms; types not listed never expire
+	 */
+	public AirportAtmosphericInformationExpiring(AirportAtmosphericInformation airportAtmosphericInformation, Map<DataPointType, Long> timesToLive)
+	{
+		this(airportAtmosphericInformation, timesToLive, TICK_DURATION);
+	}
+
+	/**
+	 * Create the storage
+	 *
+	 * @param airportAtmosphericInformation storage to keep data points in
+	 * @param timesToLive                   time to live by data point type, ms; types not listed never expire
+	 * @param tickDuration                  timer tick, ms
+	 */
+	public AirportAtmosphericInformationExpiring(AirportAtmosphericInformation airportAtmosphericInformation, Map<DataPointType, Long> timesToLive,
+												 long tickDuration)
+	{
+		this.airportAtmosphericInformation = airportAtmosphericInformation;
+		this.timesToLive = new long[TYPES.length];
+		timesToLive.forEach((type, timeToLive) ->
+		{
+			if (timeToLive <= 0)
+				throw new IllegalArgumentException("Time to live should be positive: " + type + " " + timeToLive);
+			this.timesToLive[type.ordinal()] = timeToLive;
+		});
+		timerWheel = new TimerWheel(tickDuration, TIMER_BUCKETS);
+		expiries = new OrdinalArray<>();
+	}
+
+	/**
+	 * Schedule expiry of the data points already kept in the storage, such as the ones restored from the persisted
+	 * data. Data points not updated within their time to live are removed at once, others expire by their stored
+	 * update time
+	 *
+	 * @param airportDatabase database of the airports to check
+	 */
+	public void scheduleStored(AirportDatabase airportDatabase)
+	{
+		for (String iata : airportDatabase.getAllAirportIata())
+		{
+			AirportData airportData = airportDatabase.getAirportData(iata);
+			if (airportData != null)
+				for (DataPointType type : TYPES)
+					expireStored(airportData, type);
+		}
+	}
+
+	@Override
+	public AtmosphericInformation getAtmosphericInformation(AirportData airportData)
+	{
+		return airportAtmosphericInformation.getAtmosphericInformation(airportData);
+	}
+
+	@Override
+	public TimedDataPoint getTimedDataPoint(AirportData airportData, DataPointType type)
+	{
+		return airportAtmosphericInformation.getTimedDataPoint(airportData, type);
+	}
+
+	@Override
+	public void updateAtmosphericInformation(AirportData airportData, AtmosphericInformation atmosphericInformation)
+	{
+		airportAtmosphericInformation.updateAtmosphericInformation(airportData, atmosphericInformation);
+		AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.of(atmosphericInformation);
+		for (DataPointType type : TYPES)
+			if (snapshot.get(type) != null)
+				scheduleExpiry(airportData, type);
+	}
+
+	@Override
+	public void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint)
+	{
+		airportAtmosphericInformation.updateDataPoint(airportData, type, dataPoint);
+		if (dataPoint != null)
+			scheduleExpiry(airportData, type);
+	}
+
+	@Override
+	public void updateDataPoints(AirportData airportData, AtmosphericInformation dataPoints)
+	{
+		airportAtmosphericInformation.updateDataPoints(airportData, dataPoints);
+		AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.of(dataPoints);
+		for (DataPointType type : TYPES)
+			if (snapshot.get(type) != null)
+				scheduleExpiry(airportData, type);
+	}
+
+	@Override
+	public void restoreDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint, long updateTime)
+	{
+		airportAtmosphericInformation.restoreDataPoint(airportData, type, dataPoint, updateTime);
+		if (dataPoint != null)
+			expireStored(airportData, type);
+	}
+
+	@Override
+	public long expireDataPoint(AirportData airportData, DataPointType type, long updatedBefore)
+	{
+		return airportAtmosphericInformation.expireDataPoint(airportData, type, updatedBefore);
+	}
+
+	@Override
+	public void clearAtmosphericInformation(AirportData airportData)
+	{
+		airportAtmosphericInformation.clearAtmosphericInformation(airportData);
+		expiries.remove(airportData.ordinal(), expiry -> expiry.airport.equals(airportData));
+	}
+
+	@Override
+	public int size(long validTimePeriod)
+	{
+		return airportAtmosphericInformation.size(validTimePeriod);
+	}
+
+	/**
+	 * Stop the timer, data points don't expire anymore
+	 */
+	@Override
+	public void close()
+	{
+		timerWheel.close();
+	}
+
+	private void scheduleExpiry(AirportData airportData, DataPointType type)
+	{
+		long timeToLive = timesToLive[type.ordinal()];
+		if (timeToLive == 0 || airportData.ordinal() < 0)
+			return;
+
+		Expiry expiry = expiries.get(airportData.ordinal(), current -> current.airport.equals(airportData), () -> new Expiry(airportData));
+		if (expiry.scheduled.compareAndSet(type.ordinal(), 0, 1))
+			timerWheel.schedule(timeToLive, () -> expire(expiry, type));
+	}
+
+	/* Stored data point may be older than its time to live already, so it is checked at once */
+	private void expireStored(AirportData airportData, DataPointType type)
+	{
+		if (timesToLive[type.ordinal()] == 0 || airportData.ordinal() < 0)
+			return;
+
+		Expiry expiry = expiries.get(airportData.ordinal(), current -> current.airport.equals(airportData), () -> new Expiry(airportData));
+		if (expiry.scheduled.compareAndSet(type.ordinal(), 0, 1))
+			expire(expiry, type);
+	}
+
+	/* Flag is reset before the check, so update seen as an earlier one schedules expiry by itself */
+	private void expire(Expiry expiry, DataPointType type)
+	{
+		long timeToLive = timesToLive[type.ordinal()];
+		expiry.scheduled.set(type.ordinal(), 0);
+		long now = System.currentTimeMillis();
+		long updateTime = airportAtmosphericInformation.expireDataPoint(expiry.airport, type, now - timeToLive);
+		if (updateTime > 0 && expiry.scheduled.compareAndSet(type.ordinal(), 0, 1))
+			timerWheel.schedule(updateTime + timeToLive - now, () -> expire(expiry, type));
+	}
+
+	/**
+	 * Expiry flags of a single airport
+	 */
+	private static class Expiry
+	{
+		private final AirportData airport;
+
+		/* 1 if expiry of the data point is scheduled, by type ordinal */
+		private final AtomicIntegerArray scheduled = new AtomicIntegerArray(TYPES.length);
+
+		private Expiry(AirportData airport)
+		{
+			this.airport = airport;
+		}
+	}
+}
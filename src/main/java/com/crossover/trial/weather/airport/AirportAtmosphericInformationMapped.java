@@ -0,0 +1,93 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.data.AirportData;
+import org.jvnet.hk2.annotations.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Off-heap atmospheric information storage, persisted to memory-mapped files: data point slots are written in place
+ * to the mapped chunks of the data file, and the owner of every ordinal is kept in the owners file.
+ * <p>
+ * On start the owners are restored for the airports, which have the same ordinals in the airport database,
+ * so it should be persisted as well, see {@link AirportDatabaseMapped}.
+ */
+@Service
+public class AirportAtmosphericInformationMapped extends AirportAtmosphericInformationOffHeap implements Closeable
+{
+	/* Owner record layout: generation, iata (length byte and characters) */
+	private static final int GENERATION_OFFSET = 0;
+	private static final int IATA_OFFSET = 4;
+	private static final int IATA_SIZE = 12;
+	private static final int OWNER_RECORD_SIZE = 16;
+
+	/* Data point slots */
+	private final MappedFile slots;
+
+	/* Owners by ordinal, empty iata for the removed ones */
+	private final MappedFile ownerRecords;
+
+	/**
+	 * Open the storage, restoring atmospheric information of the airports in the database
+	 *
+	 * @param directory       directory for the storage files
+	 * @param airportDatabase airport database with the same ordinals, as used with this storage before
+	 * @throws IOException if the files can't be opened
+	 */
+	public AirportAtmosphericInformationMapped(Path directory, AirportDatabase airportDatabase) throws IOException
+	{
+		slots = new MappedFile(directory.resolve("atmosphere.dat"), CHUNK_SIZE);
+		ownerRecords = new MappedFile(directory.resolve("atmosphere-owners.dat"), CHUNK_AIRPORTS * OWNER_RECORD_SIZE);
+
+		for (int ordinal = 0; ordinal < ownerRecords.getChunksNumber() * CHUNK_AIRPORTS; ordinal++)
+		{
+			ByteBuffer chunk = ownerRecords.getChunk(ordinal / CHUNK_AIRPORTS);
+			int offset = (ordinal % CHUNK_AIRPORTS) * OWNER_RECORD_SIZE;
+			int generation = chunk.getInt(offset + GENERATION_OFFSET);
+			if (generation == 0)
+				continue;
+
+			/* Generation of the removed owner may still be stored in the slots */
+			restoreGeneration(generation);
+			AirportData airportData = airportDatabase.getAirportData(MappedFile.getString(chunk, offset + IATA_OFFSET));
+			if (airportData != null && airportData.ordinal() == ordinal)
+				restoreOwner(airportData, generation);
+		}
+	}
+
+	@Override
+	protected ByteBuffer createChunk(int index)
+	{
+		return slots.getChunk(index);
+	}
+
+	@Override
+	protected synchronized void ownerChanged(int ordinal, AirportData airport, int generation)
+	{
+		ByteBuffer chunk = ownerRecords.getChunk(ordinal / CHUNK_AIRPORTS);
+		int offset = (ordinal % CHUNK_AIRPORTS) * OWNER_RECORD_SIZE;
+		int stored = chunk.getInt(offset + GENERATION_OFFSET);
+		if (airport == null ? stored != generation : stored > generation)
+			return;
+
+		/* Airport, which code can't be stored, is not restored */
+		String iata = airport == null || !MappedFile.fits(IATA_SIZE, airport.getIata()) ? null : airport.getIata();
+		MappedFile.putString(chunk, offset + IATA_OFFSET, IATA_SIZE, iata);
+		chunk.putInt(offset + GENERATION_OFFSET, generation);
+	}
+
+	/**
+	 * Write all changes to the storage device and close the files
+	 *
+	 * @throws IOException if the files can't be closed
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		slots.close();
+		ownerRecords.close();
+	}
+}
@@ -1,55 +1,232 @@
 package com.crossover.trial.weather.airport;
 
+import com.crossover.trial.weather.common.FreshnessCounter;
+import com.crossover.trial.weather.common.OrdinalArray;
 import com.crossover.trial.weather.data.AirportData;
 import com.crossover.trial.weather.data.AtmosphericInformation;
-import com.crossover.trial.weather.data.AtmosphericInformationHolder;
+import com.crossover.trial.weather.data.AtmosphericInformationSnapshot;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.TimedDataPoint;
 import org.jvnet.hk2.annotations.Service;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * In-memory implementation of AirportAtmosphericInformation.
- * AtmosphericInformation is cloned to prevent direct data manipulation.
- * Other data types are read-only
+ * Data points are kept in separate atomic slots for each type along with their update times, so concurrent updates
+ * of different types never conflict. AtmosphericInformation is returned as immutable snapshot, built on the first
+ * request after an update and cached until the next one. Other data types are read-only
+ * <p>
+ * Airport entries are kept in the array indexed by airport ordinal, so airports should be registered in the airport
+ * database. Entry keeps its airport, so the entry of the removed airport is never used for another one, which got
+ * the same ordinal.
+ * <p>
+ * Entries are counted by their last update time, so number of the entries updated within a day is told without a
+ * scan.
  */
 @Service
 public class AirportAtmosphericInformationMemory implements AirportAtmosphericInformation
 {
-	private ConcurrentMap<AirportData, AtmosphericInformation> atmosphericInformationMap;
-	private ConcurrentMap<AirportData, Long> atmosphericInformationUpdateTime;
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	/* Airport entries by airport ordinal */
+	private OrdinalArray<Entry> entries;
+
+	private FreshnessCounter freshnessCounter;
 
 	public AirportAtmosphericInformationMemory()
 	{
-		atmosphericInformationMap = new ConcurrentHashMap<>();
-		atmosphericInformationUpdateTime = new ConcurrentHashMap<>();
+		entries = new OrdinalArray<>();
+		freshnessCounter = new FreshnessCounter();
 	}
 
 	@Override
 	public AtmosphericInformation getAtmosphericInformation(AirportData airportData)
 	{
-		AtmosphericInformation atmosphericInformation = atmosphericInformationMap.get(airportData);
-		return atmosphericInformation == null ? null : new AtmosphericInformationHolder(atmosphericInformation);
+		Entry entry = entries.get(airportData.ordinal());
+		return entry == null || !entry.airport.equals(airportData) ? null : entry.getSnapshot();
+	}
+
+	@Override
+	public TimedDataPoint getTimedDataPoint(AirportData airportData, DataPointType type)
+	{
+		Entry entry = entries.get(airportData.ordinal());
+		return entry == null || !entry.airport.equals(airportData) ? null : entry.dataPoints.get(type.ordinal());
 	}
 
 	@Override
 	public void updateAtmosphericInformation(AirportData airportData, AtmosphericInformation atmosphericInformation)
 	{
-		atmosphericInformationMap.put(airportData, new AtmosphericInformationHolder(atmosphericInformation));
-		atmosphericInformationUpdateTime.put(airportData, System.currentTimeMillis());
+		AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.of(atmosphericInformation);
+		Entry entry = getEntry(airportData);
+		long updateTime = System.currentTimeMillis();
+		for (DataPointType type : TYPES)
+			entry.dataPoints.set(type.ordinal(), timed(snapshot.get(type), updateTime));
+		update(entry, updateTime);
+	}
+
+	@Override
+	public void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint)
+	{
+		Entry entry = getEntry(airportData);
+		long updateTime = System.currentTimeMillis();
+		entry.dataPoints.set(type.ordinal(), timed(dataPoint, updateTime));
+		update(entry, updateTime);
+	}
+
+	@Override
+	public void updateDataPoints(AirportData airportData, AtmosphericInformation dataPoints)
+	{
+		AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.of(dataPoints);
+		Entry entry = getEntry(airportData);
+		long updateTime = System.currentTimeMillis();
+		for (DataPointType type : TYPES)
+		{
+			DataPoint dataPoint = snapshot.get(type);
+			if (dataPoint == null)
+				continue;
+
+			entry.dataPoints.set(type.ordinal(), new TimedDataPoint(updateTime, dataPoint));
+		}
+		update(entry, updateTime);
+	}
+
+	/* Entry keeps the latest update time of its data points, so it is not counted by the older restored one */
+	@Override
+	public void restoreDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint, long updateTime)
+	{
+		Entry entry = getEntry(airportData);
+		entry.dataPoints.set(type.ordinal(), timed(dataPoint, updateTime));
+		if (updateTime > FreshnessCounter.getUpdateTime(entry.updateTime))
+			freshnessCounter.update(entry.updateTime, updateTime);
+		entry.version.incrementAndGet();
+	}
+
+	@Override
+	public long expireDataPoint(AirportData airportData, DataPointType type, long updatedBefore)
+	{
+		Entry entry = entries.get(airportData.ordinal());
+		if (entry == null || !entry.airport.equals(airportData))
+			return 0;
+
+		/* Every update stores a new holder, so the holder is replaced, if the data point was updated since the check,
+		   even with the same data point instance */
+		TimedDataPoint timedDataPoint = entry.dataPoints.get(type.ordinal());
+		if (timedDataPoint == null)
+			return 0;
+		if (timedDataPoint.getTime() > updatedBefore)
+			return timedDataPoint.getTime();
+		if (!entry.dataPoints.compareAndSet(type.ordinal(), timedDataPoint, null))
+		{
+			TimedDataPoint updated = entry.dataPoints.get(type.ordinal());
+			return updated == null ? 0 : updated.getTime();
+		}
+
+		entry.version.incrementAndGet();
+		return 0;
 	}
 
 	@Override
 	public void clearAtmosphericInformation(AirportData airportData)
 	{
-		atmosphericInformationMap.remove(airportData);
-		atmosphericInformationUpdateTime.remove(airportData);
+		Entry entry = entries.get(airportData.ordinal());
+		if (entry == null || !entry.airport.equals(airportData))
+			return;
+
+		entries.remove(airportData.ordinal(), current -> current == entry);
+		freshnessCounter.remove(entry.updateTime);
 	}
 
 	@Override
 	public int size(long validTimePeriod)
 	{
-		long updatedAfter = System.currentTimeMillis() - validTimePeriod;
-		return (int) atmosphericInformationUpdateTime.values().stream().filter(x -> x > updatedAfter).count();
+		long now = System.currentTimeMillis();
+		if (freshnessCounter.covers(validTimePeriod))
+			return freshnessCounter.size(validTimePeriod, now);
+
+		long updatedAfter = now - validTimePeriod;
+		int[] size = {0};
+		entries.forEach(entry ->
+		{
+			if (FreshnessCounter.getUpdateTime(entry.updateTime) > updatedAfter)
+				size[0]++;
+		});
+		return size[0];
+	}
+
+	/* Called after data points are set, so snapshot built before that is never treated as current */
+	private void update(Entry entry, long updateTime)
+	{
+		freshnessCounter.update(entry.updateTime, updateTime);
+		entry.version.incrementAndGet();
+	}
+
+	private static TimedDataPoint timed(DataPoint dataPoint, long updateTime)
+	{
+		return dataPoint == null ? null : new TimedDataPoint(updateTime, dataPoint);
+	}
+
+	private Entry getEntry(AirportData airportData)
+	{
+		if (airportData.ordinal() < 0)
+			throw new IllegalArgumentException("Airport is not registered: " + airportData.getIata());
+		return entries.get(airportData.ordinal(), entry -> entry.airport.equals(airportData), () -> new Entry(airportData));
+	}
+
+	/**
+	 * Atmospheric information of a single airport
+	 */
+	private static class Entry
+	{
+		private final AirportData airport;
+
+		/* Data points with their last update times by type ordinal, a new holder is stored on every update */
+		private final AtomicReferenceArray<TimedDataPoint> dataPoints = new AtomicReferenceArray<>(TYPES.length);
+
+		/* Incremented after every data point update */
+		private final AtomicLong version = new AtomicLong();
+
+		/* Snapshot of the data points, valid while its version is the current one */
+		private volatile CachedSnapshot cachedSnapshot;
+
+		/* Changed by the freshness counter */
+		private final AtomicLong updateTime = new AtomicLong();
+
+		private Entry(AirportData airport)
+		{
+			this.airport = airport;
+		}
+
+		private AtmosphericInformationSnapshot getSnapshot()
+		{
+			CachedSnapshot cached = cachedSnapshot;
+			long current = version.get();
+			if (cached != null && cached.version == current)
+				return cached.snapshot;
+
+			DataPoint[] points = new DataPoint[TYPES.length];
+			for (int i = 0; i < points.length; i++)
+			{
+				TimedDataPoint timedDataPoint = dataPoints.get(i);
+				points[i] = timedDataPoint == null ? null : timedDataPoint.getDataPoint();
+			}
+			AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.of(points);
+			cachedSnapshot = new CachedSnapshot(snapshot, current);
+			return snapshot;
+		}
+	}
+
+	private static class CachedSnapshot
+	{
+		private final AtmosphericInformationSnapshot snapshot;
+		private final long version;
+
+		private CachedSnapshot(AtmosphericInformationSnapshot snapshot, long version)
+		{
+			this.snapshot = snapshot;
+			this.version = version;
+		}
 	}
 }
@@ -0,0 +1,405 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.common.FreshnessCounter;
+import com.crossover.trial.weather.common.OrdinalArray;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.AtmosphericInformationSnapshot;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointBuilder;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.TimedDataPoint;
+import org.jvnet.hk2.annotations.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Off-heap implementation of AirportAtmosphericInformation.
+ * Data points are kept in direct buffer chunks with a fixed-stride slot for every (airport ordinal, data point type)
+ * pair, so heap holds only the owner of every ordinal. Slots are guarded by striped locks: writers take the write
+ * lock, readers try optimistic read first and fall back to the read lock if the slot was changed meanwhile.
+ * <p>
+ * Data points are materialized on every read: a view backed by the slot would change along with it, while the
+ * returned AtmosphericInformation is expected to be an immutable snapshot.
+ * <p>
+ * Every new owner of the ordinal gets a new generation, which is stored in the slots it writes. Slots of another
+ * generation are treated as empty, so data of the removed airport is never returned for another one, which got
+ * the same ordinal.
+ * <p>
+ * Owners are counted by their last update time, so number of the airports updated within a day is told without a
+ * scan.
+ */
+@Service
+public class AirportAtmosphericInformationOffHeap implements AirportAtmosphericInformation
+{
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	/* Slot layout: update time, mean, first, second, third, count, owner generation, presence flag */
+	private static final int TIME_OFFSET = 0;
+	private static final int MEAN_OFFSET = 8;
+	private static final int FIRST_OFFSET = 16;
+	private static final int SECOND_OFFSET = 20;
+	private static final int THIRD_OFFSET = 24;
+	private static final int COUNT_OFFSET = 28;
+	private static final int GENERATION_OFFSET = 32;
+	private static final int PRESENT_OFFSET = 36;
+	private static final int SLOT_SIZE = 40;
+
+	/**
+	 * Number of airports in a single buffer chunk
+	 */
+	protected static final int CHUNK_AIRPORTS = 1024;
+
+	private static final int CHUNK_SLOTS = CHUNK_AIRPORTS * TYPES.length;
+
+	/**
+	 * Size of a single buffer chunk in bytes
+	 */
+	protected static final int CHUNK_SIZE = CHUNK_SLOTS * SLOT_SIZE;
+
+	/* Number of slot locks, power of two */
+	private static final int LOCK_STRIPES = 64;
+
+	/* Buffer chunks, grown on demand */
+	private volatile ByteBuffer[] chunks;
+
+	private final StampedLock[] locks;
+
+	/* Current owner of every airport ordinal */
+	private OrdinalArray<Owner> owners;
+
+	private AtomicInteger lastGeneration;
+
+	private FreshnessCounter freshnessCounter;
+
+	public AirportAtmosphericInformationOffHeap()
+	{
+		chunks = new ByteBuffer[0];
+		locks = new StampedLock[LOCK_STRIPES];
+		for (int i = 0; i < LOCK_STRIPES; i++)
+			locks[i] = new StampedLock();
+		owners = new OrdinalArray<>();
+		lastGeneration = new AtomicInteger();
+		freshnessCounter = new FreshnessCounter();
+	}
+
+	@Override
+	public AtmosphericInformation getAtmosphericInformation(AirportData airportData)
+	{
+		Owner owner = owners.get(airportData.ordinal());
+		if (owner == null || !owner.airport.equals(airportData))
+			return null;
+
+		DataPoint[] dataPoints = new DataPoint[TYPES.length];
+		for (DataPointType type : TYPES)
+			dataPoints[type.ordinal()] = readDataPoint(getSlot(airportData.ordinal(), type), owner.generation);
+		return AtmosphericInformationSnapshot.of(dataPoints);
+	}
+
+	@Override
+	public TimedDataPoint getTimedDataPoint(AirportData airportData, DataPointType type)
+	{
+		Owner owner = owners.get(airportData.ordinal());
+		if (owner == null || !owner.airport.equals(airportData))
+			return null;
+
+		int slot = getSlot(airportData.ordinal(), type);
+		ByteBuffer[] current = chunks;
+		if (slot / CHUNK_SLOTS >= current.length)
+			return null;
+
+		ByteBuffer chunk = current[slot / CHUNK_SLOTS];
+		int offset = (slot % CHUNK_SLOTS) * SLOT_SIZE;
+		StampedLock lock = locks[slot & (LOCK_STRIPES - 1)];
+		long stamp = lock.readLock();
+		try
+		{
+			DataPoint dataPoint = readDataPoint(chunk, offset, owner.generation);
+			return dataPoint == null ? null : new TimedDataPoint(chunk.getLong(offset + TIME_OFFSET), dataPoint);
+		} finally
+		{
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public void updateAtmosphericInformation(AirportData airportData, AtmosphericInformation atmosphericInformation)
+	{
+		AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.of(atmosphericInformation);
+		Owner owner = getOwner(airportData);
+		long updateTime = System.currentTimeMillis();
+		for (DataPointType type : TYPES)
+			writeDataPoint(getSlot(airportData.ordinal(), type), owner.generation, snapshot.get(type), updateTime);
+		freshnessCounter.update(owner.updateTime, updateTime);
+	}
+
+	@Override
+	public void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint)
+	{
+		Owner owner = getOwner(airportData);
+		long updateTime = System.currentTimeMillis();
+		writeDataPoint(getSlot(airportData.ordinal(), type), owner.generation, dataPoint, updateTime);
+		freshnessCounter.update(owner.updateTime, updateTime);
+	}
+
+	@Override
+	public void updateDataPoints(AirportData airportData, AtmosphericInformation dataPoints)
+	{
+		AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.of(dataPoints);
+		Owner owner = getOwner(airportData);
+		long updateTime = System.currentTimeMillis();
+		for (DataPointType type : TYPES)
+			if (snapshot.get(type) != null)
+				writeDataPoint(getSlot(airportData.ordinal(), type), owner.generation, snapshot.get(type), updateTime);
+		freshnessCounter.update(owner.updateTime, updateTime);
+	}
+
+	/* Owner keeps the latest update time of its data points, so it is not counted by the older restored one */
+	@Override
+	public void restoreDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint, long updateTime)
+	{
+		Owner owner = getOwner(airportData);
+		writeDataPoint(getSlot(airportData.ordinal(), type), owner.generation, dataPoint, updateTime);
+		if (updateTime > FreshnessCounter.getUpdateTime(owner.updateTime))
+			freshnessCounter.update(owner.updateTime, updateTime);
+	}
+
+	@Override
+	public long expireDataPoint(AirportData airportData, DataPointType type, long updatedBefore)
+	{
+		Owner owner = owners.get(airportData.ordinal());
+		if (owner == null || !owner.airport.equals(airportData))
+			return 0;
+
+		int slot = getSlot(airportData.ordinal(), type);
+		ByteBuffer chunk = chunks[slot / CHUNK_SLOTS];
+		int offset = (slot % CHUNK_SLOTS) * SLOT_SIZE;
+		StampedLock lock = locks[slot & (LOCK_STRIPES - 1)];
+		long stamp = lock.writeLock();
+		try
+		{
+			if (chunk.getInt(offset + GENERATION_OFFSET) != owner.generation || chunk.getInt(offset + PRESENT_OFFSET) == 0)
+				return 0;
+
+			long updateTime = chunk.getLong(offset + TIME_OFFSET);
+			if (updateTime > updatedBefore)
+				return updateTime;
+
+			chunk.putInt(offset + PRESENT_OFFSET, 0);
+			return 0;
+		} finally
+		{
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void clearAtmosphericInformation(AirportData airportData)
+	{
+		Owner owner = owners.get(airportData.ordinal());
+		if (owner == null || !owner.airport.equals(airportData))
+			return;
+
+		owners.remove(airportData.ordinal(), current -> current == owner);
+		ownerChanged(airportData.ordinal(), null, owner.generation);
+		freshnessCounter.remove(owner.updateTime);
+	}
+
+	@Override
+	public int size(long validTimePeriod)
+	{
+		long now = System.currentTimeMillis();
+		if (freshnessCounter.covers(validTimePeriod))
+			return freshnessCounter.size(validTimePeriod, now);
+
+		long updatedAfter = now - validTimePeriod;
+		int[] size = {0};
+		owners.forEach(owner ->
+		{
+			if (FreshnessCounter.getUpdateTime(owner.updateTime) > updatedAfter)
+				size[0]++;
+		});
+		return size[0];
+	}
+
+	private Owner getOwner(AirportData airportData)
+	{
+		if (airportData.ordinal() < 0)
+			throw new IllegalArgumentException("Airport is not registered: " + airportData.getIata());
+		ensureCapacity(airportData.ordinal());
+		return owners.get(airportData.ordinal(), owner -> owner.airport.equals(airportData), () ->
+		{
+			int generation = lastGeneration.incrementAndGet();
+			ownerChanged(airportData.ordinal(), airportData, generation);
+			return new Owner(airportData, generation);
+		});
+	}
+
+	/**
+	 * Make the airport the owner of its ordinal with the generation assigned before, e.g. when the slots are
+	 * restored from a persistent storage. Airport is counted by the last update time of its data points.
+	 *
+	 * @param airportData airport
+	 * @param generation  generation of the airport, as stored in its slots
+	 */
+	protected void restoreOwner(AirportData airportData, int generation)
+	{
+		restoreGeneration(generation);
+		ensureCapacity(airportData.ordinal());
+		Owner owner = owners.get(airportData.ordinal(), current -> current.airport.equals(airportData),
+				() -> new Owner(airportData, generation));
+
+		long updateTime = 0;
+		for (DataPointType type : TYPES)
+		{
+			int slot = getSlot(airportData.ordinal(), type);
+			ByteBuffer chunk = chunks[slot / CHUNK_SLOTS];
+			int offset = (slot % CHUNK_SLOTS) * SLOT_SIZE;
+			if (chunk.getInt(offset + GENERATION_OFFSET) == generation)
+				updateTime = Math.max(updateTime, chunk.getLong(offset + TIME_OFFSET));
+		}
+		if (updateTime > 0)
+			freshnessCounter.update(owner.updateTime, updateTime);
+	}
+
+	/**
+	 * Make sure new generations are greater than the one assigned before, e.g. the one restored from a persistent
+	 * storage
+	 *
+	 * @param generation generation assigned before
+	 */
+	protected void restoreGeneration(int generation)
+	{
+		lastGeneration.accumulateAndGet(generation, Math::max);
+	}
+
+	/**
+	 * Called when ordinal gets a new owner or the owner is removed. Removal of the previous owner may be reported
+	 * after the new one is set, so the change of the older generation should be ignored.
+	 *
+	 * @param ordinal    airport ordinal
+	 * @param airport    new owner, or null if the owner is removed
+	 * @param generation generation of the new or removed owner
+	 */
+	protected void ownerChanged(int ordinal, AirportData airport, int generation)
+	{
+	}
+
+	/**
+	 * Create buffer chunk, filled with zeros unless it was filled before by this storage
+	 *
+	 * @param index chunk index
+	 * @return buffer of {@link #CHUNK_SIZE} bytes
+	 */
+	protected ByteBuffer createChunk(int index)
+	{
+		return ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.nativeOrder());
+	}
+
+	private synchronized void ensureCapacity(int ordinal)
+	{
+		int chunksNumber = ordinal / CHUNK_AIRPORTS + 1;
+		if (chunksNumber <= chunks.length)
+			return;
+
+		ByteBuffer[] grown = Arrays.copyOf(chunks, Math.max(chunksNumber, chunks.length * 2));
+		for (int i = chunks.length; i < grown.length; i++)
+			grown[i] = createChunk(i);
+		chunks = grown;
+	}
+
+	private static int getSlot(int ordinal, DataPointType type)
+	{
+		return ordinal * TYPES.length + type.ordinal();
+	}
+
+	private void writeDataPoint(int slot, int generation, DataPoint dataPoint, long updateTime)
+	{
+		ByteBuffer chunk = chunks[slot / CHUNK_SLOTS];
+		int offset = (slot % CHUNK_SLOTS) * SLOT_SIZE;
+		StampedLock lock = locks[slot & (LOCK_STRIPES - 1)];
+		long stamp = lock.writeLock();
+		try
+		{
+			/* Late write of the previous owner should not overwrite data of the new one */
+			if (chunk.getInt(offset + GENERATION_OFFSET) > generation)
+				return;
+
+			chunk.putLong(offset + TIME_OFFSET, updateTime);
+			chunk.putInt(offset + GENERATION_OFFSET, generation);
+			chunk.putInt(offset + PRESENT_OFFSET, dataPoint == null ? 0 : 1);
+			if (dataPoint == null)
+				return;
+
+			chunk.putDouble(offset + MEAN_OFFSET, dataPoint.getMean());
+			chunk.putInt(offset + FIRST_OFFSET, dataPoint.getFirst());
+			chunk.putInt(offset + SECOND_OFFSET, dataPoint.getSecond());
+			chunk.putInt(offset + THIRD_OFFSET, dataPoint.getThird());
+			chunk.putInt(offset + COUNT_OFFSET, dataPoint.getCount());
+		} finally
+		{
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private DataPoint readDataPoint(int slot, int generation)
+	{
+		ByteBuffer[] current = chunks;
+		if (slot / CHUNK_SLOTS >= current.length)
+			return null;
+
+		ByteBuffer chunk = current[slot / CHUNK_SLOTS];
+		int offset = (slot % CHUNK_SLOTS) * SLOT_SIZE;
+		StampedLock lock = locks[slot & (LOCK_STRIPES - 1)];
+		long stamp = lock.tryOptimisticRead();
+		DataPoint dataPoint = readDataPoint(chunk, offset, generation);
+		if (lock.validate(stamp))
+			return dataPoint;
+
+		stamp = lock.readLock();
+		try
+		{
+			return readDataPoint(chunk, offset, generation);
+		} finally
+		{
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private static DataPoint readDataPoint(ByteBuffer chunk, int offset, int generation)
+	{
+		if (chunk.getInt(offset + GENERATION_OFFSET) != generation || chunk.getInt(offset + PRESENT_OFFSET) == 0)
+			return null;
+
+		return new DataPointBuilder()
+				.withMean(chunk.getDouble(offset + MEAN_OFFSET))
+				.withFirst(chunk.getInt(offset + FIRST_OFFSET))
+				.withSecond(chunk.getInt(offset + SECOND_OFFSET))
+				.withThird(chunk.getInt(offset + THIRD_OFFSET))
+				.withCount(chunk.getInt(offset + COUNT_OFFSET))
+				.build();
+	}
+
+	/**
+	 * Airport, which currently owns the ordinal
+	 */
+	private static class Owner
+	{
+		private final AirportData airport;
+		private final int generation;
+
+		/* Changed by the freshness counter */
+		private final AtomicLong updateTime = new AtomicLong();
+
+		private Owner(AirportData airport, int generation)
+		{
+			this.airport = airport;
+			this.generation = generation;
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.common.Calculations;
+import com.crossover.trial.weather.data.AirportData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Airport coordinates in structure-of-arrays form for the full scan. Trigonometry is precomputed into parallel
+ * primitive arrays: cos(latitude) * cos(longitude), cos(latitude) * sin(longitude) and sin(latitude), which are
+ * coordinates of the unit vector pointing to the airport. So the scan loop doesn't touch airport objects
+ * and calls no trigonometric functions: it compares squared chord length to the airport with the one of the
+ * search radius. Distance itself is calculated only for the airports near the search boundary.
+ * <p>
+ * Search with the radius covering the whole globe accepts airports without any calculations. Large stores are
+ * scanned in parallel, split into the chunks in the common fork-join pool.
+ * <p>
+ * Additions are written past the end visible to readers and then the new size is published,
+ * removals swap in copied arrays. Readers use an immutable view and never block.
+ * Writers are expected to be serialized by the caller.
+ */
+public class AirportCoordinateStore
+{
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/* Relative tolerance of chord comparison, airports within it are checked with exact distance calculation */
+	private static final double TOLERANCE = 1e-9;
+	/* Absolute tolerance of chord comparison, matters for very small radius only */
+	private static final double ABSOLUTE_TOLERANCE = 1e-14;
+
+	/* Maximum number of airports scanned by a single task, larger ranges are split in halves and scanned in parallel.
+	   A chunk takes a few microseconds to scan, well above the cost of forking it, and the full airport list of about
+	   7000 entries is split into four of them */
+	private static final int PARALLEL_SCAN_CHUNK = 2048;
+
+	private volatile Columns columns;
+
+	public AirportCoordinateStore()
+	{
+		columns = new Columns(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Add airport to the store
+	 *
+	 * @param airportData airport
+	 */
+	public void add(AirportData airportData)
+	{
+		Columns current = columns;
+		Columns next = current.size < current.airports.length ? current : current.copy(current.airports.length * 2);
+		next.set(current.size, airportData);
+		columns = next.withSize(current.size + 1);
+	}
+
+	/**
+	 * Remove airport from the store
+	 *
+	 * @param airportData airport, the same object which was added
+	 */
+	public void remove(AirportData airportData)
+	{
+		Columns current = columns;
+		for (int i = 0; i < current.size; i++)
+			if (current.airports[i] == airportData)
+			{
+				Columns next = current.copy(current.airports.length);
+				next.set(i, current.airports[current.size - 1]);
+				next.airports[current.size - 1] = null;
+				columns = next.withSize(current.size - 1);
+				return;
+			}
+	}
+
+	/**
+	 * Get all airports around particular one withing stated distance, checking all the airports
+	 *
+	 * @param airport  airport to measure distance to
+	 * @param distance max distance to particular airport (including)
+	 * @return list of the airports
+	 */
+	public List<AirportData> getAirportsAround(AirportData airport, double distance)
+	{
+		Columns current = columns;
+		if (!(distance >= 0))
+			return new ArrayList<>();
+
+		double[] center = toVector(airport);
+		/* Whole globe, only airports with out of range coordinates need the check. Search from such coordinates can't
+		   rely on it, so it goes to the regular scan where chord comparison of not-a-number always leads to the check */
+		if (distance >= Calculations.MAX_DISTANCE && !Double.isNaN(center[0]))
+			return new Scan(current, airport, center, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, distance, 0, current.size).invoke();
+
+		double limit = 4 * Math.pow(Math.sin(Math.min(distance / Calculations.R, Math.PI) / 2), 2);
+		double lowerLimit = limit * (1 - TOLERANCE) - ABSOLUTE_TOLERANCE;
+		double upperLimit = limit * (1 + TOLERANCE) + ABSOLUTE_TOLERANCE;
+		return new Scan(current, airport, center, lowerLimit, upperLimit, distance, 0, current.size).invoke();
+	}
+
+	private static boolean isWithin(AirportData from, AirportData to, double distance)
+	{
+		return Calculations.calculateDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude()) <= distance;
+	}
+
+	/* Out of range coordinates give not-a-number vector, so such airports are never accepted by chord comparison */
+	private static double[] toVector(AirportData airportData)
+	{
+		if (!(airportData.getLatitude() >= -90 && airportData.getLatitude() <= 90 && Double.isFinite(airportData.getLongitude())))
+			return new double[]{Double.NaN, Double.NaN, Double.NaN};
+
+		double latitude = Math.toRadians(airportData.getLatitude());
+		double longitude = Math.toRadians(airportData.getLongitude());
+		return new double[]{Math.cos(latitude) * Math.cos(longitude), Math.cos(latitude) * Math.sin(longitude), Math.sin(latitude)};
+	}
+
+	/**
+	 * Scan of the range of airports. Squared chord lengths below lower limit are accepted, above upper one - rejected,
+	 * airports in between and ones with not-a-number chord are checked with exact distance calculation.
+	 * Infinite lower limit means the whole globe, so chord is not calculated at all.
+	 */
+	private static class Scan extends RecursiveTask<List<AirportData>>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Columns columns;
+		private final AirportData airport;
+		private final double[] center;
+		private final double lowerLimit;
+		private final double upperLimit;
+		private final double distance;
+		private final int from;
+		private final int to;
+
+		private Scan(Columns columns, AirportData airport, double[] center, double lowerLimit, double upperLimit, double distance, int from, int to)
+		{
+			this.columns = columns;
+			this.airport = airport;
+			this.center = center;
+			this.lowerLimit = lowerLimit;
+			this.upperLimit = upperLimit;
+			this.distance = distance;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<AirportData> compute()
+		{
+			if (to - from > PARALLEL_SCAN_CHUNK)
+			{
+				int middle = (from + to) >>> 1;
+				Scan right = new Scan(columns, airport, center, lowerLimit, upperLimit, distance, middle, to);
+				right.fork();
+				List<AirportData> result = new Scan(columns, airport, center, lowerLimit, upperLimit, distance, from, middle).compute();
+				result.addAll(right.join());
+				return result;
+			}
+
+			List<AirportData> result = new ArrayList<>();
+			double[] x = columns.x;
+			if (lowerLimit == Double.POSITIVE_INFINITY)
+			{
+				for (int i = from; i < to; i++)
+					if (!Double.isNaN(x[i]) || isWithin(airport, columns.airports[i], distance))
+						result.add(columns.airports[i]);
+				return result;
+			}
+
+			double[] y = columns.y;
+			double[] z = columns.z;
+			for (int i = from; i < to; i++)
+			{
+				double dx = x[i] - center[0];
+				double dy = y[i] - center[1];
+				double dz = z[i] - center[2];
+				double chord = dx * dx + dy * dy + dz * dz;
+				if (chord < lowerLimit || !(chord > upperLimit) && isWithin(airport, columns.airports[i], distance))
+					result.add(columns.airports[i]);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Parallel arrays of airport coordinates. Elements below size are never changed after the view is published.
+	 */
+	private static class Columns
+	{
+		private final AirportData[] airports;
+		private final double[] x;
+		private final double[] y;
+		private final double[] z;
+		private final int size;
+
+		private Columns(int capacity)
+		{
+			this(new AirportData[capacity], new double[capacity], new double[capacity], new double[capacity], 0);
+		}
+
+		private Columns(AirportData[] airports, double[] x, double[] y, double[] z, int size)
+		{
+			this.airports = airports;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.size = size;
+		}
+
+		private Columns copy(int capacity)
+		{
+			return new Columns(Arrays.copyOf(airports, capacity), Arrays.copyOf(x, capacity),
+					Arrays.copyOf(y, capacity), Arrays.copyOf(z, capacity), size);
+		}
+
+		private Columns withSize(int size)
+		{
+			return new Columns(airports, x, y, z, size);
+		}
+
+		private void set(int index, AirportData airportData)
+		{
+			double[] vector = toVector(airportData);
+			airports[index] = airportData;
+			x[index] = vector[0];
+			y[index] = vector[1];
+			z[index] = vector[2];
+		}
+	}
+}
@@ -1,17 +1,21 @@
 package com.crossover.trial.weather.airport;
 
 import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.GeoBox;
+import com.crossover.trial.weather.data.GeoPolygon;
 import org.jvnet.hk2.annotations.Contract;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 @Contract
 public interface AirportDatabase
 {
 
 	/**
-	 * Add airport to the database
+	 * Add airport to the database and assign it a dense ordinal, see {@link AirportData#ordinal()}
 	 *
 	 * @param airportData airport
 	 */
@@ -32,6 +36,14 @@ public interface AirportDatabase
 	 */
 	AirportData getAirportData(String iata);
 
+	/**
+	 * Get airport by iata code packed with {@link com.crossover.trial.weather.common.IataCodec}, without any allocations
+	 *
+	 * @param packedIata packed iata code
+	 * @return airport data for specific iata, or null if none present or the code is out of range
+	 */
+	AirportData getAirportData(int packedIata);
+
 	/**
 	 * Get all airports around particular one withing stated distance
 	 *
@@ -41,5 +53,54 @@ public interface AirportDatabase
 	 */
 	List<AirportData> getAirportsAround(AirportData airport, double distance);
 
+	/**
+	 * Get all airports around particular point withing stated distance
+	 *
+	 * @param latitude  latitude of the point in degrees
+	 * @param longitude longitude of the point in degrees
+	 * @param distance  max distance to the point (including)
+	 * @return list of the airports
+	 */
+	List<AirportData> getAirportsAround(double latitude, double longitude, double distance);
+
+	/**
+	 * Get airports nearest to particular one, ordered by distance. Airport itself is included, if it passes the filter
+	 *
+	 * @param airport airport to measure distance to
+	 * @param count   maximum number of airports
+	 * @param filter  condition for the airports to be included
+	 * @return list of the airports
+	 */
+	List<AirportData> getNearestAirports(AirportData airport, int count, Predicate<AirportData> filter);
+
+	/**
+	 * Get all airports inside the box, borders included
+	 *
+	 * @param box geographical box
+	 * @return list of the airports
+	 */
+	List<AirportData> getAirportsInBox(GeoBox box);
+
+	/**
+	 * Get all airports inside the polygon
+	 *
+	 * @param polygon geographical polygon
+	 * @return list of the airports
+	 */
+	List<AirportData> getAirportsInPolygon(GeoPolygon polygon);
+
 	Collection<String> getAllAirportIata();
+
+	/**
+	 * Begin bulk load. Added and removed airports are visible immediately, but spatial search structures are not
+	 * updated one by one, they are rebuilt when bulk load ends
+	 */
+	void beginBulkLoad();
+
+	/**
+	 * End bulk load and rebuild spatial search structures in the background
+	 *
+	 * @return future completed when rebuilt structures are in use
+	 */
+	CompletableFuture<Void> endBulkLoad();
 }
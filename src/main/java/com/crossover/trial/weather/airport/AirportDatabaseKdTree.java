@@ -0,0 +1,17 @@
+package com.crossover.trial.weather.airport;
+
+import org.jvnet.hk2.annotations.Service;
+
+/**
+ * In-memory implementation, which uses k-d tree over unit-sphere vectors for the geographical search.
+ * Scales better than the default grid index when airports are dense or search radius is large,
+ * so full scan is used only for the radius covering the most of the globe.
+ */
+@Service
+public class AirportDatabaseKdTree extends AirportDatabaseMemory
+{
+	public AirportDatabaseKdTree()
+	{
+		super(AirportKdTreeIndex::new, 10000);
+	}
+}
@@ -0,0 +1,98 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.data.AirportData;
+import org.jvnet.hk2.annotations.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * In-memory airport database, persisted to the memory-mapped file of fixed-size records. Record of every airport
+ * is kept at its ordinal and is changed in place along with the airport. On start the airports are restored from
+ * the file with the same ordinals, so data kept by ordinal elsewhere stays with its airport. Index is rebuilt on the
+ * background, the same way as after the bulk load.
+ */
+@Service
+public class AirportDatabaseMapped extends AirportDatabaseMemory implements Closeable
+{
+	/* Record layout: iata (length byte and characters), latitude, longitude */
+	private static final int IATA_OFFSET = 0;
+	private static final int IATA_SIZE = 16;
+	private static final int LATITUDE_OFFSET = 16;
+	private static final int LONGITUDE_OFFSET = 24;
+	private static final int RECORD_SIZE = 32;
+
+	/* Number of records in a single mapped chunk */
+	private static final int CHUNK_RECORDS = 1024;
+
+	/* Airport records by ordinal, empty iata for the free ones */
+	private final MappedFile records;
+
+	/**
+	 * Open the database, restoring airports from the file
+	 *
+	 * @param directory directory for the database file
+	 * @throws IOException if the file can't be opened
+	 */
+	public AirportDatabaseMapped(Path directory) throws IOException
+	{
+		records = new MappedFile(directory.resolve("airports.dat"), CHUNK_RECORDS * RECORD_SIZE);
+
+		beginBulkLoad();
+		for (int ordinal = 0; ordinal < records.getChunksNumber() * CHUNK_RECORDS; ordinal++)
+		{
+			ByteBuffer chunk = records.getChunk(ordinal / CHUNK_RECORDS);
+			int offset = (ordinal % CHUNK_RECORDS) * RECORD_SIZE;
+			String iata = MappedFile.getString(chunk, offset + IATA_OFFSET);
+			if (!iata.isEmpty())
+				restoreAirport(new AirportData(iata, chunk.getDouble(offset + LATITUDE_OFFSET), chunk.getDouble(offset + LONGITUDE_OFFSET)), ordinal);
+		}
+		endBulkLoad();
+	}
+
+	/**
+	 * Add airport and write its record. Airport code should have up to 15 ASCII characters.
+	 *
+	 * @param airportData airport
+	 */
+	@Override
+	public synchronized void addAirport(AirportData airportData)
+	{
+		if (!MappedFile.fits(IATA_SIZE, airportData.getIata()))
+			throw new IllegalArgumentException("Airport code can't be stored: " + airportData.getIata());
+
+		super.addAirport(airportData);
+		ByteBuffer chunk = records.getChunk(airportData.ordinal() / CHUNK_RECORDS);
+		int offset = (airportData.ordinal() % CHUNK_RECORDS) * RECORD_SIZE;
+		chunk.putDouble(offset + LATITUDE_OFFSET, airportData.getLatitude());
+		chunk.putDouble(offset + LONGITUDE_OFFSET, airportData.getLongitude());
+		MappedFile.putString(chunk, offset + IATA_OFFSET, IATA_SIZE, airportData.getIata());
+	}
+
+	@Override
+	public synchronized void removeAirport(AirportData airport)
+	{
+		AirportData removed = airports.get(airport.getIata());
+		if (removed == null)
+			return;
+
+		/* Removed airport loses its ordinal */
+		int ordinal = removed.ordinal();
+		super.removeAirport(airport);
+		ByteBuffer chunk = records.getChunk(ordinal / CHUNK_RECORDS);
+		MappedFile.putString(chunk, (ordinal % CHUNK_RECORDS) * RECORD_SIZE + IATA_OFFSET, IATA_SIZE, null);
+	}
+
+	/**
+	 * Write all changes to the storage device and close the file
+	 *
+	 * @throws IOException if the file can't be closed
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		records.close();
+	}
+}
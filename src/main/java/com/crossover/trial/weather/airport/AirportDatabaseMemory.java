@@ -1,57 +1,289 @@
 package com.crossover.trial.weather.airport;
 
 import com.crossover.trial.weather.common.Calculations;
+import com.crossover.trial.weather.common.IataCodec;
 import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AirportOrdinals;
+import com.crossover.trial.weather.data.GeoBox;
+import com.crossover.trial.weather.data.GeoPolygon;
 import org.jvnet.hk2.annotations.Service;
 
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * In-memory implementation. Good for performance, bad for scalability beyond particular size.
+ * Airports are additionally kept in the spatial index, so radius search does not need to check every airport.
+ * Grid index is used by default. Search with large radius covers significant part of all airports anyway,
+ * so it scans the coordinate store instead of the index.
+ * <p>
+ * During bulk load the index is not updated. Added airports are staged and checked one by one on every search,
+ * index results are checked against the airports map. When bulk load ends, a fresh index is built from all the
+ * airports on the background thread and published together with the airports changed meanwhile.
+ * <p>
+ * Ordinals of removed airports are taken from them and reused, starting from the last removed one.
+ * <p>
+ * Airports with three-letter uppercase codes are additionally kept in the flat array indexed by packed code,
+ * so most lookups by code don't need hashing.
  */
 @Service
 public class AirportDatabaseMemory implements AirportDatabase
 {
+	public final static Logger LOGGER = Logger.getLogger(AirportDatabaseMemory.class.getName());
 
 	/* Map iata -> airport */
 	protected ConcurrentMap<String, AirportData> airports;
 
+	/* Packed iata -> airport, for the codes supported by IataCodec, kept in sync with airports map */
+	protected AtomicReferenceArray<AirportData> packedAirports;
+
+	/* Spatial index for the radius search with the airports staged during bulk load, kept in sync with airports map */
+	protected volatile IndexState indexState;
+
+	/* Creates empty index for the rebuild */
+	protected Supplier<AirportSpatialIndex> indexFactory;
+
+	/* Coordinates of all airports for the full scan, kept in sync with airports map */
+	protected AirportCoordinateStore coordinates;
+
+	/* Search radius (km), starting from which full scan is faster than the index */
+	protected double fullScanDistance;
+
+	/* Ordinals of the registered airports, guarded by this */
+	private final AirportOrdinals ordinals;
+
+	/* Bulk load is in progress, guarded by this */
+	private boolean bulkLoad;
+
+	/* Single thread for the index rebuilds, so they never run in parallel */
+	private final ExecutorService rebuildExecutor;
+
 	public AirportDatabaseMemory()
+	{
+		this(AirportGridIndex::new, 1000);
+	}
+
+	protected AirportDatabaseMemory(Supplier<AirportSpatialIndex> indexFactory, double fullScanDistance)
 	{
 		airports = new ConcurrentHashMap<>();
+		packedAirports = new AtomicReferenceArray<>(IataCodec.CODES_NUMBER);
+		coordinates = new AirportCoordinateStore();
+		indexState = new IndexState(indexFactory.get(), null);
+		this.indexFactory = indexFactory;
+		this.fullScanDistance = fullScanDistance;
+		ordinals = new AirportOrdinals();
+
+		rebuildExecutor = Executors.newSingleThreadExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "airport-index-rebuild");
+			thread.setDaemon(true);
+			return thread;
+		});
 	}
 
+	/* Writes are rare, so they are serialized to keep map and index consistent. Readers are not blocked. */
 	@Override
-	public void addAirport(AirportData airportData)
+	public synchronized void addAirport(AirportData airportData)
+	{
+		AirportData previous = airports.get(airportData.getIata());
+		ordinals.assign(airportData, previous);
+		putAirport(airportData, previous);
+	}
+
+	/**
+	 * Add airport, which keeps the ordinal assigned before, e.g. the one restored from a persistent storage.
+	 * Airports should be restored in the order of their ordinals before any other change. Skipped ordinals become
+	 * free.
+	 *
+	 * @param airportData airport
+	 * @param ordinal     ordinal of the airport
+	 */
+	protected synchronized void restoreAirport(AirportData airportData, int ordinal)
+	{
+		if (airports.containsKey(airportData.getIata()))
+			throw new IllegalArgumentException("Airport can't be restored: " + airportData.getIata() + ", ordinal: " + ordinal);
+
+		ordinals.restore(airportData, ordinal);
+		putAirport(airportData, null);
+	}
+
+	/* Put airport with the assigned ordinal to the map, coordinates and index, replacing the previous one */
+	private void putAirport(AirportData airportData, AirportData previous)
 	{
 		airports.put(airportData.getIata(), airportData);
+		int code = IataCodec.encode(airportData.getIata());
+		if (code >= 0)
+			packedAirports.set(code, airportData);
+		if (previous != null)
+			coordinates.remove(previous);
+		coordinates.add(airportData);
+
+		IndexState state = indexState;
+		if (state.staged != null)
+		{
+			state.staged.put(airportData.getIata(), airportData);
+			return;
+		}
+		if (previous != null)
+			state.index.remove(previous);
+		state.index.add(airportData);
+	}
+
+	@Override
+	public synchronized void removeAirport(AirportData airport)
+	{
+		AirportData removed = airports.remove(airport.getIata());
+		if (removed == null)
+			return;
+		int code = IataCodec.encode(removed.getIata());
+		if (code >= 0)
+			packedAirports.set(code, null);
+		ordinals.release(removed);
+		coordinates.remove(removed);
+
+		IndexState state = indexState;
+		if (state.staged != null)
+			state.staged.remove(removed.getIata());
+		else
+			state.index.remove(removed);
+	}
+
+	@Override
+	public synchronized void beginBulkLoad()
+	{
+		bulkLoad = true;
+		if (indexState.staged == null)
+			indexState = new IndexState(indexState.index, new ConcurrentHashMap<>());
 	}
 
 	@Override
-	public void removeAirport(AirportData airport)
+	public synchronized CompletableFuture<Void> endBulkLoad()
+	{
+		if (!bulkLoad)
+			return CompletableFuture.completedFuture(null);
+
+		bulkLoad = false;
+		/* Most callers don't wait for the rebuild, so its failure is logged here */
+		return CompletableFuture.runAsync(this::rebuildIndex, rebuildExecutor).whenComplete((result, e) ->
+		{
+			if (e != null)
+				LOGGER.log(Level.SEVERE, "Airport index rebuild failed, staged airports stay out of the index until the next bulk load", e);
+		});
+	}
+
+	/* Index is built from the snapshot of the airports without blocking writers. Changes made during the build are
+	   applied to the new index, unless another bulk load has begun - then they are staged. */
+	private void rebuildIndex()
 	{
-		airports.remove(airport.getIata());
+		List<AirportData> snapshot;
+		synchronized (this)
+		{
+			snapshot = new ArrayList<>(airports.values());
+		}
+
+		AirportSpatialIndex index = indexFactory.get();
+		index.addAll(snapshot);
+
+		synchronized (this)
+		{
+			Set<AirportData> built = Collections.newSetFromMap(new IdentityHashMap<>());
+			built.addAll(snapshot);
+			Map<String, AirportData> staged = new ConcurrentHashMap<>();
+			for (AirportData airportData : airports.values())
+				if (!built.contains(airportData))
+					staged.put(airportData.getIata(), airportData);
+
+			if (bulkLoad)
+			{
+				indexState = new IndexState(index, staged);
+				return;
+			}
+
+			for (AirportData airportData : snapshot)
+				if (airports.get(airportData.getIata()) != airportData)
+					index.remove(airportData);
+			for (AirportData airportData : staged.values())
+				index.add(airportData);
+			indexState = new IndexState(index, null);
+		}
 	}
 
 	@Override
 	public AirportData getAirportData(String iata)
 	{
-		return airports.get(iata);
+		int code = IataCodec.encode(iata);
+		return code >= 0 ? packedAirports.get(code) : airports.get(iata);
+	}
+
+	@Override
+	public AirportData getAirportData(int packedIata)
+	{
+		return packedIata >= 0 && packedIata < IataCodec.CODES_NUMBER ? packedAirports.get(packedIata) : null;
 	}
 
 	@Override
 	public List<AirportData> getAirportsAround(AirportData airport, double distance)
 	{
-		return airports.values().stream().filter(ap -> getDistance(airport, ap) <= distance).collect(Collectors.toList());
+		if (distance >= fullScanDistance)
+			return coordinates.getAirportsAround(airport, distance);
+
+		IndexState state = indexState;
+		List<AirportData> result = state.index.getAirportsAround(airport, distance);
+		if (state.staged == null)
+			return result;
+		return addStaged(state, result, candidate -> getDistance(airport, candidate) <= distance);
 	}
 
-	protected double getDistance(AirportData from, AirportData to)
+	/* Search uses only coordinates of the center, so it doesn't have to be a registered airport */
+	@Override
+	public List<AirportData> getAirportsAround(double latitude, double longitude, double distance)
 	{
-		return Calculations.calculateDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+		return getAirportsAround(new AirportData(null, latitude, longitude), distance);
+	}
+
+	@Override
+	public List<AirportData> getNearestAirports(AirportData airport, int count, Predicate<AirportData> filter)
+	{
+		IndexState state = indexState;
+		if (state.staged == null)
+			return state.index.getNearestAirports(airport, count, filter);
+
+		List<AirportData> result = state.index.getNearestAirports(airport, count, candidate -> isIndexed(state, candidate) && filter.test(candidate));
+		for (AirportData candidate : state.staged.values())
+			if (isCurrent(candidate) && filter.test(candidate) && !Double.isNaN(getDistance(airport, candidate)))
+				result.add(candidate);
+		result.sort(Comparator.comparingDouble(candidate -> getDistance(airport, candidate)));
+		return result.size() > count ? new ArrayList<>(result.subList(0, Math.max(count, 0))) : result;
+	}
+
+	@Override
+	public List<AirportData> getAirportsInBox(GeoBox box)
+	{
+		IndexState state = indexState;
+		List<AirportData> result = state.index.getAirportsInBox(box);
+		if (state.staged == null)
+			return result;
+		return addStaged(state, result, box::contains);
+	}
+
+	/* Index provides candidates from the bounding box, only they are checked against the polygon */
+	@Override
+	public List<AirportData> getAirportsInPolygon(GeoPolygon polygon)
+	{
+		List<AirportData> result = new ArrayList<>();
+		for (AirportData candidate : getAirportsInBox(polygon.getBoundingBox()))
+			if (polygon.contains(candidate))
+				result.add(candidate);
+		return result;
 	}
 
 	@Override
@@ -59,4 +291,48 @@ public class AirportDatabaseMemory implements AirportDatabase
 	{
 		return airports.keySet();
 	}
+
+	/* Index results, which are still current and not overridden by the staged airports, plus the matching staged ones */
+	private List<AirportData> addStaged(IndexState state, List<AirportData> indexed, Predicate<AirportData> condition)
+	{
+		List<AirportData> result = new ArrayList<>(indexed.size());
+		for (AirportData candidate : indexed)
+			if (isIndexed(state, candidate))
+				result.add(candidate);
+		for (AirportData candidate : state.staged.values())
+			if (isCurrent(candidate) && condition.test(candidate))
+				result.add(candidate);
+		return result;
+	}
+
+	private boolean isIndexed(IndexState state, AirportData airportData)
+	{
+		return isCurrent(airportData) && !state.staged.containsKey(airportData.getIata());
+	}
+
+	private boolean isCurrent(AirportData airportData)
+	{
+		return getAirportData(airportData.getIata()) == airportData;
+	}
+
+	private static double getDistance(AirportData from, AirportData to)
+	{
+		return Calculations.calculateDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+	}
+
+	/**
+	 * Index with the airports not in it yet, published together
+	 */
+	protected static class IndexState
+	{
+		protected final AirportSpatialIndex index;
+		/* Map iata -> airport staged during bulk load, null when all the airports are in the index */
+		protected final Map<String, AirportData> staged;
+
+		protected IndexState(AirportSpatialIndex index, Map<String, AirportData> staged)
+		{
+			this.index = index;
+			this.staged = staged;
+		}
+	}
 }
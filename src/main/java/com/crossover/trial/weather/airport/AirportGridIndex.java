@@ -0,0 +1,261 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.common.Calculations;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.GeoBox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Spatial index, which buckets airports into fixed-size latitude/longitude cells.
+ * Radius search checks only the cells overlapping bounding box of the search circle, so distance is calculated
+ * for a small fraction of all airports. Bounding box covers all longitudes when the circle contains a pole and wraps
+ * around when it crosses the antimeridian.
+ */
+public class AirportGridIndex implements AirportSpatialIndex
+{
+	/* Cell size in degrees, both for latitude and longitude */
+	private static final double CELL_SIZE = 2;
+
+	private static final int ROWS = (int) (180 / CELL_SIZE);
+	private static final int COLUMNS = (int) (360 / CELL_SIZE);
+
+	/* Search bounds are widened by this number of degrees to stay safe from rounding errors */
+	private static final double BOUNDS_MARGIN = 1e-6;
+
+	/* Cells in row-major order: rows from south to north, columns from antimeridian to the east. Created on demand */
+	private final AtomicReferenceArray<ConcurrentMap<String, AirportData>> cells;
+
+	/* Airports with coordinates out of valid range can't be placed into the grid, so they are checked on every search */
+	private final ConcurrentMap<String, AirportData> outliers;
+
+	public AirportGridIndex()
+	{
+		cells = new AtomicReferenceArray<>(ROWS * COLUMNS);
+		outliers = new ConcurrentHashMap<>();
+	}
+
+	@Override
+	public void add(AirportData airportData)
+	{
+		if (isOutlier(airportData))
+		{
+			outliers.put(airportData.getIata(), airportData);
+			return;
+		}
+
+		int cellIndex = getCellIndex(airportData.getLatitude(), airportData.getLongitude());
+		ConcurrentMap<String, AirportData> cell = cells.get(cellIndex);
+		if (cell == null)
+		{
+			cells.compareAndSet(cellIndex, null, new ConcurrentHashMap<>());
+			cell = cells.get(cellIndex);
+		}
+		cell.put(airportData.getIata(), airportData);
+	}
+
+	@Override
+	public void addAll(Collection<AirportData> airportData)
+	{
+		for (AirportData airport : airportData)
+			add(airport);
+	}
+
+	@Override
+	public void remove(AirportData airportData)
+	{
+		if (isOutlier(airportData))
+		{
+			outliers.remove(airportData.getIata());
+			return;
+		}
+
+		ConcurrentMap<String, AirportData> cell = cells.get(getCellIndex(airportData.getLatitude(), airportData.getLongitude()));
+		if (cell != null)
+			cell.remove(airportData.getIata());
+	}
+
+	@Override
+	public List<AirportData> getAirportsAround(AirportData airport, double distance)
+	{
+		List<AirportData> result = new ArrayList<>();
+		if (!(distance >= 0))
+			return result;
+
+		double latitude = airport.getLatitude();
+		double longitude = airport.getLongitude();
+		/* Search from invalid coordinates can't be bounded, so the whole grid is checked */
+		double angle = isOutlier(airport) ? 180 : Math.toDegrees(distance / Calculations.R) + BOUNDS_MARGIN;
+		double south = latitude - angle;
+		double north = latitude + angle;
+
+		/* Circle around the pole covers all longitudes, otherwise we use exact longitude extent of the circle */
+		double halfWidth = 180;
+		if (south > -90 && north < 90)
+		{
+			double ratio = Math.sin(Math.toRadians(angle)) / Math.cos(Math.toRadians(latitude));
+			if (ratio < 1)
+				halfWidth = Math.toDegrees(Math.asin(ratio)) + BOUNDS_MARGIN;
+		}
+
+		int firstRow = getRow(Math.max(south, -90));
+		int lastRow = getRow(Math.min(north, 90));
+		int firstColumn = 0;
+		int columnCount = COLUMNS;
+		if (2 * halfWidth + CELL_SIZE < 360)
+		{
+			firstColumn = getColumn(longitude - halfWidth);
+			columnCount = Math.floorMod(getColumn(longitude + halfWidth) - firstColumn, COLUMNS) + 1;
+		}
+
+		for (int row = firstRow; row <= lastRow; row++)
+			for (int i = 0; i < columnCount; i++)
+			{
+				ConcurrentMap<String, AirportData> cell = cells.get(row * COLUMNS + (firstColumn + i) % COLUMNS);
+				if (cell != null)
+					addAirportsAround(cell, airport, distance, result);
+			}
+
+		addAirportsAround(outliers, airport, distance, result);
+		return result;
+	}
+
+	@Override
+	public List<AirportData> getAirportsInBox(GeoBox box)
+	{
+		List<AirportData> result = new ArrayList<>();
+		int firstRow = getRow(Math.max(box.getSouth(), -90));
+		int lastRow = getRow(Math.min(box.getNorth(), 90));
+		int firstColumn = 0;
+		int columnCount = COLUMNS;
+		if (box.getWidth() + CELL_SIZE < 360)
+		{
+			firstColumn = getColumn(box.getWest());
+			columnCount = Math.floorMod(getColumn(box.getWest() + box.getWidth()) - firstColumn, COLUMNS) + 1;
+		}
+
+		for (int row = firstRow; row <= lastRow && box.getSouth() <= 90 && box.getNorth() >= -90; row++)
+			for (int i = 0; i < columnCount; i++)
+			{
+				ConcurrentMap<String, AirportData> cell = cells.get(row * COLUMNS + (firstColumn + i) % COLUMNS);
+				if (cell != null)
+					addAirportsInBox(cell, box, result);
+			}
+
+		addAirportsInBox(outliers, box, result);
+		return result;
+	}
+
+	private static void addAirportsInBox(ConcurrentMap<String, AirportData> candidates, GeoBox box, List<AirportData> result)
+	{
+		for (AirportData candidate : candidates.values())
+			if (box.contains(candidate))
+				result.add(candidate);
+	}
+
+	@Override
+	public List<AirportData> getNearestAirports(AirportData airport, int count, Predicate<AirportData> filter)
+	{
+		AirportNearestSearch search = new AirportNearestSearch(airport, filter);
+		for (AirportData outlier : outliers.values())
+			search.addAirport(outlier);
+
+		/* Search from invalid coordinates can't be bounded, so the whole grid is checked */
+		if (isOutlier(airport))
+		{
+			for (int i = 0; i < cells.length(); i++)
+				addCell(search, i);
+			return search.run(count);
+		}
+
+		addRow(search, airport, getRow(airport.getLatitude()), 0);
+		return search.run(count);
+	}
+
+	/* Row is expanded starting from the column of the airport, neighbour rows in the stated direction are added then.
+	   So the rows and the columns within a row are added in order of growing distance bound */
+	private void addRow(AirportNearestSearch search, AirportData airport, int row, int direction)
+	{
+		search.addRegion(getLatitudeBound(airport, row), () ->
+		{
+			addCell(search, row * COLUMNS + getColumn(airport.getLongitude()));
+			addColumn(search, airport, row, 1);
+			addColumn(search, airport, row, -1);
+			if (direction >= 0 && row + 1 < ROWS)
+				addRow(search, airport, row + 1, 1);
+			if (direction <= 0 && row > 0)
+				addRow(search, airport, row - 1, -1);
+		});
+	}
+
+	/* Offset from the airport column is positive to the east, negative to the west. Together they cover each column once */
+	private void addColumn(AirportNearestSearch search, AirportData airport, int row, int offset)
+	{
+		search.addRegion(Math.max(getLatitudeBound(airport, row), getLongitudeBound(airport, offset)), () ->
+		{
+			addCell(search, row * COLUMNS + Math.floorMod(getColumn(airport.getLongitude()) + offset, COLUMNS));
+			if (offset < COLUMNS / 2 && offset > 1 - COLUMNS / 2)
+				addColumn(search, airport, row, offset + Integer.signum(offset));
+		});
+	}
+
+	private void addCell(AirportNearestSearch search, int cellIndex)
+	{
+		ConcurrentMap<String, AirportData> cell = cells.get(cellIndex);
+		if (cell != null)
+			for (AirportData candidate : cell.values())
+				search.addAirport(candidate);
+	}
+
+	/* Distance in km to the nearest latitude of the row */
+	private static double getLatitudeBound(AirportData airport, int row)
+	{
+		double south = row * CELL_SIZE - 90;
+		double delta = Math.max(0, Math.max(south - airport.getLatitude(), airport.getLatitude() - south - CELL_SIZE));
+		return Math.toRadians(delta) * Calculations.R;
+	}
+
+	/* Distance in km to the great circle of the nearest meridian of the column. Points with longitude difference
+	   beyond 90 degrees are not closer than the ones at 90 degrees */
+	private static double getLongitudeBound(AirportData airport, int offset)
+	{
+		double west = Math.floor((airport.getLongitude() + 180) / CELL_SIZE) * CELL_SIZE - 180;
+		double delta = offset > 0 ? west + offset * CELL_SIZE - airport.getLongitude() : airport.getLongitude() - west - (offset + 1) * CELL_SIZE;
+		double angle = Math.toRadians(Math.min(Math.max(delta, 0), 90));
+		return Calculations.R * Math.asin(Math.min(Math.cos(Math.toRadians(airport.getLatitude())) * Math.sin(angle), 1));
+	}
+
+	private static void addAirportsAround(ConcurrentMap<String, AirportData> candidates, AirportData airport, double distance, List<AirportData> result)
+	{
+		for (AirportData candidate : candidates.values())
+			if (Calculations.calculateDistance(airport.getLatitude(), airport.getLongitude(), candidate.getLatitude(), candidate.getLongitude()) <= distance)
+				result.add(candidate);
+	}
+
+	private static boolean isOutlier(AirportData airportData)
+	{
+		return !(airportData.getLatitude() >= -90 && airportData.getLatitude() <= 90) || !Double.isFinite(airportData.getLongitude());
+	}
+
+	private static int getCellIndex(double latitude, double longitude)
+	{
+		return getRow(latitude) * COLUMNS + getColumn(longitude);
+	}
+
+	private static int getRow(double latitude)
+	{
+		return Math.min((int) Math.floor((latitude + 90) / CELL_SIZE), ROWS - 1);
+	}
+
+	/* Longitude is not required to be within [-180, 180], distance calculation does not depend on full turns anyway */
+	private static int getColumn(double longitude)
+	{
+		return (int) Math.floorMod((long) Math.floor((longitude + 180) / CELL_SIZE), COLUMNS);
+	}
+}
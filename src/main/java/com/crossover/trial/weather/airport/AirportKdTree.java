@@ -0,0 +1,387 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.common.Calculations;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.GeoBox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable balanced k-d tree over airport positions, represented as unit vectors in Earth-centered, Earth-fixed
+ * coordinates. Search radius is converted to the chord length, so subtrees are pruned with plain euclidean
+ * comparisons. Haversine distance is calculated only for the candidates near the search boundary.
+ * <p>
+ * Split axis alternates with depth, node of subtree [from, to) is stored in the middle of the range.
+ */
+class AirportKdTree
+{
+	/* Relative tolerance of chord comparison, candidates within it are checked with haversine distance */
+	private static final double CHORD_TOLERANCE = 1e-9;
+	/* Absolute tolerance of chord comparison, matters for very small radius only */
+	private static final double CHORD_ABSOLUTE_TOLERANCE = 1e-12;
+
+	private static final int DIMENSIONS = 3;
+
+	private final AirportData[] airports;
+	/* Node coordinates by axis: x, y and z */
+	private final double[][] coordinates;
+
+	/* Airports with coordinates out of valid range can't be placed into the tree, so they are checked on every search */
+	private final AirportData[] outliers;
+
+	AirportKdTree(Collection<AirportData> airportData)
+	{
+		List<AirportData> valid = new ArrayList<>(airportData.size());
+		List<AirportData> invalid = new ArrayList<>();
+		for (AirportData airport : airportData)
+			if (isOutlier(airport))
+				invalid.add(airport);
+			else
+				valid.add(airport);
+
+		airports = valid.toArray(new AirportData[valid.size()]);
+		outliers = invalid.toArray(new AirportData[invalid.size()]);
+		coordinates = new double[DIMENSIONS][airports.length];
+		for (int i = 0; i < airports.length; i++)
+		{
+			double[] vector = toVector(airports[i]);
+			for (int axis = 0; axis < DIMENSIONS; axis++)
+				coordinates[axis][i] = vector[axis];
+		}
+
+		build(0, airports.length, 0);
+	}
+
+	/**
+	 * Get number of airports in the tree
+	 *
+	 * @return number of airports
+	 */
+	int size()
+	{
+		return airports.length + outliers.length;
+	}
+
+	/**
+	 * Add all the airports in the tree, except excluded ones, to the list
+	 *
+	 * @param excluded airports to skip, compared by identity
+	 * @param result   list to add airports to
+	 */
+	void collectAll(Set<AirportData> excluded, List<AirportData> result)
+	{
+		for (AirportData airport : airports)
+			if (!excluded.contains(airport))
+				result.add(airport);
+		for (AirportData airport : outliers)
+			if (!excluded.contains(airport))
+				result.add(airport);
+	}
+
+	/**
+	 * Add all the airports around particular one withing stated distance to the list
+	 *
+	 * @param airport  airport to measure distance to
+	 * @param distance max distance to particular airport (including)
+	 * @param excluded airports to skip, compared by identity
+	 * @param result   list to add airports to
+	 */
+	void collectAround(AirportData airport, double distance, Set<AirportData> excluded, List<AirportData> result)
+	{
+		for (AirportData outlier : outliers)
+			if (!excluded.contains(outlier) && getDistance(airport, outlier) <= distance)
+				result.add(outlier);
+
+		/* Search from invalid coordinates can't use chord length, so the whole tree is checked */
+		if (isOutlier(airport))
+		{
+			for (AirportData candidate : airports)
+				if (!excluded.contains(candidate) && getDistance(airport, candidate) <= distance)
+					result.add(candidate);
+			return;
+		}
+
+		double chord = 2 * Math.sin(Math.min(distance / Calculations.R, Math.PI) / 2);
+		Search search = new Search(airport, distance, chord, excluded, result);
+		search.collect(0, airports.length, 0);
+	}
+
+	/**
+	 * Add all the airports inside the box to the list
+	 *
+	 * @param box      geographical box
+	 * @param excluded airports to skip, compared by identity
+	 * @param result   list to add airports to
+	 */
+	void collectInBox(GeoBox box, Set<AirportData> excluded, List<AirportData> result)
+	{
+		for (AirportData outlier : outliers)
+			if (!excluded.contains(outlier) && box.contains(outlier))
+				result.add(outlier);
+
+		new BoxSearch(box, excluded, result).collect(0, airports.length, 0);
+	}
+
+	/**
+	 * Add the tree to the nearest airports search
+	 *
+	 * @param search  search to add the tree to
+	 * @param airport airport to measure distance to
+	 */
+	void addNearest(AirportNearestSearch search, AirportData airport)
+	{
+		for (AirportData outlier : outliers)
+			search.addAirport(outlier);
+
+		/* Search from invalid coordinates can't use chord length, so the whole tree is checked */
+		if (isOutlier(airport))
+		{
+			for (AirportData candidate : airports)
+				search.addAirport(candidate);
+			return;
+		}
+
+		double[] box = {-1, -1, -1, 1, 1, 1};
+		addNearest(search, toVector(airport), 0, airports.length, 0, box);
+	}
+
+	static boolean isOutlier(AirportData airportData)
+	{
+		return !(airportData.getLatitude() >= -90 && airportData.getLatitude() <= 90) || !Double.isFinite(airportData.getLongitude());
+	}
+
+	static double getDistance(AirportData from, AirportData to)
+	{
+		return Calculations.calculateDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+	}
+
+	private static double[] toVector(AirportData airportData)
+	{
+		double latitude = Math.toRadians(airportData.getLatitude());
+		double longitude = Math.toRadians(airportData.getLongitude());
+		return new double[]{Math.cos(latitude) * Math.cos(longitude), Math.cos(latitude) * Math.sin(longitude), Math.sin(latitude)};
+	}
+
+	/* Subtree is added as a region bounded by the box, first half of the box array keeps minimums, second one - maximums */
+	private void addNearest(AirportNearestSearch search, double[] vector, int from, int to, int depth, double[] box)
+	{
+		if (from >= to)
+			return;
+
+		search.addRegion(getDistance(vector, box), () ->
+		{
+			int middle = (from + to) >>> 1;
+			int axis = depth % DIMENSIONS;
+			search.addAirport(airports[middle]);
+
+			double[] lower = box.clone();
+			lower[DIMENSIONS + axis] = coordinates[axis][middle];
+			addNearest(search, vector, from, middle, depth + 1, lower);
+
+			double[] upper = box.clone();
+			upper[axis] = coordinates[axis][middle];
+			addNearest(search, vector, middle + 1, to, depth + 1, upper);
+		});
+	}
+
+	/* Minimum distance in km from the point on the sphere to any point of the box, based on the chord length */
+	private static double getDistance(double[] vector, double[] box)
+	{
+		double squared = 0;
+		for (int axis = 0; axis < DIMENSIONS; axis++)
+		{
+			double delta = Math.max(0, Math.max(box[axis] - vector[axis], vector[axis] - box[DIMENSIONS + axis]));
+			squared += delta * delta;
+		}
+		return 2 * Calculations.R * Math.asin(Math.min(Math.sqrt(squared) / 2, 1));
+	}
+
+	private void build(int from, int to, int depth)
+	{
+		if (to - from < 2)
+			return;
+
+		int middle = (from + to) >>> 1;
+		select(from, to - 1, middle, coordinates[depth % DIMENSIONS]);
+		build(from, middle, depth + 1);
+		build(middle + 1, to, depth + 1);
+	}
+
+	/* Quickselect: put k-th smallest value of the range [left, right] to position k, smaller ones before it */
+	private void select(int left, int right, int k, double[] axis)
+	{
+		while (left < right)
+		{
+			double pivot = axis[(left + right) >>> 1];
+			int i = left, j = right;
+			while (i <= j)
+			{
+				while (axis[i] < pivot)
+					i++;
+				while (axis[j] > pivot)
+					j--;
+				if (i <= j)
+					swap(i++, j--);
+			}
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	private void swap(int i, int j)
+	{
+		AirportData airport = airports[i];
+		airports[i] = airports[j];
+		airports[j] = airport;
+		for (double[] axis : coordinates)
+		{
+			double value = axis[i];
+			axis[i] = axis[j];
+			axis[j] = value;
+		}
+	}
+
+	/**
+	 * State of a single box search. Subtree is pruned, if its bounding box in vector space is out of the latitude band
+	 * (z coordinate range) or, for the longitude extent up to 180 degrees, out of one of the two half-planes bounded
+	 * by the border meridians (x, y coordinates).
+	 */
+	private class BoxSearch
+	{
+		/* Safety margin for the pruning, so rounding errors never exclude the airport on the border */
+		private static final double MARGIN = 1e-9;
+
+		private final GeoBox box;
+		private final Set<AirportData> excluded;
+		private final List<AirportData> result;
+
+		/* Range of z coordinate for the latitude band */
+		private final double minZ, maxZ;
+		/* Half-plane coefficients (a * x + b * y >= 0) for the west and the east borders, when longitude extent allows */
+		private final boolean hasHalfPlanes;
+		private final double westA, westB, eastA, eastB;
+
+		/* Bounding box of current subtree, first half keeps minimums, second one - maximums. Changed during the traversal */
+		private final double[] bounds = {-1, -1, -1, 1, 1, 1};
+
+		private BoxSearch(GeoBox box, Set<AirportData> excluded, List<AirportData> result)
+		{
+			this.box = box;
+			this.excluded = excluded;
+			this.result = result;
+
+			minZ = Math.sin(Math.toRadians(Math.max(box.getSouth(), -90))) - MARGIN;
+			maxZ = Math.sin(Math.toRadians(Math.min(box.getNorth(), 90))) + MARGIN;
+
+			hasHalfPlanes = box.getWidth() <= 180;
+			double west = Math.toRadians(box.getWest());
+			double east = Math.toRadians(box.getWest() + box.getWidth());
+			westA = -Math.sin(west);
+			westB = Math.cos(west);
+			eastA = Math.sin(east);
+			eastB = -Math.cos(east);
+		}
+
+		private void collect(int from, int to, int depth)
+		{
+			if (from >= to || isPruned())
+				return;
+
+			int middle = (from + to) >>> 1;
+			if (!excluded.contains(airports[middle]) && box.contains(airports[middle]))
+				result.add(airports[middle]);
+
+			int axis = depth % DIMENSIONS;
+			double split = coordinates[axis][middle];
+
+			double saved = bounds[DIMENSIONS + axis];
+			bounds[DIMENSIONS + axis] = split;
+			collect(from, middle, depth + 1);
+			bounds[DIMENSIONS + axis] = saved;
+
+			saved = bounds[axis];
+			bounds[axis] = split;
+			collect(middle + 1, to, depth + 1);
+			bounds[axis] = saved;
+		}
+
+		private boolean isPruned()
+		{
+			if (bounds[2] > maxZ || bounds[DIMENSIONS + 2] < minZ)
+				return true;
+			return hasHalfPlanes && (getMaximum(westA, westB) < -MARGIN || getMaximum(eastA, eastB) < -MARGIN);
+		}
+
+		/* Maximum of a * x + b * y over the xy rectangle of the bounds */
+		private double getMaximum(double a, double b)
+		{
+			return a * (a > 0 ? bounds[DIMENSIONS] : bounds[0]) + b * (b > 0 ? bounds[DIMENSIONS + 1] : bounds[1]);
+		}
+	}
+
+	/**
+	 * State of a single radius search
+	 */
+	private class Search
+	{
+		private final AirportData airport;
+		private final double distance;
+		private final double[] vector;
+		/* Squared chord lengths: airports closer than lower one are accepted, further than upper one are rejected */
+		private final double lowerBound, upperBound;
+		/* Non-squared upper bound for the split plane comparisons */
+		private final double reach;
+		private final Set<AirportData> excluded;
+		private final List<AirportData> result;
+
+		private Search(AirportData airport, double distance, double chord, Set<AirportData> excluded, List<AirportData> result)
+		{
+			this.airport = airport;
+			this.distance = distance;
+			this.excluded = excluded;
+			this.result = result;
+
+			vector = toVector(airport);
+
+			double lower = Math.max(0, chord * (1 - CHORD_TOLERANCE) - CHORD_ABSOLUTE_TOLERANCE);
+			reach = chord * (1 + CHORD_TOLERANCE) + CHORD_ABSOLUTE_TOLERANCE;
+			lowerBound = lower * lower;
+			upperBound = reach * reach;
+		}
+
+		private void collect(int from, int to, int depth)
+		{
+			if (from >= to)
+				return;
+
+			int middle = (from + to) >>> 1;
+			check(middle);
+
+			int axis = depth % DIMENSIONS;
+			double delta = vector[axis] - coordinates[axis][middle];
+			if (delta <= reach)
+				collect(from, middle, depth + 1);
+			if (delta >= -reach)
+				collect(middle + 1, to, depth + 1);
+		}
+
+		private void check(int node)
+		{
+			double dx = vector[0] - coordinates[0][node];
+			double dy = vector[1] - coordinates[1][node];
+			double dz = vector[2] - coordinates[2][node];
+			double squared = dx * dx + dy * dy + dz * dz;
+			if (squared > upperBound || excluded.contains(airports[node]))
+				return;
+			if (squared < lowerBound || getDistance(airport, airports[node]) <= distance)
+				result.add(airports[node]);
+		}
+	}
+}
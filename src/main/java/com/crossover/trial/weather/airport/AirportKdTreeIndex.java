@@ -0,0 +1,141 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.GeoBox;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Spatial index based on immutable {@link AirportKdTree}s.
+ * New airports are kept in a set of trees with sizes growing as powers of two: added airport forms a new tree,
+ * which is merged with the previous ones of the same size, like in a binary counter. So each airport is rebuilt
+ * into a larger tree only a logarithmic number of times, and search visits a logarithmic number of trees.
+ * Removed airports are skipped during search until they make a noticeable part of the index, then all the trees
+ * are merged into one. Readers use an immutable snapshot and never block.
+ */
+public class AirportKdTreeIndex implements AirportSpatialIndex
+{
+	/* Minimum number of removed airports, which triggers merge of all the trees */
+	private static final int MIN_REBUILD_THRESHOLD = 64;
+	/* All the trees are merged when removed airports exceed this part of the index */
+	private static final int REBUILD_FRACTION = 8;
+
+	private volatile Snapshot snapshot;
+
+	public AirportKdTreeIndex()
+	{
+		snapshot = new Snapshot(new AirportKdTree[0], Collections.emptySet());
+	}
+
+	@Override
+	public void add(AirportData airportData)
+	{
+		Snapshot current = snapshot;
+
+		/* Same airport object is still in one of the trees, so it should be just restored */
+		if (current.removed.contains(airportData))
+		{
+			Set<AirportData> removed = createIdentitySet(current.removed);
+			removed.remove(airportData);
+			snapshot = new Snapshot(current.trees, removed);
+			return;
+		}
+
+		List<AirportData> merged = new ArrayList<>();
+		merged.add(airportData);
+		int count = current.trees.length;
+		while (count > 0 && current.trees[count - 1].size() <= merged.size())
+			current.trees[--count].collectAll(Collections.emptySet(), merged);
+
+		AirportKdTree[] trees = Arrays.copyOf(current.trees, count + 1);
+		trees[count] = new AirportKdTree(merged);
+		snapshot = new Snapshot(trees, current.removed);
+	}
+
+	/* All the airports are merged into one balanced tree */
+	@Override
+	public void addAll(Collection<AirportData> airportData)
+	{
+		Snapshot current = snapshot;
+		List<AirportData> merged = new ArrayList<>(airportData);
+		for (AirportKdTree tree : current.trees)
+			tree.collectAll(current.removed, merged);
+		snapshot = new Snapshot(new AirportKdTree[]{new AirportKdTree(merged)}, Collections.emptySet());
+	}
+
+	@Override
+	public void remove(AirportData airportData)
+	{
+		Snapshot current = snapshot;
+		Set<AirportData> removed = createIdentitySet(current.removed);
+		removed.add(airportData);
+
+		int size = 0;
+		for (AirportKdTree tree : current.trees)
+			size += tree.size();
+		if (removed.size() < Math.max(MIN_REBUILD_THRESHOLD, size / REBUILD_FRACTION))
+		{
+			snapshot = new Snapshot(current.trees, removed);
+			return;
+		}
+
+		List<AirportData> airports = new ArrayList<>(size);
+		for (AirportKdTree tree : current.trees)
+			tree.collectAll(removed, airports);
+		snapshot = new Snapshot(new AirportKdTree[]{new AirportKdTree(airports)}, Collections.emptySet());
+	}
+
+	@Override
+	public List<AirportData> getAirportsAround(AirportData airport, double distance)
+	{
+		Snapshot current = snapshot;
+		List<AirportData> result = new ArrayList<>();
+		for (AirportKdTree tree : current.trees)
+			tree.collectAround(airport, distance, current.removed, result);
+		return result;
+	}
+
+	@Override
+	public List<AirportData> getAirportsInBox(GeoBox box)
+	{
+		Snapshot current = snapshot;
+		List<AirportData> result = new ArrayList<>();
+		for (AirportKdTree tree : current.trees)
+			tree.collectInBox(box, current.removed, result);
+		return result;
+	}
+
+	@Override
+	public List<AirportData> getNearestAirports(AirportData airport, int count, Predicate<AirportData> filter)
+	{
+		Snapshot current = snapshot;
+		AirportNearestSearch search = new AirportNearestSearch(airport, candidate -> !current.removed.contains(candidate) && filter.test(candidate));
+		for (AirportKdTree tree : current.trees)
+			tree.addNearest(search, airport);
+		return search.run(count);
+	}
+
+	private static Set<AirportData> createIdentitySet(Set<AirportData> airports)
+	{
+		Set<AirportData> set = Collections.newSetFromMap(new IdentityHashMap<>());
+		set.addAll(airports);
+		return set;
+	}
+
+	/**
+	 * Trees in order of decreasing size with the airports removed after they were built
+	 */
+	private static class Snapshot
+	{
+		private final AirportKdTree[] trees;
+		/* Airports removed from the trees, identity-based */
+		private final Set<AirportData> removed;
+
+		private Snapshot(AirportKdTree[] trees, Set<AirportData> removed)
+		{
+			this.trees = trees;
+			this.removed = removed;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.common.Calculations;
+import com.crossover.trial.weather.data.AirportData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Best-first search of the nearest airports. Spatial index adds regions with lower bound of the distance to any
+ * airport inside, and airports with exact distance. Entries are processed in order of the distance: region is
+ * expanded into the smaller regions and airports, airport goes to the result. So the search stops as soon as the
+ * requested number of airports is found, checking only the regions closer than the last found airport.
+ */
+class AirportNearestSearch
+{
+	/* Relative safety margin for region bounds, so rounding errors never make the bound exceed the real distance */
+	private static final double BOUND_TOLERANCE = 1e-9;
+	/* Absolute safety margin for region bounds in km, matters for the regions very close to the airport only */
+	private static final double BOUND_ABSOLUTE_TOLERANCE = 1e-9;
+
+	private final AirportData airport;
+	private final Predicate<AirportData> filter;
+	private final PriorityQueue<Entry> queue;
+
+	AirportNearestSearch(AirportData airport, Predicate<AirportData> filter)
+	{
+		this.airport = airport;
+		this.filter = filter;
+		queue = new PriorityQueue<>();
+	}
+
+	/**
+	 * Add region for the later expansion
+	 *
+	 * @param bound     lower bound of distance (km) to any airport in the region
+	 * @param expansion action adding the region content to the search
+	 */
+	void addRegion(double bound, Runnable expansion)
+	{
+		queue.add(new Entry(bound * (1 - BOUND_TOLERANCE) - BOUND_ABSOLUTE_TOLERANCE, null, expansion));
+	}
+
+	/**
+	 * Add airport candidate, airports not accepted by the filter or with undefined distance are skipped
+	 *
+	 * @param candidate airport
+	 */
+	void addAirport(AirportData candidate)
+	{
+		double distance = Calculations.calculateDistance(airport.getLatitude(), airport.getLongitude(), candidate.getLatitude(), candidate.getLongitude());
+		if (!Double.isNaN(distance) && filter.test(candidate))
+			queue.add(new Entry(distance, candidate, null));
+	}
+
+	/**
+	 * Process added entries until required number of airports is found
+	 *
+	 * @param count maximum number of airports
+	 * @return airports ordered by distance
+	 */
+	List<AirportData> run(int count)
+	{
+		List<AirportData> result = new ArrayList<>(Math.max(0, Math.min(count, 1024)));
+		while (result.size() < count && !queue.isEmpty())
+		{
+			Entry entry = queue.poll();
+			if (entry.airport != null)
+				result.add(entry.airport);
+			else
+				entry.expansion.run();
+		}
+		return result;
+	}
+
+	/**
+	 * Region or airport with its distance. Airport goes before region with the same distance.
+	 */
+	private static class Entry implements Comparable<Entry>
+	{
+		private final double distance;
+		private final AirportData airport;
+		private final Runnable expansion;
+
+		private Entry(double distance, AirportData airport, Runnable expansion)
+		{
+			this.distance = distance;
+			this.airport = airport;
+			this.expansion = expansion;
+		}
+
+		@Override
+		public int compareTo(Entry other)
+		{
+			int result = Double.compare(distance, other.distance);
+			if (result == 0)
+				result = Boolean.compare(airport == null, other.airport == null);
+			return result;
+		}
+	}
+}
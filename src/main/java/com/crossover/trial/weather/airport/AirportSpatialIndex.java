@@ -0,0 +1,63 @@
+package com.crossover.trial.weather.airport;
+
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.GeoBox;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Spatial index for geographical airport search, used by {@link AirportDatabaseMemory}.
+ * Readers never block. Writers are expected to be serialized by the caller.
+ */
+public interface AirportSpatialIndex
+{
+	/**
+	 * Add airport to the index
+	 *
+	 * @param airportData airport
+	 */
+	void add(AirportData airportData);
+
+	/**
+	 * Add airports to the index, building the structures for all of them at once where possible
+	 *
+	 * @param airportData airports
+	 */
+	void addAll(Collection<AirportData> airportData);
+
+	/**
+	 * Remove airport from the index. Airport coordinates should not differ from the ones airport was added with.
+	 *
+	 * @param airportData airport
+	 */
+	void remove(AirportData airportData);
+
+	/**
+	 * Get all airports around particular one withing stated distance
+	 *
+	 * @param airport  airport to measure distance to
+	 * @param distance max distance to particular airport (including)
+	 * @return list of the airports
+	 */
+	List<AirportData> getAirportsAround(AirportData airport, double distance);
+
+	/**
+	 * Get airports nearest to particular one, ordered by distance. Airport itself is included, if it passes the filter
+	 *
+	 * @param airport airport to measure distance to
+	 * @param count   maximum number of airports
+	 * @param filter  condition for the airports to be included
+	 * @return list of the airports
+	 */
+	List<AirportData> getNearestAirports(AirportData airport, int count, Predicate<AirportData> filter);
+
+	/**
+	 * Get all airports inside the box, borders included
+	 *
+	 * @param box geographical box
+	 * @return list of the airports
+	 */
+	List<AirportData> getAirportsInBox(GeoBox box);
+}
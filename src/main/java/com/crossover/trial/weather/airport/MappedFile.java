@@ -0,0 +1,139 @@
+package com.crossover.trial.weather.airport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File of fixed-size records, mapped to memory in chunks of the same size. File grows by whole chunks, when the
+ * chunk beyond its end is requested. Changes of the mapped chunks are written to the file by the operating system,
+ * so they survive the process restart without any serialization.
+ */
+class MappedFile implements Closeable
+{
+	private final FileChannel channel;
+
+	/* Chunk size in bytes */
+	private final int chunkSize;
+
+	/* Mapped chunks, guarded by this */
+	private final List<MappedByteBuffer> chunks;
+
+	MappedFile(Path path, int chunkSize) throws IOException
+	{
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.chunkSize = chunkSize;
+		chunks = new ArrayList<>();
+
+		long existing = (channel.size() + chunkSize - 1) / chunkSize;
+		if (existing > 0)
+			getChunk((int) existing - 1);
+	}
+
+	/**
+	 * Get number of the mapped chunks
+	 *
+	 * @return number of chunks
+	 */
+	synchronized int getChunksNumber()
+	{
+		return chunks.size();
+	}
+
+	/**
+	 * Get chunk, mapping the file up to it if needed
+	 *
+	 * @param index chunk index
+	 * @return mapped chunk, little-endian
+	 */
+	synchronized ByteBuffer getChunk(int index)
+	{
+		try
+		{
+			while (chunks.size() <= index)
+			{
+				MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * chunkSize, chunkSize);
+				chunk.order(ByteOrder.LITTLE_ENDIAN);
+				chunks.add(chunk);
+			}
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		return chunks.get(index);
+	}
+
+	/**
+	 * Write all changes to the storage device
+	 */
+	synchronized void force()
+	{
+		for (MappedByteBuffer chunk : chunks)
+			chunk.force();
+	}
+
+	/**
+	 * Write all changes and close the file. Mapped chunks stay valid.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		force();
+		channel.close();
+	}
+
+	/**
+	 * Put ASCII string into the field of the fixed size: length byte followed by the characters
+	 *
+	 * @param buffer    buffer
+	 * @param offset    field offset
+	 * @param fieldSize field size, including length byte
+	 * @param value     string, null for the empty one
+	 */
+	static void putString(ByteBuffer buffer, int offset, int fieldSize, String value)
+	{
+		byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.US_ASCII);
+		if (bytes.length >= fieldSize)
+			throw new IllegalArgumentException("String doesn't fit into " + (fieldSize - 1) + " characters: " + value);
+
+		buffer.put(offset, (byte) bytes.length);
+		for (int i = 0; i < bytes.length; i++)
+			buffer.put(offset + 1 + i, bytes[i]);
+	}
+
+	/**
+	 * Get ASCII string from the field, written by {@link #putString}
+	 *
+	 * @param buffer buffer
+	 * @param offset field offset
+	 * @return string, empty if none was written
+	 */
+	static String getString(ByteBuffer buffer, int offset)
+	{
+		byte[] bytes = new byte[buffer.get(offset)];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = buffer.get(offset + 1 + i);
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Check if the string can be put into the field of the fixed size
+	 *
+	 * @param fieldSize field size, including length byte
+	 * @param value     string
+	 * @return true if all characters are ASCII and fit into the field
+	 */
+	static boolean fits(int fieldSize, String value)
+	{
+		return value.length() < fieldSize && StandardCharsets.US_ASCII.newEncoder().canEncode(value);
+	}
+}
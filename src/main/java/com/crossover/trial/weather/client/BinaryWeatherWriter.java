@@ -0,0 +1,93 @@
+package com.crossover.trial.weather.client;
+
+import com.crossover.trial.weather.common.IataCodec;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.ingest.BinaryIngestServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Client of the binary weather collection, see {@link BinaryIngestServer} for the record format. Records are
+ * buffered and sent when the buffer is full, on flush and on close. Server doesn't respond, invalid records are
+ * skipped by it silently.
+ */
+public class BinaryWeatherWriter implements Closeable
+{
+	/* Number of records sent at once */
+	private static final int BUFFER_RECORDS = 2048;
+
+	private final SocketChannel channel;
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * Connect to the server
+	 *
+	 * @param host server host
+	 * @param port server binary ingest port
+	 * @throws IOException if connection fails
+	 */
+	public BinaryWeatherWriter(String host, int port) throws IOException
+	{
+		channel = SocketChannel.open(new InetSocketAddress(host, port));
+		buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * BinaryIngestServer.RECORD_SIZE);
+	}
+
+	/**
+	 * Buffer a single record
+	 *
+	 * @param iata      three uppercase latin letters airport code
+	 * @param type      the point type
+	 * @param dataPoint data point
+	 * @throws IOException if full buffer can't be sent
+	 */
+	public void write(String iata, DataPointType type, DataPoint dataPoint) throws IOException
+	{
+		int packedIata = IataCodec.encode(iata);
+		if (packedIata < 0)
+			throw new IllegalArgumentException("Airport code is not three uppercase latin letters: '" + iata + "'");
+
+		if (buffer.remaining() < BinaryIngestServer.RECORD_SIZE)
+			flush();
+		buffer.putInt(packedIata)
+				.putInt(type.ordinal())
+				.putDouble(dataPoint.getMean())
+				.putInt(dataPoint.getFirst())
+				.putInt(dataPoint.getSecond())
+				.putInt(dataPoint.getThird())
+				.putInt(dataPoint.getCount());
+	}
+
+	/**
+	 * Send buffered records
+	 *
+	 * @throws IOException if records can't be sent
+	 */
+	public void flush() throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Send buffered records and close the connection
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+		} finally
+		{
+			channel.close();
+		}
+	}
+}
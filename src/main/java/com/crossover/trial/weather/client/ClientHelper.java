@@ -35,7 +35,7 @@ public class ClientHelper
 	{
 		if (responseStatus == Response.Status.BAD_REQUEST.getStatusCode())
 			throw new BadRequestException(responseString);
-		if (responseStatus != Response.Status.OK.getStatusCode())
+		if (Response.Status.Family.familyOf(responseStatus) != Response.Status.Family.SUCCESSFUL)
 			throw new WebApplicationException(responseString);
 	}
 }
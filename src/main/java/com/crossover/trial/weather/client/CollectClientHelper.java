@@ -2,15 +2,25 @@ package com.crossover.trial.weather.client;
 
 import com.crossover.trial.weather.common.Calculations;
 import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.CollectMetrics;
 import com.crossover.trial.weather.data.DataPoint;
 import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.IngestSummary;
+import com.crossover.trial.weather.data.WeatherRecord;
+import com.crossover.trial.weather.data.WeatherRecordStatus;
 import com.google.gson.reflect.TypeToken;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -51,7 +61,7 @@ public class CollectClientHelper extends ClientHelper
 	 * @param iata      the 3 letter airport code
 	 * @param type      the point type, {@link DataPointType} for a complete list
 	 * @param dataPoint a json dict containing mean, first, second, third and count keys
-	 * @return HTTP Response code
+	 * @return HTTP Response code: OK, or ACCEPTED if the server applies updates asynchronously
 	 */
 	public int weatherPost(String iata, DataPointType type, DataPoint dataPoint)
 	{
@@ -65,6 +75,74 @@ public class CollectClientHelper extends ClientHelper
 		return response.getStatus();
 	}
 
+	/**
+	 * Update atmospheric information of many airports with a single request.
+	 *
+	 * @param records data points with their airports and types
+	 * @return status of every record in the same order
+	 */
+	public List<WeatherRecordStatus> weatherPostBatch(List<WeatherRecord> records)
+	{
+		Entity<List<WeatherRecord>> recordsEntity = Entity.entity(records, MediaType.APPLICATION_JSON);
+		Response response = target.path("/collect/weather/batch").request().post(recordsEntity);
+		String responseString = response.readEntity(String.class);
+		response.close();
+
+		processResponse(response.getStatus(), responseString);
+
+		Type statusesType = new TypeToken<List<WeatherRecordStatus>>()
+		{
+		}.getType();
+
+		return gson.fromJson(responseString, statusesType);
+	}
+
+	/**
+	 * Update atmospheric information with a stream of records, sent with chunked transfer one json object per line
+	 * as the records are iterated, so they don't have to be kept in memory.
+	 *
+	 * @param records data points with their airports and types
+	 * @return numbers of the records applied and skipped, with the first errors
+	 */
+	public IngestSummary weatherPostStream(Iterable<WeatherRecord> records)
+	{
+		StreamingOutput output = outputStream ->
+		{
+			Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+			for (WeatherRecord record : records)
+			{
+				gson.toJson(record, writer);
+				writer.write('\n');
+			}
+			writer.flush();
+		};
+		Response response = target.path("/collect/weather/stream").request()
+				.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED)
+				.post(Entity.entity(output, MediaType.APPLICATION_OCTET_STREAM));
+		String responseString = response.readEntity(String.class);
+		response.close();
+
+		processResponse(response.getStatus(), responseString);
+
+		return gson.fromJson(responseString, IngestSummary.class);
+	}
+
+	/**
+	 * Get collection metrics
+	 *
+	 * @return whether updates are applied asynchronously and depths of their queues
+	 */
+	public CollectMetrics metricsGet()
+	{
+		Response response = target.path("/collect/metrics").request().get();
+		String responseString = response.readEntity(String.class);
+		response.close();
+
+		processResponse(response.getStatus(), responseString);
+
+		return gson.fromJson(responseString, CollectMetrics.class);
+	}
+
 	/**
 	 * Retrieve airport data, including latitude and longitude for a particular airport
 	 *
@@ -119,6 +197,37 @@ public class CollectClientHelper extends ClientHelper
 		return response.getStatus();
 	}
 
+	/**
+	 * Begin bulk airport load, geographical search structures are rebuilt only when it ends
+	 *
+	 * @return HTTP Response code
+	 */
+	public int airportsBulkBegin()
+	{
+		return bulkLoadPost("begin");
+	}
+
+	/**
+	 * End bulk airport load, geographical search structures are rebuilt in the background
+	 *
+	 * @return HTTP Response code
+	 */
+	public int airportsBulkEnd()
+	{
+		return bulkLoadPost("end");
+	}
+
+	private int bulkLoadPost(String action)
+	{
+		Response response = target.path("/collect/airports/bulk/" + action).request().post(Entity.entity(null, MediaType.APPLICATION_JSON));
+		String responseString = response.readEntity(String.class);
+		response.close();
+
+		processResponse(response.getStatus(), responseString);
+
+		return response.getStatus();
+	}
+
 	/**
 	 * A liveliness check for the collection endpoint.
 	 * Stated to return "1 if the endpoint is alive functioning, 0 otherwise", but obviously don't do this.
@@ -2,10 +2,15 @@ package com.crossover.trial.weather.client;
 
 import com.crossover.trial.weather.common.Calculations;
 import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.DownsampledHistory;
 import com.crossover.trial.weather.data.PingData;
+import com.crossover.trial.weather.data.TimedDataPoint;
 import com.google.gson.reflect.TypeToken;
 
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -57,6 +62,149 @@ public class QueryClientHelper extends ClientHelper
 		return responseString;
 	}
 
+	/**
+	 * Retrieve the most up to date atmospheric information from the airports in the given radius around the point.
+	 *
+	 * @param latitude  latitude of the point in degrees
+	 * @param longitude longitude of the point in degrees
+	 * @param radius    the radius, in km, from which to collect weather data
+	 * @return list of {@link AtmosphericInformation} from the airports in the given radius
+	 */
+	public List<AtmosphericInformation> weatherPointGet(double latitude, double longitude, double radius)
+	{
+		Type listType = new TypeToken<ArrayList<AtmosphericInformation>>()
+		{
+		}.getType();
+
+		Response response = target.path(String.format("query/weather/point/%s/%s/%s", Calculations.formatDouble(latitude),
+				Calculations.formatDouble(longitude), Calculations.formatDouble(radius))).request().get();
+		String responseString = response.readEntity(String.class);
+		response.close();
+
+		processResponse(response.getStatus(), responseString);
+
+		return gson.fromJson(responseString, listType);
+	}
+
+	/**
+	 * Retrieve the most up to date atmospheric information from the airports inside the latitude/longitude rectangle.
+	 *
+	 * @param south south border latitude in degrees
+	 * @param west  west border longitude in degrees, box with west border greater than east one crosses the antimeridian
+	 * @param north north border latitude in degrees
+	 * @param east  east border longitude in degrees
+	 * @return list of {@link AtmosphericInformation} from the airports inside the box
+	 */
+	public List<AtmosphericInformation> weatherBoxGet(double south, double west, double north, double east)
+	{
+		Type listType = new TypeToken<ArrayList<AtmosphericInformation>>()
+		{
+		}.getType();
+
+		Response response = target.path(String.format("query/weather/box/%s/%s/%s/%s", Calculations.formatDouble(south),
+				Calculations.formatDouble(west), Calculations.formatDouble(north), Calculations.formatDouble(east))).request().get();
+		String responseString = response.readEntity(String.class);
+		response.close();
+
+		processResponse(response.getStatus(), responseString);
+
+		return gson.fromJson(responseString, listType);
+	}
+
+	/**
+	 * Retrieve the most up to date atmospheric information from the airports inside the polygon.
+	 *
+	 * @param vertices polygon vertices, each one is a pair of latitude and longitude in degrees
+	 * @return list of {@link AtmosphericInformation} from the airports inside the polygon
+	 */
+	public List<AtmosphericInformation> weatherPolygonPost(double[][] vertices)
+	{
+		Type listType = new TypeToken<ArrayList<AtmosphericInformation>>()
+		{
+		}.getType();
+
+		Response response = target.path("query/weather/polygon").request()
+				.post(Entity.entity(gson.toJson(vertices), MediaType.APPLICATION_JSON));
+		String responseString = response.readEntity(String.class);
+		response.close();
+
+		processResponse(response.getStatus(), responseString);
+
+		return gson.fromJson(responseString, listType);
+	}
+
+	/**
+	 * Retrieve the most up to date atmospheric information from the given number of airports nearest to the given one.
+	 *
+	 * @param iata        the three letter airport code
+	 * @param count       the number of airports to collect weather data from
+	 * @param withWeather skip airports with no atmospheric information, so they are not counted
+	 * @return list of {@link AtmosphericInformation} from the nearest airports, ordered by distance
+	 */
+	public List<AtmosphericInformation> nearestGet(String iata, int count, boolean withWeather)
+	{
+		Type listType = new TypeToken<ArrayList<AtmosphericInformation>>()
+		{
+		}.getType();
+
+		Response response = target.path(String.format("query/nearest/%s/%d", iata, count))
+				.queryParam("withWeather", withWeather).request().get();
+		String responseString = response.readEntity(String.class);
+		response.close();
+
+		processResponse(response.getStatus(), responseString);
+
+		return gson.fromJson(responseString, listType);
+	}
+
+	/**
+	 * Retrieve the history of data points of the given type collected at the airport within the time range.
+	 *
+	 * @param iata the three letter airport code
+	 * @param type the data point type
+	 * @param from start of the time range in ms since epoch, inclusive
+	 * @param to   end of the time range in ms since epoch, inclusive
+	 * @return list of {@link TimedDataPoint} in the order of collection
+	 */
+	public List<TimedDataPoint> historyGet(String iata, DataPointType type, long from, long to)
+	{
+		Type listType = new TypeToken<ArrayList<TimedDataPoint>>()
+		{
+		}.getType();
+
+		Response response = target.path(String.format("query/history/%s/%s", iata, type.name().toLowerCase()))
+				.queryParam("from", from).queryParam("to", to).request().get();
+		String responseString = response.readEntity(String.class);
+		response.close();
+
+		processResponse(response.getStatus(), responseString);
+
+		return gson.fromJson(responseString, listType);
+	}
+
+	/**
+	 * Retrieve the history of data points of the given type collected at the airport within the time range,
+	 * downsampled to fit the number of points.
+	 *
+	 * @param iata      the three letter airport code
+	 * @param type      the data point type
+	 * @param from      start of the time range in ms since epoch, inclusive
+	 * @param to        end of the time range in ms since epoch, inclusive
+	 * @param maxPoints max number of points
+	 * @return points of the resolution chosen by the server
+	 */
+	public DownsampledHistory rollupGet(String iata, DataPointType type, long from, long to, int maxPoints)
+	{
+		Response response = target.path(String.format("query/rollup/%s/%s", iata, type.name().toLowerCase()))
+				.queryParam("from", from).queryParam("to", to).queryParam("maxPoints", maxPoints).request().get();
+		String responseString = response.readEntity(String.class);
+		response.close();
+
+		processResponse(response.getStatus(), responseString);
+
+		return gson.fromJson(responseString, DownsampledHistory.class);
+	}
+
 	/**
 	 * Retrieve health and status information for the the query api. Returns information about the number
 	 * of datapoints currently held in memory, the frequency of requests for each IATA code and the frequency of
@@ -12,6 +12,11 @@ public class Calculations
 	 */
 	public static final double R = 6372.8;
 
+	/**
+	 * Distance between antipodal points in km, no two points on Earth are further from each other
+	 */
+	public static final double MAX_DISTANCE = Math.PI * R;
+
 	/* Number of milliseconds in one day */
 	public static final long MS_IN_ONE_DAY = 86400000;
 
@@ -0,0 +1,150 @@
+package com.crossover.trial.weather.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts objects by their last update time in per-minute buckets over the last day, so number of objects updated
+ * within a period is a small sum instead of a scan over all of them. Every object is counted in the bucket of its
+ * last update: object update moves it from one bucket to another, object removal takes it out. Last update time is
+ * kept by the object and changed by the counter only, as the move depends on its previous value.
+ * <p>
+ * Bucket is reused in a day, so it keeps the minute it counts along with the count (in a single long, to be changed
+ * atomically). Count of the outdated minute is dropped on the first update of the new one.
+ * <p>
+ * Precision is one minute: objects updated within the first minute of the period are counted entirely.
+ */
+public class FreshnessCounter
+{
+	/* Update time of the removed object */
+	private static final long REMOVED = -1;
+
+	private static final long MS_IN_ONE_MINUTE = 60 * 1000;
+
+	/* Buckets for the whole day and the partial minute at its start */
+	private static final int BUCKETS_NUMBER = 24 * 60 + 1;
+
+	/* Minute (high 32 bits) and count of the objects updated within this minute (low 32 bits) */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_NUMBER);
+
+	/**
+	 * Check if the counter is able to tell number of objects updated within a period
+	 *
+	 * @param period time period in ms
+	 * @return true if the period fits into the counted day
+	 */
+	public boolean covers(long period)
+	{
+		return period >= 0 && period <= (BUCKETS_NUMBER - 1) * MS_IN_ONE_MINUTE;
+	}
+
+	/**
+	 * Set new update time of the object and move it to the bucket of this time.
+	 * Object is not counted anymore after removal, so its update time is not changed then.
+	 *
+	 * @param lastUpdate last update time of the object, 0 if object was not updated yet
+	 * @param updateTime new update time
+	 */
+	public void update(AtomicLong lastUpdate, long updateTime)
+	{
+		long previousTime;
+		do
+		{
+			previousTime = lastUpdate.get();
+			if (previousTime == REMOVED)
+				return;
+		} while (!lastUpdate.compareAndSet(previousTime, updateTime));
+
+		long previousMinute = previousTime / MS_IN_ONE_MINUTE;
+		long updateMinute = updateTime / MS_IN_ONE_MINUTE;
+		if (previousTime > 0 && previousMinute == updateMinute)
+			return;
+
+		add(updateMinute, 1);
+		if (previousTime > 0)
+			add(previousMinute, -1);
+	}
+
+	/**
+	 * Stop counting the object
+	 *
+	 * @param lastUpdate last update time of the object
+	 */
+	public void remove(AtomicLong lastUpdate)
+	{
+		long previousTime = lastUpdate.getAndSet(REMOVED);
+		if (previousTime > 0)
+			add(previousTime / MS_IN_ONE_MINUTE, -1);
+	}
+
+	/**
+	 * Get last update time of the object, which was updated by this counter
+	 *
+	 * @param lastUpdate last update time of the object
+	 * @return last update time, or 0 if object was never updated or removed
+	 */
+	public static long getUpdateTime(AtomicLong lastUpdate)
+	{
+		return Math.max(lastUpdate.get(), 0);
+	}
+
+	/**
+	 * Get number of objects updated within the period
+	 *
+	 * @param period time period in ms, should be covered by the counter
+	 * @param now    current time
+	 * @return number of objects, updated within the period
+	 */
+	public int size(long period, long now)
+	{
+		long fromMinute = (now - period) / MS_IN_ONE_MINUTE;
+		long toMinute = now / MS_IN_ONE_MINUTE;
+		int size = 0;
+		for (long minute = fromMinute; minute <= toMinute; minute++)
+		{
+			long bucket = buckets.get(getIndex(minute));
+			if (getMinute(bucket) == minute)
+				size += getCount(bucket);
+		}
+		/* Object moved to another minute may be taken out of the previous bucket before being added to the new one */
+		return Math.max(size, 0);
+	}
+
+	/* Counts of the same minute are added in any order, so concurrent moves don't need to be ordered */
+	private void add(long minute, int delta)
+	{
+		int index = getIndex(minute);
+		while (true)
+		{
+			long bucket = buckets.get(index);
+			long bucketMinute = getMinute(bucket);
+			/* Bucket is already reused for the later minute */
+			if (bucketMinute > minute)
+				return;
+
+			int count = bucketMinute == minute ? getCount(bucket) : 0;
+			if (buckets.compareAndSet(index, bucket, pack(minute, count + delta)))
+				return;
+		}
+	}
+
+	private static int getIndex(long minute)
+	{
+		return (int) Math.floorMod(minute, (long) BUCKETS_NUMBER);
+	}
+
+	private static long pack(long minute, int count)
+	{
+		return minute << 32 | count & 0xFFFFFFFFL;
+	}
+
+	private static long getMinute(long bucket)
+	{
+		return bucket >>> 32;
+	}
+
+	private static int getCount(long bucket)
+	{
+		return (int) bucket;
+	}
+}
@@ -0,0 +1,35 @@
+package com.crossover.trial.weather.common;
+
+/**
+ * Packs three-letter uppercase IATA codes into dense numbers from 0 to {@link #CODES_NUMBER} - 1,
+ * so the airports can be found in a flat array instead of the hash map.
+ */
+public class IataCodec
+{
+	/**
+	 * Number of all possible three-letter codes
+	 */
+	public static final int CODES_NUMBER = 26 * 26 * 26;
+
+	/**
+	 * Pack the code without any allocations
+	 *
+	 * @param iata airport code
+	 * @return number from 0 to {@link #CODES_NUMBER} - 1, or -1 if the code is not three uppercase latin letters
+	 */
+	public static int encode(String iata)
+	{
+		if (iata == null || iata.length() != 3)
+			return -1;
+
+		int result = 0;
+		for (int i = 0; i < 3; i++)
+		{
+			char c = iata.charAt(i);
+			if (c < 'A' || c > 'Z')
+				return -1;
+			result = result * 26 + (c - 'A');
+		}
+		return result;
+	}
+}
@@ -0,0 +1,99 @@
+package com.crossover.trial.weather.common;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Growable array of objects indexed by dense ordinals, e.g. the ones assigned to the airports by the airport database.
+ * Reads never block. Slot changes are rare (first use of an ordinal and its reuse), so they are serialized.
+ *
+ * @param <T> type of the objects
+ */
+public class OrdinalArray<T>
+{
+	private static final int INITIAL_CAPACITY = 256;
+
+	private volatile AtomicReferenceArray<T> slots;
+
+	public OrdinalArray()
+	{
+		slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Get object by ordinal
+	 *
+	 * @param ordinal ordinal
+	 * @return object, or null if none present
+	 */
+	public T get(int ordinal)
+	{
+		AtomicReferenceArray<T> current = slots;
+		return ordinal >= 0 && ordinal < current.length() ? current.get(ordinal) : null;
+	}
+
+	/**
+	 * Get object by ordinal, replacing it with a new one if it is absent or not valid anymore
+	 *
+	 * @param ordinal ordinal, non-negative
+	 * @param valid   check if present object can be used
+	 * @param factory creates the new object
+	 * @return valid object for the ordinal
+	 */
+	public T get(int ordinal, Predicate<T> valid, Supplier<T> factory)
+	{
+		T value = get(ordinal);
+		if (value != null && valid.test(value))
+			return value;
+
+		synchronized (this)
+		{
+			value = get(ordinal);
+			if (value != null && valid.test(value))
+				return value;
+
+			AtomicReferenceArray<T> current = slots;
+			if (ordinal >= current.length())
+			{
+				AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(Math.max(ordinal + 1, current.length() * 2));
+				for (int i = 0; i < current.length(); i++)
+					grown.set(i, current.get(i));
+				slots = current = grown;
+			}
+			value = factory.get();
+			current.set(ordinal, value);
+			return value;
+		}
+	}
+
+	/**
+	 * Clear the slot, if its object matches the condition
+	 *
+	 * @param ordinal ordinal
+	 * @param matches condition for the object to remove
+	 */
+	public synchronized void remove(int ordinal, Predicate<T> matches)
+	{
+		T value = get(ordinal);
+		if (value != null && matches.test(value))
+			slots.set(ordinal, null);
+	}
+
+	/**
+	 * Perform action for every present object
+	 *
+	 * @param action action
+	 */
+	public void forEach(Consumer<T> action)
+	{
+		AtomicReferenceArray<T> current = slots;
+		for (int i = 0; i < current.length(); i++)
+		{
+			T value = current.get(i);
+			if (value != null)
+				action.accept(value);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.crossover.trial.weather.common;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timer wheel: tasks are put into the bucket of their deadline tick, and on every tick the worker thread runs
+ * only the tasks of the current bucket, which are due. Both scheduling and expiry cost O(1), no matter how many tasks
+ * are pending; tasks, which are due more than a wheel turn later, are just passed by on the way.
+ * <p>
+ * Tasks are run by the worker thread one by one, so they should be short. Task is never run earlier than its delay,
+ * but may be run up to a tick later.
+ */
+public class TimerWheel implements Closeable
+{
+	public final static Logger LOGGER = Logger.getLogger(TimerWheel.class.getName());
+
+	/* Tick duration in ms */
+	private final long tickDuration;
+
+	/* Buckets by tick modulo their number, accessed by the worker only */
+	private final Queue<Timeout>[] buckets;
+
+	/* Tasks scheduled since the last tick, to be put into the buckets by the worker */
+	private final Queue<Timeout> scheduled;
+
+	private final long startTime;
+
+	private final Thread worker;
+
+	private volatile boolean closed;
+
+	/**
+	 * Create the timer and start its worker thread
+	 *
+	 * @param tickDuration tick duration in ms
+	 * @param bucketsNumber number of buckets, power of two
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public TimerWheel(long tickDuration, int bucketsNumber)
+	{
+		if (tickDuration <= 0)
+			throw new IllegalArgumentException("Tick duration should be positive: " + tickDuration);
+		if (bucketsNumber <= 0 || Integer.bitCount(bucketsNumber) != 1)
+			throw new IllegalArgumentException("Number of buckets should be a power of two: " + bucketsNumber);
+
+		this.tickDuration = tickDuration;
+		buckets = new Queue[bucketsNumber];
+		for (int i = 0; i < bucketsNumber; i++)
+			buckets[i] = new ArrayDeque<>();
+		scheduled = new ConcurrentLinkedQueue<>();
+		startTime = System.currentTimeMillis();
+
+		worker = new Thread(this::work, "timer-wheel");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Run the task after the delay
+	 *
+	 * @param delay delay in ms
+	 * @param task  task to run
+	 */
+	public void schedule(long delay, Runnable task)
+	{
+		long deadline = System.currentTimeMillis() + Math.max(delay, 0);
+		scheduled.add(new Timeout((deadline - startTime + tickDuration - 1) / tickDuration, task));
+	}
+
+	/**
+	 * Stop the worker thread. Pending tasks are never run.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		worker.interrupt();
+	}
+
+	private void work()
+	{
+		long tick = 0;
+		while (!closed)
+		{
+			long sleep = startTime + tick * tickDuration - System.currentTimeMillis();
+			if (sleep > 0)
+			{
+				try
+				{
+					TimeUnit.MILLISECONDS.sleep(sleep);
+				} catch (InterruptedException e)
+				{
+					continue;
+				}
+			}
+
+			/* Tasks for the ticks passed already go to the current one */
+			for (Timeout timeout = scheduled.poll(); timeout != null; timeout = scheduled.poll())
+				buckets[(int) (Math.max(timeout.deadlineTick, tick) & (buckets.length - 1))].add(timeout);
+
+			Iterator<Timeout> bucket = buckets[(int) (tick & (buckets.length - 1))].iterator();
+			while (bucket.hasNext())
+			{
+				Timeout timeout = bucket.next();
+				if (timeout.deadlineTick > tick)
+					continue;
+
+				bucket.remove();
+				try
+				{
+					timeout.task.run();
+				} catch (RuntimeException e)
+				{
+					LOGGER.log(Level.WARNING, "Timer task failed", e);
+				}
+			}
+			tick++;
+		}
+	}
+
+	private static class Timeout
+	{
+		private final long deadlineTick;
+		private final Runnable task;
+
+		private Timeout(long deadlineTick, Runnable task)
+		{
+			this.deadlineTick = deadlineTick;
+			this.task = task;
+		}
+	}
+}
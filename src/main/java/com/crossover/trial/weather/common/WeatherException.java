@@ -20,6 +20,11 @@ public class WeatherException extends Exception
 		this.status = status;
 	}
 
+	public Response.StatusType getStatus()
+	{
+		return status;
+	}
+
 	public Response createResponse()
 	{
 		return Response.status(status).entity(getMessage()).build();
@@ -25,6 +25,11 @@ public class AirportData
 	 */
 	private double longitude;
 
+	/**
+	 * dense number assigned by the airport database, -1 if not registered. Not a part of airport information
+	 */
+	private transient int ordinal = -1;
+
 	public AirportData(String iata, double latitude, double longitude)
 	{
 		this.iata = iata;
@@ -47,6 +52,24 @@ public class AirportData
 		return longitude;
 	}
 
+	/**
+	 * Get dense number assigned by the airport database. Different airports in the database have different numbers,
+	 * number of removed airport is taken from it and reused. Airport replaced with the one with the same iata keeps
+	 * the number.
+	 *
+	 * @return number from 0, or -1 if the airport is not registered
+	 */
+	public int ordinal()
+	{
+		return ordinal;
+	}
+
+	/* Assigned through AirportOrdinals only */
+	void setOrdinal(int ordinal)
+	{
+		this.ordinal = ordinal;
+	}
+
 	public String toString()
 	{
 		return ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE);
@@ -61,4 +84,9 @@ public class AirportData
 
 		return false;
 	}
+
+	public int hashCode()
+	{
+		return iata == null ? 0 : iata.hashCode();
+	}
 }
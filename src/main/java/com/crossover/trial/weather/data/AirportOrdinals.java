@@ -0,0 +1,74 @@
+package com.crossover.trial.weather.data;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Dense ordinals of the airports registered in a single airport database, see {@link AirportData#ordinal()}.
+ * Ordinals can be assigned only through the database owning them, and airport registered already can't get another
+ * one. Ordinal of the removed airport is taken from it and reused, starting from the last removed one.
+ * <p>
+ * Not thread safe, guarded by the airport database.
+ */
+public class AirportOrdinals
+{
+	/* Next never used ordinal */
+	private int nextOrdinal;
+
+	/* Ordinals of the removed airports */
+	private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+
+	/**
+	 * Assign ordinal to the added airport
+	 *
+	 * @param airportData added airport
+	 * @param replaced    registered airport with the same iata, which ordinal is kept, or null if there's none
+	 * @throws IllegalStateException if the airport has ordinal from the other registration
+	 */
+	public void assign(AirportData airportData, AirportData replaced)
+	{
+		if (airportData == replaced)
+			return;
+		checkUnassigned(airportData);
+
+		airportData.setOrdinal(replaced != null ? replaced.ordinal() : freeOrdinals.isEmpty() ? nextOrdinal++ : freeOrdinals.pop());
+	}
+
+	/**
+	 * Assign ordinal restored from a persistent storage. Airports should be restored in the order of their ordinals
+	 * before any other change, skipped ordinals become free.
+	 *
+	 * @param airportData restored airport
+	 * @param ordinal     ordinal of the airport
+	 * @throws IllegalArgumentException if the ordinal is used already
+	 * @throws IllegalStateException    if the airport has ordinal from the other registration
+	 */
+	public void restore(AirportData airportData, int ordinal)
+	{
+		if (ordinal < nextOrdinal)
+			throw new IllegalArgumentException("Airport ordinal can't be restored: " + airportData.getIata() + ", ordinal: " + ordinal);
+		checkUnassigned(airportData);
+
+		while (nextOrdinal < ordinal)
+			freeOrdinals.push(nextOrdinal++);
+		nextOrdinal++;
+		airportData.setOrdinal(ordinal);
+	}
+
+	/**
+	 * Take ordinal from the removed airport for reuse, so it never refers to another airport through it
+	 *
+	 * @param airportData removed airport
+	 */
+	public void release(AirportData airportData)
+	{
+		freeOrdinals.push(airportData.ordinal());
+		airportData.setOrdinal(-1);
+	}
+
+	private static void checkUnassigned(AirportData airportData)
+	{
+		if (airportData.ordinal() >= 0)
+			throw new IllegalStateException("Airport is registered already: " + airportData.getIata());
+	}
+}
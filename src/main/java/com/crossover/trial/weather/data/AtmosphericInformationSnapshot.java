@@ -0,0 +1,196 @@
+package com.crossover.trial.weather.data;
+
+/**
+ * Immutable sensor information for a particular location. Update produces a new snapshot with one data point
+ * replaced, so the snapshot can be shared without defensive copies. Setters are not supported.
+ */
+public class AtmosphericInformationSnapshot implements AtmosphericInformation
+{
+	/**
+	 * Snapshot without any data points
+	 */
+	public static final AtmosphericInformationSnapshot EMPTY = new AtmosphericInformationSnapshot(null, null, null, null, null, null);
+
+	/* wind speed in km/h */
+	private final DataPoint wind;
+
+	/* humidity in percent */
+	private final DataPoint humidity;
+
+	/* temperature in degrees celsius */
+	private final DataPoint temperature;
+
+	/* precipitation in cm */
+	private final DataPoint precipitation;
+
+	/* pressure in mmHg */
+	private final DataPoint pressure;
+
+	/* cloud cover percent */
+	private final DataPoint cloudCover;
+
+	private AtmosphericInformationSnapshot(DataPoint wind, DataPoint humidity, DataPoint temperature, DataPoint precipitation,
+										   DataPoint pressure, DataPoint cloudCover)
+	{
+		this.wind = wind;
+		this.humidity = humidity;
+		this.temperature = temperature;
+		this.precipitation = precipitation;
+		this.pressure = pressure;
+		this.cloudCover = cloudCover;
+	}
+
+	/**
+	 * Since DataPoint is read-only object, we can copy links, not values. Snapshot is returned as is.
+	 *
+	 * @param atmosphericInformation object to copy
+	 * @return snapshot with the same data points
+	 */
+	public static AtmosphericInformationSnapshot of(AtmosphericInformation atmosphericInformation)
+	{
+		if (atmosphericInformation instanceof AtmosphericInformationSnapshot)
+			return (AtmosphericInformationSnapshot) atmosphericInformation;
+
+		return new AtmosphericInformationSnapshot(atmosphericInformation.getWind(), atmosphericInformation.getHumidity(),
+				atmosphericInformation.getTemperature(), atmosphericInformation.getPrecipitation(),
+				atmosphericInformation.getPressure(), atmosphericInformation.getCloudCover());
+	}
+
+	/**
+	 * Create snapshot of all the data points at once, instead of replacing them one by one
+	 *
+	 * @param dataPoints data points indexed by the ordinal of their {@link DataPointType}, null for the absent ones
+	 * @return snapshot with the given data points
+	 */
+	public static AtmosphericInformationSnapshot of(DataPoint[] dataPoints)
+	{
+		return new AtmosphericInformationSnapshot(dataPoints[DataPointType.WIND.ordinal()], dataPoints[DataPointType.HUMIDITY.ordinal()],
+				dataPoints[DataPointType.TEMPERATURE.ordinal()], dataPoints[DataPointType.PRECIPITATION.ordinal()],
+				dataPoints[DataPointType.PRESSURE.ordinal()], dataPoints[DataPointType.CLOUDCOVER.ordinal()]);
+	}
+
+	/**
+	 * Get data point of particular type
+	 *
+	 * @param type type of the data point
+	 * @return data point, or null if none present
+	 */
+	public DataPoint get(DataPointType type)
+	{
+		switch (type)
+		{
+			case WIND:
+				return wind;
+			case HUMIDITY:
+				return humidity;
+			case TEMPERATURE:
+				return temperature;
+			case PRECIPITATION:
+				return precipitation;
+			case PRESSURE:
+				return pressure;
+			case CLOUDCOVER:
+				return cloudCover;
+		}
+		throw new IllegalArgumentException("Data point type is not recognized: " + type);
+	}
+
+	/**
+	 * Create snapshot with one data point replaced
+	 *
+	 * @param type      type of the data point to replace
+	 * @param dataPoint new data point
+	 * @return new snapshot
+	 */
+	public AtmosphericInformationSnapshot with(DataPointType type, DataPoint dataPoint)
+	{
+		switch (type)
+		{
+			case WIND:
+				return new AtmosphericInformationSnapshot(dataPoint, humidity, temperature, precipitation, pressure, cloudCover);
+			case HUMIDITY:
+				return new AtmosphericInformationSnapshot(wind, dataPoint, temperature, precipitation, pressure, cloudCover);
+			case TEMPERATURE:
+				return new AtmosphericInformationSnapshot(wind, humidity, dataPoint, precipitation, pressure, cloudCover);
+			case PRECIPITATION:
+				return new AtmosphericInformationSnapshot(wind, humidity, temperature, dataPoint, pressure, cloudCover);
+			case PRESSURE:
+				return new AtmosphericInformationSnapshot(wind, humidity, temperature, precipitation, dataPoint, cloudCover);
+			case CLOUDCOVER:
+				return new AtmosphericInformationSnapshot(wind, humidity, temperature, precipitation, pressure, dataPoint);
+		}
+		throw new IllegalArgumentException("Data point type is not recognized: " + type);
+	}
+
+	@Override
+	public DataPoint getTemperature()
+	{
+		return temperature;
+	}
+
+	@Override
+	public void setTemperature(DataPoint temperature)
+	{
+		throw new UnsupportedOperationException("Atmospheric information snapshot is immutable");
+	}
+
+	@Override
+	public DataPoint getWind()
+	{
+		return wind;
+	}
+
+	@Override
+	public void setWind(DataPoint wind)
+	{
+		throw new UnsupportedOperationException("Atmospheric information snapshot is immutable");
+	}
+
+	@Override
+	public DataPoint getHumidity()
+	{
+		return humidity;
+	}
+
+	@Override
+	public void setHumidity(DataPoint humidity)
+	{
+		throw new UnsupportedOperationException("Atmospheric information snapshot is immutable");
+	}
+
+	@Override
+	public DataPoint getPrecipitation()
+	{
+		return precipitation;
+	}
+
+	@Override
+	public void setPrecipitation(DataPoint precipitation)
+	{
+		throw new UnsupportedOperationException("Atmospheric information snapshot is immutable");
+	}
+
+	@Override
+	public DataPoint getPressure()
+	{
+		return pressure;
+	}
+
+	@Override
+	public void setPressure(DataPoint pressure)
+	{
+		throw new UnsupportedOperationException("Atmospheric information snapshot is immutable");
+	}
+
+	@Override
+	public DataPoint getCloudCover()
+	{
+		return cloudCover;
+	}
+
+	@Override
+	public void setCloudCover(DataPoint cloudCover)
+	{
+		throw new UnsupportedOperationException("Atmospheric information snapshot is immutable");
+	}
+}
@@ -0,0 +1,64 @@
+package com.crossover.trial.weather.data;
+
+/**
+ * Information provided by collect metrics request.
+ */
+public class CollectMetrics
+{
+	/* True if single updates are applied asynchronously */
+	private boolean async;
+	/* Number of updates waiting in the queue of every shard, empty if updates are applied synchronously */
+	private int[] queueDepths;
+	/* Number of data point updates dropped as superseded within the coalescing window */
+	private long coalesced;
+	/* Number of data point updates committed at the end of the coalescing window */
+	private long committed;
+
+	public CollectMetrics(boolean async, int[] queueDepths, long coalesced, long committed)
+	{
+		this.async = async;
+		this.queueDepths = queueDepths;
+		this.coalesced = coalesced;
+		this.committed = committed;
+	}
+
+	/**
+	 * Check whether single updates are applied asynchronously
+	 *
+	 * @return true if updates are queued and applied by the shards
+	 */
+	public boolean isAsync()
+	{
+		return async;
+	}
+
+	/**
+	 * Get number of updates waiting in the queue of every shard
+	 *
+	 * @return queue depth by shard, empty if updates are applied synchronously
+	 */
+	public int[] getQueueDepths()
+	{
+		return queueDepths;
+	}
+
+	/**
+	 * Get number of data point updates dropped as superseded within the coalescing window
+	 *
+	 * @return number of dropped updates, 0 if updates are not coalesced
+	 */
+	public long getCoalesced()
+	{
+		return coalesced;
+	}
+
+	/**
+	 * Get number of data point updates committed at the end of the coalescing window
+	 *
+	 * @return number of committed updates, 0 if updates are not coalesced
+	 */
+	public long getCommitted()
+	{
+		return committed;
+	}
+}
@@ -20,7 +20,7 @@ import java.lang.reflect.Type;
  * </pre>
  * The order of invocation of configuration methods does not matter.
  */
-final public class DataPointBuilder implements InstanceCreator<DataPoint>, JsonDeserializer<DataPoint>
+final public class DataPointBuilder implements InstanceCreator<DataPoint>, JsonDeserializer<DataPoint>, JsonSerializer<DataPoint>
 {
 	private DataPointImpl dataPoint;
 
@@ -81,6 +81,19 @@ final public class DataPointBuilder implements InstanceCreator<DataPoint>, JsonD
 		return context.deserialize(json, DataPointImpl.class);
 	}
 
+	/* Data point fields are written explicitly, as a field of the interface type would be serialized empty */
+	@Override
+	public JsonElement serialize(DataPoint dataPoint, Type typeOfSrc, JsonSerializationContext context)
+	{
+		JsonObject json = new JsonObject();
+		json.addProperty("mean", dataPoint.getMean());
+		json.addProperty("first", dataPoint.getFirst());
+		json.addProperty("second", dataPoint.getSecond());
+		json.addProperty("third", dataPoint.getThird());
+		json.addProperty("count", dataPoint.getCount());
+		return json;
+	}
+
 	/**
 	 * Private class, use the builder to create this object
 	 */
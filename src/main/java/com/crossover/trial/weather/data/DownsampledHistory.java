@@ -0,0 +1,40 @@
+package com.crossover.trial.weather.data;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.List;
+
+/**
+ * History of the data points within a time range at the resolution, chosen to fit the number of points requested.
+ */
+public class DownsampledHistory
+{
+	/* bucket duration in ms, 0 if the points are the collected data points themselves */
+	private long resolution;
+
+	/* points in the order of time */
+	private List<RollupDataPoint> points;
+
+	public DownsampledHistory(long resolution, List<RollupDataPoint> points)
+	{
+		this.resolution = resolution;
+		this.points = points;
+	}
+
+	public long getResolution()
+	{
+		return resolution;
+	}
+
+	public List<RollupDataPoint> getPoints()
+	{
+		return points;
+	}
+
+	@Override
+	public String toString()
+	{
+		return ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE);
+	}
+}
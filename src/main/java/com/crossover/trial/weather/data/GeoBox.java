@@ -0,0 +1,100 @@
+package com.crossover.trial.weather.data;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Geographical rectangle between two latitudes and two meridians. Longitude range goes to the east from west border
+ * to the east one, so the box with west border greater than east one crosses the antimeridian.
+ */
+public class GeoBox
+{
+	/* Latitude borders in degrees */
+	private final double south, north;
+
+	/* West border in degrees */
+	private final double west;
+
+	/* Longitude extent to the east of west border in degrees, from 0 to 360 */
+	private final double width;
+
+	/**
+	 * Create box by its borders
+	 *
+	 * @param south south border latitude in degrees
+	 * @param west  west border longitude in degrees
+	 * @param north north border latitude in degrees
+	 * @param east  east border longitude in degrees
+	 * @throws IllegalArgumentException if borders are not finite numbers or south border is to the north of north one
+	 */
+	public GeoBox(double south, double west, double north, double east)
+	{
+		if (!Double.isFinite(south) || !Double.isFinite(west) || !Double.isFinite(north) || !Double.isFinite(east) || south > north)
+			throw new IllegalArgumentException(String.format("Invalid box borders: %s, %s, %s, %s", south, west, north, east));
+
+		this.south = south;
+		this.north = north;
+		this.west = west;
+		width = east - west >= 360 ? 360 : normalizeLongitude(east - west);
+	}
+
+	public double getSouth()
+	{
+		return south;
+	}
+
+	public double getNorth()
+	{
+		return north;
+	}
+
+	public double getWest()
+	{
+		return west;
+	}
+
+	/**
+	 * Get longitude extent to the east of west border
+	 *
+	 * @return longitude extent in degrees, from 0 to 360
+	 */
+	public double getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * Check if the point is inside the box, borders included
+	 *
+	 * @param latitude  latitude in degrees
+	 * @param longitude longitude in degrees
+	 * @return true, if the point is inside the box
+	 */
+	public boolean contains(double latitude, double longitude)
+	{
+		return latitude >= south && latitude <= north && (width == 360 ? Double.isFinite(longitude) : normalizeLongitude(longitude - west) <= width);
+	}
+
+	/**
+	 * Check if the airport is inside the box, borders included
+	 *
+	 * @param airportData airport
+	 * @return true, if the airport is inside the box
+	 */
+	public boolean contains(AirportData airportData)
+	{
+		return contains(airportData.getLatitude(), airportData.getLongitude());
+	}
+
+	/* Longitude difference reduced to [0, 360) */
+	private static double normalizeLongitude(double longitude)
+	{
+		double result = longitude % 360;
+		return result < 0 ? result + 360 : result;
+	}
+
+	public String toString()
+	{
+		return ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE);
+	}
+}
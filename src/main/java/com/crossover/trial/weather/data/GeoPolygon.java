@@ -0,0 +1,101 @@
+package com.crossover.trial.weather.data;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Geographical polygon with straight edges in latitude/longitude coordinates, which is the way region boundaries are
+ * usually described. Edges go the short way around, so polygon may cross the antimeridian, but can't contain a pole.
+ */
+public class GeoPolygon
+{
+	/* Vertex coordinates in degrees. Longitudes are unwrapped: each one differs from the previous by less than 180 */
+	private final double[] latitudes, longitudes;
+
+	/* Box containing the whole polygon */
+	private final GeoBox boundingBox;
+
+	/**
+	 * Create polygon by its vertices
+	 *
+	 * @param vertices pairs of latitude and longitude in degrees, at least three of them
+	 * @throws IllegalArgumentException if there are not enough vertices or coordinates are out of range
+	 */
+	public GeoPolygon(double[][] vertices)
+	{
+		if (vertices == null || vertices.length < 3)
+			throw new IllegalArgumentException("Polygon should have at least three vertices");
+
+		latitudes = new double[vertices.length];
+		longitudes = new double[vertices.length];
+		double south = 90, north = -90, west = Double.POSITIVE_INFINITY, east = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < vertices.length; i++)
+		{
+			if (vertices[i] == null || vertices[i].length != 2 || !(vertices[i][0] >= -90 && vertices[i][0] <= 90) || !Double.isFinite(vertices[i][1]))
+				throw new IllegalArgumentException("Invalid polygon vertex #" + i);
+
+			latitudes[i] = vertices[i][0];
+			longitudes[i] = vertices[i][1];
+			if (i > 0)
+				longitudes[i] -= 360 * Math.round((longitudes[i] - longitudes[i - 1]) / 360);
+
+			south = Math.min(south, latitudes[i]);
+			north = Math.max(north, latitudes[i]);
+			west = Math.min(west, longitudes[i]);
+			east = Math.max(east, longitudes[i]);
+		}
+		boundingBox = new GeoBox(south, west, north, east);
+	}
+
+	/**
+	 * Get box containing the whole polygon
+	 *
+	 * @return bounding box
+	 */
+	public GeoBox getBoundingBox()
+	{
+		return boundingBox;
+	}
+
+	/**
+	 * Check if the point is inside the polygon. Points on the edges may be treated either way.
+	 *
+	 * @param latitude  latitude in degrees
+	 * @param longitude longitude in degrees
+	 * @return true, if the point is inside the polygon
+	 */
+	public boolean contains(double latitude, double longitude)
+	{
+		if (!boundingBox.contains(latitude, longitude))
+			return false;
+
+		/* Shift the point to the same full turn the vertices are unwrapped to */
+		double x = boundingBox.getWest() + (longitude - boundingBox.getWest()) % 360;
+		if (x < boundingBox.getWest())
+			x += 360;
+
+		/* Ray casting: count edges crossed by the ray going to the north from the point */
+		boolean inside = false;
+		for (int i = 0, j = longitudes.length - 1; i < longitudes.length; j = i++)
+			if ((longitudes[i] > x) != (longitudes[j] > x)
+					&& latitude < latitudes[i] + (x - longitudes[i]) * (latitudes[j] - latitudes[i]) / (longitudes[j] - longitudes[i]))
+				inside = !inside;
+		return inside;
+	}
+
+	/**
+	 * Check if the airport is inside the polygon
+	 *
+	 * @param airportData airport
+	 * @return true, if the airport is inside the polygon
+	 */
+	public boolean contains(AirportData airportData)
+	{
+		return contains(airportData.getLatitude(), airportData.getLongitude());
+	}
+
+	public String toString()
+	{
+		return ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE);
+	}
+}
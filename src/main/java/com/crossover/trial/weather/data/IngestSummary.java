@@ -0,0 +1,107 @@
+package com.crossover.trial.weather.data;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress of the streaming weather update: numbers of the records received and applied, and the first errors.
+ */
+public class IngestSummary
+{
+	/* Max number of error messages kept */
+	private static final int MAX_ERRORS = 100;
+
+	/* number of records read from the stream */
+	private long received;
+
+	/* number of records applied */
+	private long accepted;
+
+	/* number of records skipped as invalid */
+	private long rejected;
+
+	/* true if the stream was read to its end, false if it was broken or malformed */
+	private boolean complete;
+
+	/* messages of the first errors, with numbers of the records starting from 1 */
+	private List<String> errors = new ArrayList<>();
+
+	public long getReceived()
+	{
+		return received;
+	}
+
+	public long getAccepted()
+	{
+		return accepted;
+	}
+
+	public long getRejected()
+	{
+		return rejected;
+	}
+
+	public boolean isComplete()
+	{
+		return complete;
+	}
+
+	public List<String> getErrors()
+	{
+		return errors;
+	}
+
+	/**
+	 * Count record received from the stream
+	 *
+	 * @return number of the record, starting from 1
+	 */
+	public long receive()
+	{
+		return ++received;
+	}
+
+	public void accept()
+	{
+		accepted++;
+	}
+
+	/**
+	 * Count record skipped as invalid, or refused as the queue of the updates is full
+	 *
+	 * @param record  number of the record
+	 * @param message error message
+	 */
+	public void reject(long record, String message)
+	{
+		rejected++;
+		error("record " + record + ": " + message);
+	}
+
+	/**
+	 * Mark the stream as read to its end, or keep the reason it was not
+	 *
+	 * @param message error message, null if the stream is read to its end
+	 */
+	public void finish(String message)
+	{
+		complete = message == null;
+		if (message != null)
+			error(message);
+	}
+
+	private void error(String message)
+	{
+		if (errors.size() < MAX_ERRORS)
+			errors.add(message);
+	}
+
+	@Override
+	public String toString()
+	{
+		return ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE);
+	}
+}
@@ -0,0 +1,81 @@
+package com.crossover.trial.weather.data;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Data points collected within a single time bucket, rolled up into min, max and mean of their means. Single data
+ * point of the history is a bucket of its own with the same min, max and mean.
+ */
+public class RollupDataPoint
+{
+	/* bucket start time in ms, or collection time of a single data point */
+	private long time;
+
+	private double min;
+
+	private double max;
+
+	/* mean of the data point means */
+	private double mean;
+
+	/* number of data points in the bucket */
+	private long count;
+
+	public RollupDataPoint(long time, double min, double max, double mean, long count)
+	{
+		this.time = time;
+		this.min = min;
+		this.max = max;
+		this.mean = mean;
+		this.count = count;
+	}
+
+	public long getTime()
+	{
+		return time;
+	}
+
+	public double getMin()
+	{
+		return min;
+	}
+
+	public double getMax()
+	{
+		return max;
+	}
+
+	public double getMean()
+	{
+		return mean;
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	@Override
+	public String toString()
+	{
+		return ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE);
+	}
+
+	@Override
+	public boolean equals(Object that)
+	{
+		if (!(that instanceof RollupDataPoint))
+			return false;
+		RollupDataPoint thatRollup = (RollupDataPoint) that;
+
+		return time == thatRollup.time && count == thatRollup.count && Double.compare(min, thatRollup.min) == 0
+				&& Double.compare(max, thatRollup.max) == 0 && Double.compare(mean, thatRollup.mean) == 0;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Long.hashCode(time);
+	}
+}
@@ -0,0 +1,53 @@
+package com.crossover.trial.weather.data;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Data point along with the time it was collected, an element of the data point history.
+ */
+public class TimedDataPoint
+{
+	/* collection time in ms */
+	private long time;
+
+	private DataPoint dataPoint;
+
+	public TimedDataPoint(long time, DataPoint dataPoint)
+	{
+		this.time = time;
+		this.dataPoint = dataPoint;
+	}
+
+	public long getTime()
+	{
+		return time;
+	}
+
+	public DataPoint getDataPoint()
+	{
+		return dataPoint;
+	}
+
+	@Override
+	public String toString()
+	{
+		return ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE);
+	}
+
+	@Override
+	public boolean equals(Object that)
+	{
+		if (!(that instanceof TimedDataPoint))
+			return false;
+		TimedDataPoint thatTimedDataPoint = (TimedDataPoint) that;
+
+		return time == thatTimedDataPoint.time && dataPoint.equals(thatTimedDataPoint.dataPoint);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Long.hashCode(time);
+	}
+}
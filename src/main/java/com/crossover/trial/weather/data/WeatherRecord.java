@@ -0,0 +1,46 @@
+package com.crossover.trial.weather.data;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Single data point collected at the airport, an element of the batch weather update.
+ */
+public class WeatherRecord
+{
+	/* the three letter IATA code */
+	private String iata;
+
+	/* the point type, {@link DataPointType} name in any case */
+	private String pointType;
+
+	private DataPoint dataPoint;
+
+	public WeatherRecord(String iata, String pointType, DataPoint dataPoint)
+	{
+		this.iata = iata;
+		this.pointType = pointType;
+		this.dataPoint = dataPoint;
+	}
+
+	public String getIata()
+	{
+		return iata;
+	}
+
+	public String getPointType()
+	{
+		return pointType;
+	}
+
+	public DataPoint getDataPoint()
+	{
+		return dataPoint;
+	}
+
+	@Override
+	public String toString()
+	{
+		return ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE);
+	}
+}
@@ -0,0 +1,43 @@
+package com.crossover.trial.weather.data;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Result of a single record of the batch weather update: HTTP status, which the record would get as a single update,
+ * and the error message, if any.
+ */
+public class WeatherRecordStatus
+{
+	public static final WeatherRecordStatus OK = new WeatherRecordStatus(200, null);
+
+	/* Record is queued to be applied later */
+	public static final WeatherRecordStatus ACCEPTED = new WeatherRecordStatus(202, null);
+
+	private int status;
+
+	/* null if the record is accepted */
+	private String message;
+
+	public WeatherRecordStatus(int status, String message)
+	{
+		this.status = status;
+		this.message = message;
+	}
+
+	public int getStatus()
+	{
+		return status;
+	}
+
+	public String getMessage()
+	{
+		return message;
+	}
+
+	@Override
+	public String toString()
+	{
+		return ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE);
+	}
+}
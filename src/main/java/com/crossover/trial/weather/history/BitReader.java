@@ -0,0 +1,57 @@
+package com.crossover.trial.weather.history;
+
+/**
+ * Stream of bits, written by {@link BitWriter}.
+ */
+public class BitReader
+{
+	private final long[] words;
+
+	/* Number of bits read */
+	private int position;
+
+	public BitReader(long[] words)
+	{
+		this.words = words;
+	}
+
+	/**
+	 * Read value of the stated number of bits, the most significant first
+	 *
+	 * @param bits number of bits, 1 to 64
+	 * @return value in the lowest bits
+	 */
+	public long readBits(int bits)
+	{
+		int index = position >>> 6;
+		int used = position & 63;
+		long value = words[index] << used >>> 64 - bits;
+		if (bits > 64 - used)
+			value |= words[index + 1] >>> 64 - (bits - (64 - used));
+		position += bits;
+		return value;
+	}
+
+	public boolean readBit()
+	{
+		return readBits(1) != 0;
+	}
+
+	/**
+	 * Read value written by {@link BitWriter#writeVarint}
+	 *
+	 * @return signed value
+	 */
+	public long readVarint()
+	{
+		long zigzag = 0;
+		for (int shift = 0; ; shift += 7)
+		{
+			long group = readBits(8);
+			zigzag |= (group & 0x7F) << shift;
+			if ((group & 0x80) == 0)
+				break;
+		}
+		return zigzag >>> 1 ^ -(zigzag & 1);
+	}
+}
@@ -0,0 +1,74 @@
+package com.crossover.trial.weather.history;
+
+import java.util.Arrays;
+
+/**
+ * Growable stream of bits, packed into longs from the most significant bit.
+ */
+public class BitWriter
+{
+	private long[] words;
+
+	/* Number of bits written */
+	private int position;
+
+	public BitWriter(int expectedBits)
+	{
+		words = new long[Math.max(expectedBits / 64 + 1, 1)];
+	}
+
+	/**
+	 * Write the lowest bits of the value, the most significant first
+	 *
+	 * @param value value
+	 * @param bits  number of bits, 1 to 64
+	 */
+	public void writeBits(long value, int bits)
+	{
+		if ((position + bits + 63) / 64 > words.length)
+			words = Arrays.copyOf(words, Math.max(words.length * 2, (position + bits + 63) / 64));
+
+		long masked = bits == 64 ? value : value & (1L << bits) - 1;
+		int index = position >>> 6;
+		int free = 64 - (position & 63);
+		if (bits <= free)
+			words[index] |= masked << free - bits;
+		else
+		{
+			words[index] |= masked >>> bits - free;
+			words[index + 1] |= masked << 64 - (bits - free);
+		}
+		position += bits;
+	}
+
+	public void writeBit(boolean bit)
+	{
+		writeBits(bit ? 1 : 0, 1);
+	}
+
+	/**
+	 * Write zigzag-encoded value as varint: groups of 7 bits, the least significant first, with continuation flag
+	 *
+	 * @param value signed value
+	 */
+	public void writeVarint(long value)
+	{
+		long zigzag = value << 1 ^ value >> 63;
+		while ((zigzag & ~0x7FL) != 0)
+		{
+			writeBits(zigzag & 0x7F | 0x80, 8);
+			zigzag >>>= 7;
+		}
+		writeBits(zigzag, 8);
+	}
+
+	/**
+	 * Get the written bits
+	 *
+	 * @return words trimmed to the written bits
+	 */
+	public long[] toWords()
+	{
+		return Arrays.copyOf(words, (position + 63) / 64);
+	}
+}
@@ -0,0 +1,196 @@
+package com.crossover.trial.weather.history;
+
+import java.io.IOException;
+
+/**
+ * Immutable block of data points, compressed the way time series are usually compressed: time as delta of the
+ * previous delta, mean as XOR with the previous mean, which is mostly zero bits, and quartiles with count as
+ * varint deltas to their previous values. Data points are decoded sequentially, straight into the visitor.
+ */
+public class CompressedBlock
+{
+	/* Bits of the delta of delta of time for the encodings with prefixes 10, 110 and 1110; 1111 stands for 64 bits */
+	private static final int[] DELTA_BITS = {7, 9, 12};
+
+	private final long[] words;
+
+	/* Number of data points */
+	private final int size;
+
+	/* Time range of the data points, which may come out of order */
+	private final long minTime;
+	private final long maxTime;
+
+	private CompressedBlock(long[] words, int size, long minTime, long maxTime)
+	{
+		this.words = words;
+		this.size = size;
+		this.minTime = minTime;
+		this.maxTime = maxTime;
+	}
+
+	/**
+	 * Compress data points
+	 *
+	 * @param times collection times
+	 * @param means means
+	 * @param ints  first, second, third quartiles and count of every data point in a row
+	 * @param size  number of data points
+	 * @return compressed block
+	 */
+	public static CompressedBlock compress(long[] times, double[] means, int[] ints, int size)
+	{
+		BitWriter writer = new BitWriter(size * 64);
+		long minTime = Long.MAX_VALUE;
+		long maxTime = Long.MIN_VALUE;
+		long previousTime = 0;
+		long previousDelta = 0;
+		long previousMean = 0;
+		int previousLeading = -1;
+		int previousTrailing = 0;
+		for (int i = 0; i < size; i++)
+		{
+			long time = times[i];
+			minTime = Math.min(minTime, time);
+			maxTime = Math.max(maxTime, time);
+			long meanBits = Double.doubleToRawLongBits(means[i]);
+			if (i == 0)
+			{
+				writer.writeBits(time, 64);
+				writer.writeBits(meanBits, 64);
+			} else
+			{
+				long delta = time - previousTime;
+				writeDeltaOfDelta(writer, delta - previousDelta);
+				previousDelta = delta;
+
+				long xor = meanBits ^ previousMean;
+				writer.writeBit(xor != 0);
+				if (xor != 0)
+				{
+					int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+					int trailing = Long.numberOfTrailingZeros(xor);
+					boolean reuse = previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing;
+					writer.writeBit(!reuse);
+					if (!reuse)
+					{
+						writer.writeBits(leading, 5);
+						writer.writeBits(64 - leading - trailing - 1, 6);
+						previousLeading = leading;
+						previousTrailing = trailing;
+					}
+					writer.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+				}
+			}
+			for (int j = 0; j < 4; j++)
+				writer.writeVarint((long) ints[i * 4 + j] - (i == 0 ? 0 : ints[(i - 1) * 4 + j]));
+			previousTime = time;
+			previousMean = meanBits;
+		}
+		return new CompressedBlock(writer.toWords(), size, minTime, maxTime);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get size of the compressed data
+	 *
+	 * @return size in bytes
+	 */
+	public int bytes()
+	{
+		return words.length * 8;
+	}
+
+	/**
+	 * Decode data points within the time range, skipping the first ones
+	 *
+	 * @param skip    number of data points to skip
+	 * @param from    start of the range in ms, inclusive
+	 * @param to      end of the range in ms, inclusive
+	 * @param visitor receives data points in order
+	 * @throws IOException if thrown by the visitor
+	 */
+	public void visit(int skip, long from, long to, DataPointVisitor visitor) throws IOException
+	{
+		if (skip >= size || maxTime < from || minTime > to)
+			return;
+
+		BitReader reader = new BitReader(words);
+		long time = 0;
+		long delta = 0;
+		long meanBits = 0;
+		int leading = 0;
+		int trailing = 0;
+		int first = 0, second = 0, third = 0, count = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (i == 0)
+			{
+				time = reader.readBits(64);
+				meanBits = reader.readBits(64);
+			} else
+			{
+				delta += readDeltaOfDelta(reader);
+				time += delta;
+				if (reader.readBit())
+				{
+					if (reader.readBit())
+					{
+						leading = (int) reader.readBits(5);
+						trailing = 64 - leading - ((int) reader.readBits(6) + 1);
+					}
+					meanBits ^= reader.readBits(64 - leading - trailing) << trailing;
+				}
+			}
+			first += (int) reader.readVarint();
+			second += (int) reader.readVarint();
+			third += (int) reader.readVarint();
+			count += (int) reader.readVarint();
+
+			if (i >= skip && time >= from && time <= to)
+				visitor.visit(time, Double.longBitsToDouble(meanBits), first, second, third, count);
+		}
+	}
+
+	private static void writeDeltaOfDelta(BitWriter writer, long deltaOfDelta)
+	{
+		if (deltaOfDelta == 0)
+		{
+			writer.writeBit(false);
+			return;
+		}
+
+		for (int i = 0; i < DELTA_BITS.length; i++)
+		{
+			long limit = 1L << DELTA_BITS[i] - 1;
+			if (deltaOfDelta >= -limit && deltaOfDelta < limit)
+			{
+				/* i + 1 ones followed by zero */
+				writer.writeBits((1L << i + 2) - 2, i + 2);
+				writer.writeBits(deltaOfDelta, DELTA_BITS[i]);
+				return;
+			}
+		}
+		writer.writeBits(0xF, 4);
+		writer.writeBits(deltaOfDelta, 64);
+	}
+
+	private static long readDeltaOfDelta(BitReader reader)
+	{
+		int ones = 0;
+		while (ones < 4 && reader.readBit())
+			ones++;
+		if (ones == 0)
+			return 0;
+		if (ones == 4)
+			return reader.readBits(64);
+
+		int bits = DELTA_BITS[ones - 1];
+		/* Sign extension */
+		return reader.readBits(bits) << 64 - bits >> 64 - bits;
+	}
+}
@@ -0,0 +1,24 @@
+package com.crossover.trial.weather.history;
+
+import java.io.IOException;
+
+/**
+ * Receives data points of the history one by one, as they are decoded, so they may be written out without building
+ * any objects.
+ */
+@FunctionalInterface
+public interface DataPointVisitor
+{
+	/**
+	 * Receive next data point
+	 *
+	 * @param time   collection time in ms
+	 * @param mean   mean of the observations
+	 * @param first  1st quartile
+	 * @param second 2nd quartile
+	 * @param third  3rd quartile
+	 * @param count  total number of measurements
+	 * @throws IOException if the data point can't be written
+	 */
+	void visit(long time, double mean, int first, int second, int third, int count) throws IOException;
+}
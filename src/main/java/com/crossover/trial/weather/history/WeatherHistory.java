@@ -0,0 +1,80 @@
+package com.crossover.trial.weather.history;
+
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.DownsampledHistory;
+import com.crossover.trial.weather.data.TimedDataPoint;
+import org.glassfish.jersey.spi.Contract;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * History of the collected data points. Only a limited number of the latest data points is kept for every airport
+ * and data point type, along with their rollups, which cover longer periods.
+ * <p>
+ * History is kept by airport ordinal, so airports should be registered in the airport database: adding data points
+ * of the airports not registered there, including removed ones, throws {@link IllegalArgumentException}, and the
+ * other operations find no history for them.
+ */
+@Contract
+public interface WeatherHistory
+{
+	/**
+	 * Append collected data point to the history
+	 *
+	 * @param airportData airport, where data point was collected
+	 * @param type        type of the data point
+	 * @param dataPoint   data point
+	 * @param time        collection time in ms
+	 * @throws IllegalArgumentException if the airport is not registered in the airport database
+	 */
+	void addDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint, long time);
+
+	/**
+	 * Get data points collected within the time range, which are still kept in the history
+	 *
+	 * @param airportData airport, where data points were collected
+	 * @param type        type of the data points
+	 * @param from        start of the range in ms, inclusive
+	 * @param to          end of the range in ms, inclusive
+	 * @return data points in the order they were added
+	 */
+	List<TimedDataPoint> getHistory(AirportData airportData, DataPointType type, long from, long to);
+
+	/**
+	 * Pass data points collected within the time range, which are still kept in the history, to the visitor
+	 * as they are read, without building a list
+	 *
+	 * @param airportData airport, where data points were collected
+	 * @param type        type of the data points
+	 * @param from        start of the range in ms, inclusive
+	 * @param to          end of the range in ms, inclusive
+	 * @param visitor     receives data points in the order they were added
+	 * @throws IOException if thrown by the visitor
+	 */
+	void visitHistory(AirportData airportData, DataPointType type, long from, long to, DataPointVisitor visitor) throws IOException;
+
+	/**
+	 * Get history within the time range at the finest resolution, which covers the range and fits the number of
+	 * points: collected data points themselves, or their minute, hour or day rollups. If none fits, the latest day
+	 * rollups are returned.
+	 *
+	 * @param airportData airport, where data points were collected
+	 * @param type        type of the data points
+	 * @param from        start of the range in ms, inclusive
+	 * @param to          end of the range in ms, inclusive
+	 * @param maxPoints   max number of points
+	 * @return points of the chosen resolution in the order of time
+	 */
+	DownsampledHistory getDownsampledHistory(AirportData airportData, DataPointType type, long from, long to, int maxPoints);
+
+	/**
+	 * Clear history for particular airport.
+	 * Not very common scenario, used when airport is not tracked anymore.
+	 *
+	 * @param airportData airport, where history should be cleared
+	 */
+	void clearHistory(AirportData airportData);
+}
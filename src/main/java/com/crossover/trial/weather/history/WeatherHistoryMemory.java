@@ -0,0 +1,431 @@
+package com.crossover.trial.weather.history;
+
+import com.crossover.trial.weather.common.OrdinalArray;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointBuilder;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.DownsampledHistory;
+import com.crossover.trial.weather.data.RollupDataPoint;
+import com.crossover.trial.weather.data.TimedDataPoint;
+import org.jvnet.hk2.annotations.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory implementation of WeatherHistory.
+ * Latest data points of every airport and type are kept in blocks: the head one is filled uncompressed in primitive
+ * arrays, the closed ones are compressed, see {@link CompressedBlock}. Blocks are allocated on the first data point
+ * of their type. History queries decode the blocks straight into the visitor.
+ * <p>
+ * Along with the blocks, data points are rolled up into minute, hour and day buckets. Buckets of every resolution are
+ * kept in a ring, indexed by bucket number, so rollups are updated in place in constant time on every data point.
+ * <p>
+ * Appends are serialized. Reads copy the head block and the list of the closed ones under optimistic read stamp and
+ * never block, unless the blocks are changed during several attempts in a row.
+ * <p>
+ * Airport histories are kept in the array indexed by airport ordinal, so airports should be registered in the
+ * airport database.
+ */
+@Service
+public class WeatherHistoryMemory implements WeatherHistory
+{
+	/**
+	 * Three days of data points collected every 15 minutes
+	 */
+	public static final int DEFAULT_CAPACITY = 288;
+
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	/* Max number of data points in a compressed block */
+	private static final int MAX_BLOCK_SIZE = 128;
+
+	/* Rollup resolutions in ms, the finest first */
+	private static final long[] ROLLUP_RESOLUTIONS = {60 * 1000L, 60 * 60 * 1000L, 24 * 60 * 60 * 1000L};
+
+	/* Number of buckets kept for every resolution: three hours, a week, a year */
+	private static final int[] ROLLUP_CAPACITIES = {180, 168, 366};
+
+	/* Longs per rollup bucket: bucket number, min bits, max bits, sum of means bits, count */
+	private static final int ROLLUP_RECORD_SIZE = 5;
+
+	/* Optimistic reads before falling back to the read lock */
+	private static final int OPTIMISTIC_READS = 3;
+
+	/* Number of data points kept for every airport and type */
+	private final int capacity;
+
+	/* Airport histories by airport ordinal */
+	private OrdinalArray<AirportHistory> histories;
+
+	public WeatherHistoryMemory()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public WeatherHistoryMemory(int capacity)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("History capacity should be positive: " + capacity);
+		this.capacity = capacity;
+		histories = new OrdinalArray<>();
+	}
+
+	@Override
+	public void addDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint, long time)
+	{
+		if (airportData.ordinal() < 0)
+			throw new IllegalArgumentException("Airport is not registered: " + airportData.getIata());
+
+		AirportHistory history = histories.get(airportData.ordinal(), current -> current.airport.equals(airportData),
+				() -> new AirportHistory(airportData));
+		Series series = history.series.get(type.ordinal());
+		if (series == null)
+		{
+			history.series.compareAndSet(type.ordinal(), null, new Series(capacity));
+			series = history.series.get(type.ordinal());
+		}
+		series.add(time, dataPoint);
+	}
+
+	@Override
+	public List<TimedDataPoint> getHistory(AirportData airportData, DataPointType type, long from, long to)
+	{
+		List<TimedDataPoint> history = new ArrayList<>();
+		try
+		{
+			visitHistory(airportData, type, from, to, (time, mean, first, second, third, count) ->
+					history.add(new TimedDataPoint(time, new DataPointBuilder()
+							.withMean(mean).withFirst(first).withSecond(second).withThird(third).withCount(count).build())));
+		} catch (IOException e)
+		{
+			/* Never thrown by the list */
+			throw new UncheckedIOException(e);
+		}
+		return history;
+	}
+
+	@Override
+	public void visitHistory(AirportData airportData, DataPointType type, long from, long to, DataPointVisitor visitor) throws IOException
+	{
+		Series series = getSeries(airportData, type);
+		if (series != null)
+			series.read(series.blocks::copy).visit(from, to, visitor);
+	}
+
+	@Override
+	public DownsampledHistory getDownsampledHistory(AirportData airportData, DataPointType type, long from, long to, int maxPoints)
+	{
+		if (maxPoints <= 0)
+			throw new IllegalArgumentException("Number of points should be positive: " + maxPoints);
+
+		Series series = getSeries(airportData, type);
+		if (series == null)
+			return new DownsampledHistory(0, Collections.emptyList());
+
+		/* Every visible data point is visited to find the oldest one */
+		Blocks blocks = series.read(series.blocks::copy);
+		List<RollupDataPoint> visible = new ArrayList<>();
+		try
+		{
+			blocks.visit(Long.MIN_VALUE, Long.MAX_VALUE, (time, mean, first, second, third, count) ->
+					visible.add(new RollupDataPoint(time, mean, mean, mean, 1)));
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		List<RollupDataPoint> points = new ArrayList<>();
+		for (RollupDataPoint point : visible)
+			if (point.getTime() >= from && point.getTime() <= to)
+				points.add(point);
+		if (points.size() <= maxPoints && (blocks.isComplete() || visible.get(0).getTime() < from))
+			return new DownsampledHistory(0, points);
+
+		for (Rollup current : series.rollups)
+		{
+			Rollup rollup = series.read(current::copy);
+			points = rollup.get(from, to);
+			if (points.size() <= maxPoints && rollup.covers(from))
+				return new DownsampledHistory(rollup.resolution, points);
+		}
+		long resolution = ROLLUP_RESOLUTIONS[ROLLUP_RESOLUTIONS.length - 1];
+		return new DownsampledHistory(resolution, new ArrayList<>(points.subList(Math.max(points.size() - maxPoints, 0), points.size())));
+	}
+
+	@Override
+	public void clearHistory(AirportData airportData)
+	{
+		histories.remove(airportData.ordinal(), history -> history.airport.equals(airportData));
+	}
+
+	private Series getSeries(AirportData airportData, DataPointType type)
+	{
+		AirportHistory history = histories.get(airportData.ordinal());
+		return history == null || !history.airport.equals(airportData) ? null : history.series.get(type.ordinal());
+	}
+
+	/**
+	 * Histories of all data point types for a single airport
+	 */
+	private static class AirportHistory
+	{
+		private final AirportData airport;
+
+		/* Series by type ordinal, null until the first data point */
+		private final AtomicReferenceArray<Series> series = new AtomicReferenceArray<>(TYPES.length);
+
+		private AirportHistory(AirportData airport)
+		{
+			this.airport = airport;
+		}
+	}
+
+	/**
+	 * Latest data points of a single type along with their rollups, guarded by a single lock
+	 */
+	private static class Series
+	{
+		private final Blocks blocks;
+
+		private final Rollup[] rollups;
+
+		private final StampedLock lock = new StampedLock();
+
+		private Series(int capacity)
+		{
+			blocks = new Blocks(capacity);
+			rollups = new Rollup[ROLLUP_RESOLUTIONS.length];
+			for (int i = 0; i < rollups.length; i++)
+				rollups[i] = new Rollup(ROLLUP_RESOLUTIONS[i], ROLLUP_CAPACITIES[i]);
+		}
+
+		private void add(long time, DataPoint dataPoint)
+		{
+			long stamp = lock.writeLock();
+			try
+			{
+				blocks.add(time, dataPoint);
+				for (Rollup rollup : rollups)
+					rollup.add(time, dataPoint.getMean());
+			} finally
+			{
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		/* Copy is validated by the stamp, so it is never torn */
+		private <T> T read(Supplier<T> copy)
+		{
+			for (int i = 0; i < OPTIMISTIC_READS; i++)
+			{
+				long stamp = lock.tryOptimisticRead();
+				T result = copy.get();
+				if (stamp != 0 && lock.validate(stamp))
+					return result;
+			}
+
+			long stamp = lock.readLock();
+			try
+			{
+				return copy.get();
+			} finally
+			{
+				lock.unlockRead(stamp);
+			}
+		}
+	}
+
+	/**
+	 * Latest data points of a single type. Data points are appended to the uncompressed head block, which is
+	 * compressed and closed when full. The oldest closed blocks are dropped as long as the rest keeps the capacity,
+	 * and only the capacity of the latest data points is visible.
+	 */
+	private static class Blocks
+	{
+		private final int capacity;
+
+		/* Closed blocks, the oldest first; the array is replaced on every change, so copies may share it */
+		private CompressedBlock[] closed;
+
+		/* Number of data points in the closed blocks */
+		private int closedSize;
+
+		/* Head block: times, means and quartiles with count of every data point in a row */
+		private final long[] times;
+		private final double[] means;
+		private final int[] ints;
+
+		private int headSize;
+
+		/* Number of data points ever added */
+		private long added;
+
+		private Blocks(int capacity)
+		{
+			this(capacity, new CompressedBlock[0], 0, Math.min(capacity, MAX_BLOCK_SIZE), 0);
+		}
+
+		private Blocks(int capacity, CompressedBlock[] closed, int closedSize, int headCapacity, long added)
+		{
+			this.capacity = capacity;
+			this.closed = closed;
+			this.closedSize = closedSize;
+			times = new long[headCapacity];
+			means = new double[headCapacity];
+			ints = new int[headCapacity * 4];
+			this.added = added;
+		}
+
+		private void add(long time, DataPoint dataPoint)
+		{
+			times[headSize] = time;
+			means[headSize] = dataPoint.getMean();
+			ints[headSize * 4] = dataPoint.getFirst();
+			ints[headSize * 4 + 1] = dataPoint.getSecond();
+			ints[headSize * 4 + 2] = dataPoint.getThird();
+			ints[headSize * 4 + 3] = dataPoint.getCount();
+			headSize++;
+			added++;
+			if (headSize < times.length)
+				return;
+
+			CompressedBlock block = CompressedBlock.compress(times, means, ints, headSize);
+			int dropped = 0;
+			while (dropped < closed.length && closedSize + block.size() - closed[dropped].size() >= capacity)
+				closedSize -= closed[dropped++].size();
+			CompressedBlock[] grown = Arrays.copyOfRange(closed, dropped, closed.length + 1);
+			grown[grown.length - 1] = block;
+			closed = grown;
+			closedSize += block.size();
+			headSize = 0;
+		}
+
+		/* Head block is copied up to its size, which is read once, so concurrent append never breaks the copy */
+		private Blocks copy()
+		{
+			int size = headSize;
+			Blocks copy = new Blocks(capacity, closed, closedSize, size, added);
+			System.arraycopy(times, 0, copy.times, 0, size);
+			System.arraycopy(means, 0, copy.means, 0, size);
+			System.arraycopy(ints, 0, copy.ints, 0, size * 4);
+			copy.headSize = size;
+			return copy;
+		}
+
+		/* Data points before the oldest visible one were dropped */
+		private boolean isComplete()
+		{
+			return added <= capacity;
+		}
+
+		private void visit(long from, long to, DataPointVisitor visitor) throws IOException
+		{
+			int skip = Math.max(closedSize + headSize - capacity, 0);
+			for (CompressedBlock block : closed)
+			{
+				block.visit(skip, from, to, visitor);
+				skip = Math.max(skip - block.size(), 0);
+			}
+			for (int i = skip; i < headSize; i++)
+				if (times[i] >= from && times[i] <= to)
+					visitor.visit(times[i], means[i], ints[i * 4], ints[i * 4 + 1], ints[i * 4 + 2], ints[i * 4 + 3]);
+		}
+	}
+
+	/**
+	 * Latest buckets of a single resolution. Bucket is kept at its number modulo capacity, so data point of a new
+	 * bucket resets the one a capacity before it, and data points of the buckets older than that are dropped.
+	 */
+	private static class Rollup
+	{
+		private final long resolution;
+
+		private final int capacity;
+
+		private final long[] records;
+
+		/* Numbers of the oldest bucket ever added and the latest one, no buckets if first is greater */
+		private long firstBucket;
+		private long latestBucket;
+
+		private Rollup(long resolution, int capacity)
+		{
+			this(resolution, capacity, new long[capacity * ROLLUP_RECORD_SIZE], Long.MAX_VALUE, Long.MIN_VALUE);
+		}
+
+		private Rollup(long resolution, int capacity, long[] records, long firstBucket, long latestBucket)
+		{
+			this.resolution = resolution;
+			this.capacity = capacity;
+			this.records = records;
+			this.firstBucket = firstBucket;
+			this.latestBucket = latestBucket;
+		}
+
+		private void add(long time, double mean)
+		{
+			long bucket = Math.floorDiv(time, resolution);
+			if (firstBucket > latestBucket)
+				latestBucket = bucket;
+			firstBucket = Math.min(firstBucket, bucket);
+			if (bucket <= latestBucket - capacity)
+				return;
+
+			latestBucket = Math.max(latestBucket, bucket);
+			int offset = (int) Math.floorMod(bucket, capacity) * ROLLUP_RECORD_SIZE;
+			if (records[offset + 4] == 0 || records[offset] != bucket)
+			{
+				records[offset] = bucket;
+				records[offset + 1] = Double.doubleToRawLongBits(mean);
+				records[offset + 2] = Double.doubleToRawLongBits(mean);
+				records[offset + 3] = Double.doubleToRawLongBits(mean);
+				records[offset + 4] = 1;
+				return;
+			}
+
+			records[offset + 1] = Double.doubleToRawLongBits(Math.min(Double.longBitsToDouble(records[offset + 1]), mean));
+			records[offset + 2] = Double.doubleToRawLongBits(Math.max(Double.longBitsToDouble(records[offset + 2]), mean));
+			records[offset + 3] = Double.doubleToRawLongBits(Double.longBitsToDouble(records[offset + 3]) + mean);
+			records[offset + 4]++;
+		}
+
+		private Rollup copy()
+		{
+			return new Rollup(resolution, capacity, records.clone(), firstBucket, latestBucket);
+		}
+
+		/* Buckets before the time were never dropped */
+		private boolean covers(long from)
+		{
+			return firstBucket > latestBucket - capacity || Math.floorDiv(from, resolution) > latestBucket - capacity;
+		}
+
+		private List<RollupDataPoint> get(long from, long to)
+		{
+			List<RollupDataPoint> result = new ArrayList<>();
+			if (firstBucket > latestBucket)
+				return result;
+
+			long last = Math.min(Math.floorDiv(to, resolution), latestBucket);
+			for (long bucket = Math.max(Math.floorDiv(from, resolution), latestBucket - capacity + 1); bucket <= last; bucket++)
+			{
+				int offset = (int) Math.floorMod(bucket, capacity) * ROLLUP_RECORD_SIZE;
+				long count = records[offset + 4];
+				if (count == 0 || records[offset] != bucket)
+					continue;
+
+				result.add(new RollupDataPoint(bucket * resolution, Double.longBitsToDouble(records[offset + 1]),
+						Double.longBitsToDouble(records[offset + 2]), Double.longBitsToDouble(records[offset + 3]) / count, count));
+			}
+			return result;
+		}
+	}
+}
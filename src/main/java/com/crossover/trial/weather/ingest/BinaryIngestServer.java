@@ -0,0 +1,239 @@
+package com.crossover.trial.weather.ingest;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AtmosphericInformationConstraints;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointBuilder;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.history.WeatherHistory;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.memory.PooledMemoryManager;
+import org.glassfish.grizzly.nio.transport.TCPNIOServerConnection;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Weather collection over the plain TCP connection with fixed size binary records, which costs a fraction of the
+ * HTTP request with json per data point. The protocol is one-way: client just writes records one after another
+ * and closes the connection, records are applied as they arrive and invalid ones are skipped and counted.
+ * <p>
+ * Every record takes {@link #RECORD_SIZE} bytes, numbers are big-endian:
+ * <pre>
+ * int    iata code packed with {@link com.crossover.trial.weather.common.IataCodec}
+ * int    data point type ordinal
+ * double mean
+ * int    first
+ * int    second
+ * int    third
+ * int    count
+ * </pre>
+ * Records are read straight from the pooled direct buffers of the transport, only the data point to store is
+ * allocated for each of them.
+ */
+public class BinaryIngestServer implements Closeable
+{
+	public final static Logger LOGGER = Logger.getLogger(BinaryIngestServer.class.getName());
+
+	/**
+	 * Size of a single record in bytes
+	 */
+	public static final int RECORD_SIZE = 32;
+
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	/* How long the record waits for the space in the queue of the pipeline before it is refused, ms */
+	private static final long OFFER_TIMEOUT = 1000;
+
+	private final AirportDatabase airportDatabase;
+
+	private final AirportAtmosphericInformation airportAtmosphericInformation;
+
+	private final WeatherHistory weatherHistory;
+
+	/* Asynchronous application of the records, null if they are applied by the transport threads */
+	private final IngestPipeline ingestPipeline;
+
+	private final TCPNIOTransport transport;
+
+	/* Local address the server listens on */
+	private final InetSocketAddress address;
+
+	/* Numbers of the records applied and skipped as invalid or refused for the full queue */
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Start listening for the connections
+	 *
+	 * @param host                          host to bind to
+	 * @param port                          port to bind to, 0 for any free one
+	 * @param airportDatabase               airports the records refer to
+	 * @param airportAtmosphericInformation storage records are applied to
+	 * @param weatherHistory                history records are appended to
+	 * @throws IOException if the port can't be bound
+	 */
+	public BinaryIngestServer(String host, int port, AirportDatabase airportDatabase, AirportAtmosphericInformation airportAtmosphericInformation,
+							  WeatherHistory weatherHistory) throws IOException
+	{
+		this(host, port, airportDatabase, airportAtmosphericInformation, weatherHistory, null);
+	}
+
+	/**
+	 * Start listening for the connections, records are queued to the pipeline, if it is used, the same way as
+	 * the single updates of the collector endpoint
+	 *
+	 * @param host                          host to bind to
+	 * @param port                          port to bind to, 0 for any free one
+	 * @param airportDatabase               airports the records refer to
+	 * @param airportAtmosphericInformation storage records are applied to
+	 * @param weatherHistory                history records are appended to
+	 * @param ingestPipeline                pipeline to queue records to, null to apply them at once
+	 * @throws IOException if the port can't be bound
+	 */
+	public BinaryIngestServer(String host, int port, AirportDatabase airportDatabase, AirportAtmosphericInformation airportAtmosphericInformation,
+							  WeatherHistory weatherHistory, IngestPipeline ingestPipeline) throws IOException
+	{
+		this.airportDatabase = airportDatabase;
+		this.airportAtmosphericInformation = airportAtmosphericInformation;
+		this.weatherHistory = weatherHistory;
+		this.ingestPipeline = ingestPipeline;
+
+		transport = TCPNIOTransportBuilder.newInstance()
+				.setName("binary-ingest")
+				.setMemoryManager(new PooledMemoryManager(true))
+				.build();
+		transport.setProcessor(FilterChainBuilder.stateless()
+				.add(new TransportFilter())
+				.add(new RecordFilter())
+				.build());
+		TCPNIOServerConnection connection = transport.bind(host, port);
+		address = (InetSocketAddress) connection.getLocalAddress();
+		transport.start();
+		LOGGER.info("Binary ingest started: " + address);
+	}
+
+	/**
+	 * @return port the server listens on
+	 */
+	public int getPort()
+	{
+		return address.getPort();
+	}
+
+	/**
+	 * @return number of records applied since the start
+	 */
+	public long getAccepted()
+	{
+		return accepted.sum();
+	}
+
+	/**
+	 * @return number of records skipped as invalid or refused for the full queue since the start
+	 */
+	public long getRejected()
+	{
+		return rejected.sum();
+	}
+
+	/**
+	 * Stop listening and close all the connections
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		transport.shutdownNow();
+	}
+
+	/**
+	 * Apply a single record the same way as the collector endpoint does. Queueing waits for the space in the queue,
+	 * so the connection is not read meanwhile and the sender is held back.
+	 *
+	 * @return true if the record is valid and applied or queued
+	 */
+	private boolean apply(int packedIata, int typeOrdinal, DataPoint dataPoint)
+	{
+		AirportData airportData = airportDatabase.getAirportData(packedIata);
+		if (airportData == null || typeOrdinal < 0 || typeOrdinal >= TYPES.length)
+			return false;
+
+		DataPointType type = TYPES[typeOrdinal];
+		if (dataPoint.getMean() < AtmosphericInformationConstraints.getLowBound(type) ||
+				dataPoint.getMean() >= AtmosphericInformationConstraints.getUpperBound(type))
+			return false;
+
+		if (ingestPipeline != null)
+		{
+			try
+			{
+				return ingestPipeline.offer(airportData, type, dataPoint, OFFER_TIMEOUT);
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		try
+		{
+			airportAtmosphericInformation.updateDataPoint(airportData, type, dataPoint);
+			weatherHistory.addDataPoint(airportData, type, dataPoint, System.currentTimeMillis());
+			return true;
+		} catch (IllegalArgumentException e)
+		{
+			/* Airport was removed since the lookup */
+			return false;
+		}
+	}
+
+	/**
+	 * Decodes complete records of the read chunk, incomplete record at its end is kept until the next chunk arrives
+	 */
+	private class RecordFilter extends BaseFilter
+	{
+		@Override
+		public NextAction handleRead(FilterChainContext ctx) throws IOException
+		{
+			Buffer buffer = ctx.getMessage();
+			DataPointBuilder builder = new DataPointBuilder();
+			while (buffer.remaining() >= RECORD_SIZE)
+			{
+				int packedIata = buffer.getInt();
+				int typeOrdinal = buffer.getInt();
+				builder.withMean(buffer.getDouble())
+						.withFirst(buffer.getInt())
+						.withSecond(buffer.getInt())
+						.withThird(buffer.getInt())
+						.withCount(buffer.getInt());
+
+				if (apply(packedIata, typeOrdinal, builder.build()))
+					accepted.increment();
+				else
+					rejected.increment();
+			}
+
+			if (!buffer.hasRemaining())
+			{
+				buffer.tryDispose();
+				return ctx.getStopAction();
+			}
+
+			Buffer remainder = buffer.split(buffer.position());
+			buffer.tryDispose();
+			return ctx.getStopAction(remainder);
+		}
+	}
+}
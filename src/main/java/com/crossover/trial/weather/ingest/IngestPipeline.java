@@ -0,0 +1,199 @@
+package com.crossover.trial.weather.ingest;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.history.WeatherHistory;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Asynchronous application of the validated weather updates, so bursts of updates don't hold request threads.
+ * Updates are spread over shards by airport, every shard has a bounded queue and a single thread applying its
+ * updates, so updates of the same airport are applied in their order and never contend with each other. When the
+ * queue of the shard is full, update is refused instead of being queued without limit.
+ * <p>
+ * Ordering holds only if every update path goes through the pipeline while it is used: an update applied directly
+ * may be overwritten by an older one still queued.
+ */
+public class IngestPipeline implements Closeable
+{
+	public final static Logger LOGGER = Logger.getLogger(IngestPipeline.class.getName());
+
+	/* How long shard thread waits for an update before checking the pipeline is closed, ms */
+	private static final long POLL_TIMEOUT = 100;
+
+	/* How long closing waits for the shards to apply the queued updates, ms */
+	private static final long CLOSE_TIMEOUT = 10000;
+
+	private final AirportAtmosphericInformation airportAtmosphericInformation;
+
+	private final WeatherHistory weatherHistory;
+
+	private final Shard[] shards;
+
+	private volatile boolean closed;
+
+	/**
+	 * Create the pipeline and start threads of its shards
+	 *
+	 * @param airportAtmosphericInformation storage updates are applied to
+	 * @param weatherHistory                history updates are appended to
+	 * @param shardsNumber                  number of shards
+	 * @param queueCapacity                 max number of updates queued in every shard
+	 */
+	public IngestPipeline(AirportAtmosphericInformation airportAtmosphericInformation, WeatherHistory weatherHistory, int shardsNumber,
+						  int queueCapacity)
+	{
+		if (shardsNumber <= 0)
+			throw new IllegalArgumentException("Number of shards should be positive: " + shardsNumber);
+
+		this.airportAtmosphericInformation = airportAtmosphericInformation;
+		this.weatherHistory = weatherHistory;
+		shards = new Shard[shardsNumber];
+		for (int i = 0; i < shardsNumber; i++)
+			shards[i] = new Shard(i, queueCapacity);
+	}
+
+	/**
+	 * Queue the update of a valid data point
+	 *
+	 * @param airportData airport, where data point was collected
+	 * @param type        type of the data point
+	 * @param dataPoint   data point
+	 * @return true if the update is queued, false if the queue of the shard is full or the pipeline is closed
+	 */
+	public boolean offer(AirportData airportData, DataPointType type, DataPoint dataPoint)
+	{
+		if (closed)
+			return false;
+
+		return getShard(airportData).queue.offer(new Update(airportData, type, dataPoint, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Queue the update of a valid data point, waiting for the space in the queue of the shard, so the reader of a
+	 * stream of updates is held back instead of having them refused
+	 *
+	 * @param airportData airport, where data point was collected
+	 * @param type        type of the data point
+	 * @param dataPoint   data point
+	 * @param timeout     how long to wait for the space in the queue, ms
+	 * @return true if the update is queued, false if the queue of the shard is still full or the pipeline is closed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean offer(AirportData airportData, DataPointType type, DataPoint dataPoint, long timeout) throws InterruptedException
+	{
+		if (closed)
+			return false;
+
+		return getShard(airportData).queue.offer(new Update(airportData, type, dataPoint, System.currentTimeMillis()), timeout,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return number of updates waiting in the queue of every shard
+	 */
+	public int[] getQueueDepths()
+	{
+		int[] depths = new int[shards.length];
+		for (int i = 0; i < shards.length; i++)
+			depths[i] = shards[i].queue.size();
+		return depths;
+	}
+
+	/**
+	 * Stop accepting updates and wait for the shards to apply the queued ones
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+		try
+		{
+			for (Shard shard : shards)
+				shard.thread.join(Math.max(deadline - System.currentTimeMillis(), 1));
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Shard getShard(AirportData airportData)
+	{
+		return shards[Math.floorMod(airportData.getIata().hashCode(), shards.length)];
+	}
+
+	private void apply(Update update)
+	{
+		try
+		{
+			airportAtmosphericInformation.updateDataPoint(update.airportData, update.type, update.dataPoint);
+			weatherHistory.addDataPoint(update.airportData, update.type, update.dataPoint, update.time);
+		} catch (RuntimeException e)
+		{
+			LOGGER.log(Level.WARNING, "Weather update failed: " + update.airportData.getIata() + " " + update.type, e);
+		}
+	}
+
+	/**
+	 * Queue of the updates and the thread applying them
+	 */
+	private class Shard
+	{
+		private final BlockingQueue<Update> queue;
+
+		private final Thread thread;
+
+		private Shard(int index, int queueCapacity)
+		{
+			queue = new ArrayBlockingQueue<>(queueCapacity);
+			thread = new Thread(this::work, "ingest-shard-" + index);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/* Queue is drained before the thread stops, updates offered concurrently with closing may still be queued */
+		private void work()
+		{
+			try
+			{
+				while (!closed || !queue.isEmpty())
+				{
+					Update update = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+					if (update != null)
+						apply(update);
+				}
+			} catch (InterruptedException e)
+			{
+				LOGGER.warning("Shard interrupted with " + queue.size() + " updates queued");
+			}
+		}
+	}
+
+	/**
+	 * Validated data point update, with time it was accepted at
+	 */
+	private static class Update
+	{
+		private final AirportData airportData;
+		private final DataPointType type;
+		private final DataPoint dataPoint;
+		private final long time;
+
+		private Update(AirportData airportData, DataPointType type, DataPoint dataPoint, long time)
+		{
+			this.airportData = airportData;
+			this.type = type;
+			this.dataPoint = dataPoint;
+			this.time = time;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.crossover.trial.weather.performance;
 
+import com.crossover.trial.weather.common.OrdinalArray;
 import com.crossover.trial.weather.data.AirportData;
 import org.jvnet.hk2.annotations.Service;
 
@@ -7,9 +8,12 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * In-memory implementation of performance monitor
+ * In-memory implementation of performance monitor.
+ * Airport counters are kept in the array indexed by airport ordinal, requests for the airports which are not
+ * registered in the airport database are not logged.
  */
 @Service
 public class PerformanceMonitorMemory implements PerformanceMonitor
@@ -17,15 +21,15 @@ public class PerformanceMonitorMemory implements PerformanceMonitor
 	/* Don't know why, but empty radius statistics should return that amount of numbers (+1) */
 	private static final double EMPTY_RADIUS_REPORT_SIZE = 1000.0;
 
-	/* Number of times each airport was requested */
-	private ConcurrentMap<AirportData, Integer> airportFrequency;
+	/* Number of times each airport was requested, by airport ordinal */
+	private OrdinalArray<AirportCounter> airportFrequency;
 
 	/* Number of times each radius was used in a request. Probably Integer would be more solid. */
 	private ConcurrentMap<Double, Integer> radiusFrequency;
 
 	public PerformanceMonitorMemory()
 	{
-		airportFrequency = new ConcurrentHashMap<>();
+		airportFrequency = new OrdinalArray<>();
 		radiusFrequency = new ConcurrentHashMap<>();
 	}
 
@@ -43,17 +47,17 @@ public class PerformanceMonitorMemory implements PerformanceMonitor
 	@Override
 	public void recordAirportRequest(AirportData airportData)
 	{
-		/* Not too atomic in nature, but loosing a bit of request logging now and then don't seem too harmful */
-		if (!airportFrequency.containsKey(airportData))
-			airportFrequency.put(airportData, 1);
-		else
-			airportFrequency.put(airportData, airportFrequency.get(airportData) + 1);
+		if (airportData.ordinal() < 0)
+			return;
+
+		airportFrequency.get(airportData.ordinal(), counter -> counter.airport.equals(airportData),
+				() -> new AirportCounter(airportData)).count.incrementAndGet();
 	}
 
 	@Override
 	public void clearPerformanceLog(AirportData airportData)
 	{
-		airportFrequency.remove(airportData);
+		airportFrequency.remove(airportData.ordinal(), counter -> counter.airport.equals(airportData));
 	}
 
 	@Override
@@ -76,14 +80,31 @@ public class PerformanceMonitorMemory implements PerformanceMonitor
 	@Override
 	public Map<AirportData, Double> getAirportFrequencyStats()
 	{
+		Map<AirportData, Integer> airportRequests = new HashMap<>();
+		airportFrequency.forEach(counter -> airportRequests.put(counter.airport, counter.count.get()));
+
 		Map<AirportData, Double> airportFrequencyStats = new HashMap<>();
 
-		int requestsTotal = airportFrequency.values().stream().mapToInt(Integer::intValue).sum();
+		int requestsTotal = airportRequests.values().stream().mapToInt(Integer::intValue).sum();
 
 		if (requestsTotal > 0)
-			for (Map.Entry<AirportData, Integer> entry : airportFrequency.entrySet())
+			for (Map.Entry<AirportData, Integer> entry : airportRequests.entrySet())
 				airportFrequencyStats.put(entry.getKey(), ((double) entry.getValue()) / requestsTotal);
 
 		return airportFrequencyStats;
 	}
+
+	/**
+	 * Request counter of a single airport
+	 */
+	private static class AirportCounter
+	{
+		private final AirportData airport;
+		private final AtomicInteger count = new AtomicInteger();
+
+		private AirportCounter(AirportData airport)
+		{
+			this.airport = airport;
+		}
+	}
 }
@@ -0,0 +1,130 @@
+package com.crossover.trial.weather.wal;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.TimedDataPoint;
+
+/**
+ * Atmospheric information storage, which appends every change to the write-ahead log. Change is applied only after
+ * its record is written according to the fsync policy, so readers never see a change, which may be lost, and a change,
+ * which failed to be written, is not applied. Record is written and the change is applied under the lock of the
+ * airport, so changes of every airport are applied in the order of the log. Queries go to the storage as is.
+ * <p>
+ * Airport registration is checked before the record is written, as removal of the airport takes the same lock.
+ */
+public class AirportAtmosphericInformationWal implements AirportAtmosphericInformation
+{
+	private final AirportAtmosphericInformation airportAtmosphericInformation;
+
+	private final WriteAheadLog writeAheadLog;
+
+	public AirportAtmosphericInformationWal(AirportAtmosphericInformation airportAtmosphericInformation, WriteAheadLog writeAheadLog)
+	{
+		this.airportAtmosphericInformation = airportAtmosphericInformation;
+		this.writeAheadLog = writeAheadLog;
+	}
+
+	@Override
+	public AtmosphericInformation getAtmosphericInformation(AirportData airportData)
+	{
+		return airportAtmosphericInformation.getAtmosphericInformation(airportData);
+	}
+
+	@Override
+	public TimedDataPoint getTimedDataPoint(AirportData airportData, DataPointType type)
+	{
+		return airportAtmosphericInformation.getTimedDataPoint(airportData, type);
+	}
+
+	@Override
+	public void updateAtmosphericInformation(AirportData airportData, AtmosphericInformation atmosphericInformation)
+	{
+		synchronized (writeAheadLog.getLock(airportData.getIata()))
+		{
+			checkRegistered(airportData);
+			writeAheadLog.append(WalRecord.updateAtmosphericInformation(airportData.getIata(), atmosphericInformation, System.currentTimeMillis())).join();
+			airportAtmosphericInformation.updateAtmosphericInformation(airportData, atmosphericInformation);
+		}
+	}
+
+	@Override
+	public void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint)
+	{
+		synchronized (writeAheadLog.getLock(airportData.getIata()))
+		{
+			checkRegistered(airportData);
+			writeAheadLog.append(WalRecord.updateDataPoint(airportData.getIata(), type, dataPoint, System.currentTimeMillis())).join();
+			airportAtmosphericInformation.updateDataPoint(airportData, type, dataPoint);
+		}
+	}
+
+	@Override
+	public void updateDataPoints(AirportData airportData, AtmosphericInformation dataPoints)
+	{
+		synchronized (writeAheadLog.getLock(airportData.getIata()))
+		{
+			checkRegistered(airportData);
+			writeAheadLog.append(WalRecord.updateDataPoints(airportData.getIata(), dataPoints, System.currentTimeMillis())).join();
+			airportAtmosphericInformation.updateDataPoints(airportData, dataPoints);
+		}
+	}
+
+	@Override
+	public void restoreDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint, long updateTime)
+	{
+		synchronized (writeAheadLog.getLock(airportData.getIata()))
+		{
+			checkRegistered(airportData);
+			writeAheadLog.append(WalRecord.updateDataPoint(airportData.getIata(), type, dataPoint, updateTime)).join();
+			airportAtmosphericInformation.restoreDataPoint(airportData, type, dataPoint, updateTime);
+		}
+	}
+
+	/**
+	 * Expiry is logged as removal of the data point, so it is not restored on recovery. Data point can't be updated
+	 * under the lock, so the one found stale is removed after the record is written.
+	 */
+	@Override
+	public long expireDataPoint(AirportData airportData, DataPointType type, long updatedBefore)
+	{
+		synchronized (writeAheadLog.getLock(airportData.getIata()))
+		{
+			TimedDataPoint timedDataPoint = airportAtmosphericInformation.getTimedDataPoint(airportData, type);
+			if (timedDataPoint == null)
+				return 0;
+			if (timedDataPoint.getTime() > updatedBefore)
+				return timedDataPoint.getTime();
+
+			writeAheadLog.append(WalRecord.updateDataPoint(airportData.getIata(), type, null, 0)).join();
+			return airportAtmosphericInformation.expireDataPoint(airportData, type, updatedBefore);
+		}
+	}
+
+	/* Nothing is kept for the airport, which is not registered, so there's nothing to log */
+	@Override
+	public void clearAtmosphericInformation(AirportData airportData)
+	{
+		synchronized (writeAheadLog.getLock(airportData.getIata()))
+		{
+			if (airportData.ordinal() >= 0)
+				writeAheadLog.append(WalRecord.clearAtmosphericInformation(airportData.getIata())).join();
+			airportAtmosphericInformation.clearAtmosphericInformation(airportData);
+		}
+	}
+
+	@Override
+	public int size(long validTimePeriod)
+	{
+		return airportAtmosphericInformation.size(validTimePeriod);
+	}
+
+	/* Change of the airport, which is not registered, would fail after it is logged */
+	private static void checkRegistered(AirportData airportData)
+	{
+		if (airportData.ordinal() < 0)
+			throw new IllegalArgumentException("Airport is not registered: " + airportData.getIata());
+	}
+}
@@ -0,0 +1,113 @@
+package com.crossover.trial.weather.wal;
+
+import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.GeoBox;
+import com.crossover.trial.weather.data.GeoPolygon;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Airport database, which appends every change to the write-ahead log. Change is applied only after its record is
+ * written according to the fsync policy, under the lock of the airport, so changes of every airport are applied in the
+ * order of the log. Queries go to the database as is.
+ */
+public class AirportDatabaseWal implements AirportDatabase
+{
+	private final AirportDatabase airportDatabase;
+
+	private final WriteAheadLog writeAheadLog;
+
+	public AirportDatabaseWal(AirportDatabase airportDatabase, WriteAheadLog writeAheadLog)
+	{
+		this.airportDatabase = airportDatabase;
+		this.writeAheadLog = writeAheadLog;
+	}
+
+	@Override
+	public void addAirport(AirportData airportData)
+	{
+		synchronized (writeAheadLog.getLock(airportData.getIata()))
+		{
+			/* Airport of the other registration would be rejected after it is logged */
+			if (airportData.ordinal() >= 0 && airportDatabase.getAirportData(airportData.getIata()) != airportData)
+				throw new IllegalStateException("Airport is registered already: " + airportData.getIata());
+
+			writeAheadLog.append(WalRecord.addAirport(airportData)).join();
+			airportDatabase.addAirport(airportData);
+		}
+	}
+
+	@Override
+	public void removeAirport(AirportData airport)
+	{
+		synchronized (writeAheadLog.getLock(airport.getIata()))
+		{
+			writeAheadLog.append(WalRecord.removeAirport(airport.getIata())).join();
+			airportDatabase.removeAirport(airport);
+		}
+	}
+
+	@Override
+	public AirportData getAirportData(String iata)
+	{
+		return airportDatabase.getAirportData(iata);
+	}
+
+	@Override
+	public AirportData getAirportData(int packedIata)
+	{
+		return airportDatabase.getAirportData(packedIata);
+	}
+
+	@Override
+	public List<AirportData> getAirportsAround(AirportData airport, double distance)
+	{
+		return airportDatabase.getAirportsAround(airport, distance);
+	}
+
+	@Override
+	public List<AirportData> getAirportsAround(double latitude, double longitude, double distance)
+	{
+		return airportDatabase.getAirportsAround(latitude, longitude, distance);
+	}
+
+	@Override
+	public List<AirportData> getNearestAirports(AirportData airport, int count, Predicate<AirportData> filter)
+	{
+		return airportDatabase.getNearestAirports(airport, count, filter);
+	}
+
+	@Override
+	public List<AirportData> getAirportsInBox(GeoBox box)
+	{
+		return airportDatabase.getAirportsInBox(box);
+	}
+
+	@Override
+	public List<AirportData> getAirportsInPolygon(GeoPolygon polygon)
+	{
+		return airportDatabase.getAirportsInPolygon(polygon);
+	}
+
+	@Override
+	public Collection<String> getAllAirportIata()
+	{
+		return airportDatabase.getAllAirportIata();
+	}
+
+	@Override
+	public void beginBulkLoad()
+	{
+		airportDatabase.beginBulkLoad();
+	}
+
+	@Override
+	public CompletableFuture<Void> endBulkLoad()
+	{
+		return airportDatabase.endBulkLoad();
+	}
+}
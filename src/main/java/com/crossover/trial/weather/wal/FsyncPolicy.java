@@ -0,0 +1,22 @@
+package com.crossover.trial.weather.wal;
+
+/**
+ * When the write-ahead log is forced to the storage device
+ */
+public enum FsyncPolicy
+{
+	/**
+	 * After every group of records, the change is not acknowledged until it is forced
+	 */
+	ALWAYS,
+
+	/**
+	 * Not more often than once per interval, changes of the last interval may be lost on power failure
+	 */
+	INTERVAL,
+
+	/**
+	 * Never, the operating system decides
+	 */
+	NONE
+}
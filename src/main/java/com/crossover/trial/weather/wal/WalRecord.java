@@ -0,0 +1,291 @@
+package com.crossover.trial.weather.wal;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.AtmosphericInformationSnapshot;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointBuilder;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.TimedDataPoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Single change of the airports or atmospheric information, as written to the write-ahead log. Every change sets
+ * the new state of a single airport, not depending on the previous one, so replaying the change twice gives the same
+ * result. Data points are logged with their update times and restored with them, so replayed data points are not
+ * seen as fresh ones.
+ */
+public class WalRecord
+{
+	private static final byte ADD_AIRPORT = 1;
+	private static final byte REMOVE_AIRPORT = 2;
+	private static final byte UPDATE_DATA_POINT = 3;
+	private static final byte UPDATE_ATMOSPHERIC_INFORMATION = 4;
+	private static final byte CLEAR_ATMOSPHERIC_INFORMATION = 5;
+	private static final byte UPDATE_DATA_POINTS = 6;
+
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	private final byte operation;
+
+	private final String iata;
+
+	/* Airport coordinates for ADD_AIRPORT */
+	private double latitude;
+	private double longitude;
+
+	/* Data point type for UPDATE_DATA_POINT */
+	private DataPointType type;
+
+	/* Data points by type ordinal for UPDATE_DATA_POINT (single one), UPDATE_ATMOSPHERIC_INFORMATION and
+	   UPDATE_DATA_POINTS */
+	private DataPoint[] dataPoints;
+
+	/* Update times of the data points, ms */
+	private long[] times;
+
+	private WalRecord(byte operation, String iata)
+	{
+		this.operation = operation;
+		this.iata = iata;
+	}
+
+	public static WalRecord addAirport(AirportData airportData)
+	{
+		WalRecord record = new WalRecord(ADD_AIRPORT, airportData.getIata());
+		record.latitude = airportData.getLatitude();
+		record.longitude = airportData.getLongitude();
+		return record;
+	}
+
+	public static WalRecord removeAirport(String iata)
+	{
+		return new WalRecord(REMOVE_AIRPORT, iata);
+	}
+
+	public static WalRecord updateDataPoint(String iata, DataPointType type, DataPoint dataPoint, long time)
+	{
+		WalRecord record = new WalRecord(UPDATE_DATA_POINT, iata);
+		record.type = type;
+		record.dataPoints = new DataPoint[]{dataPoint};
+		record.times = new long[]{time};
+		return record;
+	}
+
+	public static WalRecord updateAtmosphericInformation(String iata, AtmosphericInformation atmosphericInformation, long time)
+	{
+		return withDataPoints(new WalRecord(UPDATE_ATMOSPHERIC_INFORMATION, iata), atmosphericInformation, time);
+	}
+
+	/**
+	 * Create the record, which sets all the data points of the airport along with their own update times, e.g. for
+	 * the snapshot
+	 *
+	 * @param iata       airport code
+	 * @param dataPoints data points with update times by type ordinal, null for the absent ones
+	 * @return record
+	 */
+	public static WalRecord updateAtmosphericInformation(String iata, TimedDataPoint[] dataPoints)
+	{
+		WalRecord record = new WalRecord(UPDATE_ATMOSPHERIC_INFORMATION, iata);
+		record.dataPoints = new DataPoint[TYPES.length];
+		record.times = new long[TYPES.length];
+		for (int i = 0; i < TYPES.length; i++)
+			if (dataPoints[i] != null)
+			{
+				record.dataPoints[i] = dataPoints[i].getDataPoint();
+				record.times[i] = dataPoints[i].getTime();
+			}
+		return record;
+	}
+
+	public static WalRecord updateDataPoints(String iata, AtmosphericInformation dataPoints, long time)
+	{
+		return withDataPoints(new WalRecord(UPDATE_DATA_POINTS, iata), dataPoints, time);
+	}
+
+	private static WalRecord withDataPoints(WalRecord record, AtmosphericInformation atmosphericInformation, long time)
+	{
+		AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.of(atmosphericInformation);
+		record.dataPoints = new DataPoint[TYPES.length];
+		record.times = new long[TYPES.length];
+		for (DataPointType type : TYPES)
+		{
+			record.dataPoints[type.ordinal()] = snapshot.get(type);
+			record.times[type.ordinal()] = time;
+		}
+		return record;
+	}
+
+	public static WalRecord clearAtmosphericInformation(String iata)
+	{
+		return new WalRecord(CLEAR_ATMOSPHERIC_INFORMATION, iata);
+	}
+
+	/**
+	 * Get code of the airport, changed by the record
+	 *
+	 * @return iata code
+	 */
+	public String getIata()
+	{
+		return iata;
+	}
+
+	/**
+	 * Apply the change, data points are restored with their logged update times. Changes of the airports, which are
+	 * not present, are skipped.
+	 *
+	 * @param airportDatabase               airport database
+	 * @param airportAtmosphericInformation atmospheric information storage
+	 */
+	public void apply(AirportDatabase airportDatabase, AirportAtmosphericInformation airportAtmosphericInformation)
+	{
+		if (operation == ADD_AIRPORT)
+		{
+			airportDatabase.addAirport(new AirportData(iata, latitude, longitude));
+			return;
+		}
+
+		AirportData airportData = airportDatabase.getAirportData(iata);
+		if (airportData == null)
+			return;
+
+		switch (operation)
+		{
+			case REMOVE_AIRPORT:
+				airportDatabase.removeAirport(airportData);
+				break;
+			case UPDATE_DATA_POINT:
+				airportAtmosphericInformation.restoreDataPoint(airportData, type, dataPoints[0], times[0]);
+				break;
+			case UPDATE_ATMOSPHERIC_INFORMATION:
+				for (DataPointType type : TYPES)
+					airportAtmosphericInformation.restoreDataPoint(airportData, type, dataPoints[type.ordinal()], times[type.ordinal()]);
+				break;
+			case UPDATE_DATA_POINTS:
+				for (DataPointType type : TYPES)
+					if (dataPoints[type.ordinal()] != null)
+						airportAtmosphericInformation.restoreDataPoint(airportData, type, dataPoints[type.ordinal()], times[type.ordinal()]);
+				break;
+			case CLEAR_ATMOSPHERIC_INFORMATION:
+				airportAtmosphericInformation.clearAtmosphericInformation(airportData);
+				break;
+		}
+	}
+
+	/**
+	 * Encode the record
+	 *
+	 * @return record bytes
+	 */
+	public byte[] encode()
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream output = new DataOutputStream(bytes))
+		{
+			output.writeByte(operation);
+			output.writeUTF(iata);
+			switch (operation)
+			{
+				case ADD_AIRPORT:
+					output.writeDouble(latitude);
+					output.writeDouble(longitude);
+					break;
+				case UPDATE_DATA_POINT:
+					output.writeByte(type.ordinal());
+					writeDataPoint(output, dataPoints[0], times[0]);
+					break;
+				case UPDATE_ATMOSPHERIC_INFORMATION:
+				case UPDATE_DATA_POINTS:
+					for (int i = 0; i < TYPES.length; i++)
+						writeDataPoint(output, dataPoints[i], times[i]);
+					break;
+			}
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decode the record
+	 *
+	 * @param bytes record bytes, as encoded by {@link #encode()}
+	 * @return record
+	 * @throws IOException if the record is malformed
+	 */
+	public static WalRecord decode(byte[] bytes) throws IOException
+	{
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+		WalRecord record = new WalRecord(input.readByte(), input.readUTF());
+		switch (record.operation)
+		{
+			case ADD_AIRPORT:
+				record.latitude = input.readDouble();
+				record.longitude = input.readDouble();
+				break;
+			case UPDATE_DATA_POINT:
+				int type = input.readByte();
+				if (type < 0 || type >= TYPES.length)
+					throw new IOException("Unknown data point type: " + type);
+				record.type = TYPES[type];
+				record.dataPoints = new DataPoint[1];
+				record.times = new long[1];
+				readDataPoint(input, record, 0);
+				break;
+			case UPDATE_ATMOSPHERIC_INFORMATION:
+			case UPDATE_DATA_POINTS:
+				record.dataPoints = new DataPoint[TYPES.length];
+				record.times = new long[TYPES.length];
+				for (int i = 0; i < TYPES.length; i++)
+					readDataPoint(input, record, i);
+				break;
+			case REMOVE_AIRPORT:
+			case CLEAR_ATMOSPHERIC_INFORMATION:
+				break;
+			default:
+				throw new IOException("Unknown operation: " + record.operation);
+		}
+		return record;
+	}
+
+	private static void writeDataPoint(DataOutputStream output, DataPoint dataPoint, long time) throws IOException
+	{
+		output.writeBoolean(dataPoint != null);
+		if (dataPoint == null)
+			return;
+
+		output.writeLong(time);
+		output.writeDouble(dataPoint.getMean());
+		output.writeInt(dataPoint.getFirst());
+		output.writeInt(dataPoint.getSecond());
+		output.writeInt(dataPoint.getThird());
+		output.writeInt(dataPoint.getCount());
+	}
+
+	/* Absent data point is left null */
+	private static void readDataPoint(DataInputStream input, WalRecord record, int index) throws IOException
+	{
+		if (!input.readBoolean())
+			return;
+
+		record.times[index] = input.readLong();
+		record.dataPoints[index] = new DataPointBuilder()
+				.withMean(input.readDouble())
+				.withFirst(input.readInt())
+				.withSecond(input.readInt())
+				.withThird(input.readInt())
+				.withCount(input.readInt())
+				.build();
+	}
+}
@@ -0,0 +1,507 @@
+package com.crossover.trial.weather.wal;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.TimedDataPoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the airport and atmospheric information changes with periodic snapshots.
+ * <p>
+ * Records are written by a dedicated thread, which takes all the records queued meanwhile and writes them at once,
+ * forcing them to the storage device according to the fsync policy. Every record is framed with its length and CRC,
+ * so recovery stops at the torn tail of the log.
+ * <p>
+ * Log is split into numbered segments. Snapshot starts a new segment, waits for the changes logged to the older ones
+ * to be applied, and then writes the current state of every airport with the update times of its data points, so it
+ * covers all the older segments, which are deleted afterwards. Changes made while the snapshot is written go to the
+ * new segment too; replaying them over the snapshot is safe, as every change sets the new state of the airport
+ * regardless of the previous one.
+ * <p>
+ * Change should be appended and then applied under the lock of its airport, see {@link #getLock(String)}, so changes
+ * of the same airport are applied in the order of the log. Then changes of different airports are independent, so
+ * recovery replays them in parallel.
+ */
+public class WriteAheadLog implements Closeable
+{
+	public final static Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getName());
+
+	private static final String SEGMENT_PREFIX = "wal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final String SNAPSHOT_SUFFIX = ".dat";
+
+	/* Records waiting for the writer, appends are blocked when the queue is full */
+	private static final int QUEUE_CAPACITY = 65536;
+
+	/* Max number of records written at once */
+	private static final int MAX_BATCH = 4096;
+
+	/* Max size of a single record, larger length means the log is corrupted */
+	private static final int MAX_RECORD_SIZE = 65536;
+
+	private static final int LOCK_STRIPES = 256;
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	private final Path directory;
+
+	private final FsyncPolicy fsyncPolicy;
+
+	/* Min time between forces for INTERVAL policy, ms */
+	private final long fsyncInterval;
+
+	private final BlockingQueue<Entry> queue;
+
+	private final Object[] locks;
+
+	/* Snapshots are never written in parallel */
+	private final Object snapshotLock;
+
+	private Thread writer;
+
+	private ScheduledExecutorService snapshotExecutor;
+
+	private volatile boolean closed;
+
+	/* Writer thread state: current segment, its output and time of the last force */
+	private long segment;
+	private FileChannel channel;
+	private DataOutputStream output;
+	private boolean forced;
+	private long forceTime;
+
+	/**
+	 * Create log in the directory, start it after the recovery
+	 *
+	 * @param directory     directory for the log segments and snapshots
+	 * @param fsyncPolicy   when the log is forced to the storage device
+	 * @param fsyncInterval min time between forces for {@link FsyncPolicy#INTERVAL}, ms
+	 */
+	public WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncInterval)
+	{
+		this.directory = directory;
+		this.fsyncPolicy = fsyncPolicy;
+		this.fsyncInterval = fsyncInterval;
+		queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		locks = new Object[LOCK_STRIPES];
+		for (int i = 0; i < LOCK_STRIPES; i++)
+			locks[i] = new Object();
+		snapshotLock = new Object();
+	}
+
+	/**
+	 * Replay the latest snapshot and the log segments written after it. Changes are applied in parallel, in the
+	 * original order for every airport.
+	 *
+	 * @param airportDatabase               empty airport database
+	 * @param airportAtmosphericInformation empty atmospheric information storage
+	 * @return number of the replayed records
+	 * @throws IOException if the log can't be read
+	 */
+	public int recover(AirportDatabase airportDatabase, AirportAtmosphericInformation airportAtmosphericInformation) throws IOException
+	{
+		List<List<WalRecord>> partitions = new ArrayList<>();
+		for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++)
+			partitions.add(new ArrayList<>());
+
+		long snapshot = getLast(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+		int records = snapshot < 0 ? 0 : read(getPath(SNAPSHOT_PREFIX, snapshot, SNAPSHOT_SUFFIX), partitions);
+		for (long number : getNumbers(SEGMENT_PREFIX, SEGMENT_SUFFIX))
+			if (number >= snapshot)
+				records += read(getPath(SEGMENT_PREFIX, number, SEGMENT_SUFFIX), partitions);
+
+		airportDatabase.beginBulkLoad();
+		partitions.parallelStream().forEach(partition ->
+		{
+			for (WalRecord record : partition)
+				record.apply(airportDatabase, airportAtmosphericInformation);
+		});
+		airportDatabase.endBulkLoad();
+		return records;
+	}
+
+	/**
+	 * Start writing to the new log segment
+	 *
+	 * @throws IOException if the segment can't be created
+	 */
+	public synchronized void start() throws IOException
+	{
+		long last = Math.max(getLast(SEGMENT_PREFIX, SEGMENT_SUFFIX), getLast(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+		openSegment(last + 1);
+		writer = new Thread(this::write, "wal-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Write snapshots periodically on the background
+	 *
+	 * @param airportDatabase               airport database
+	 * @param airportAtmosphericInformation atmospheric information storage
+	 * @param interval                      time between snapshots, ms
+	 */
+	public synchronized void scheduleSnapshots(AirportDatabase airportDatabase, AirportAtmosphericInformation airportAtmosphericInformation,
+											   long interval)
+	{
+		snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "wal-snapshot");
+			thread.setDaemon(true);
+			return thread;
+		});
+		snapshotExecutor.scheduleWithFixedDelay(() ->
+		{
+			try
+			{
+				snapshot(airportDatabase, airportAtmosphericInformation);
+			} catch (IOException | RuntimeException e)
+			{
+				LOGGER.log(Level.SEVERE, "Snapshot failed", e);
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Get the lock, which should be held while the change of the airport is appended to the log and then applied
+	 *
+	 * @param iata airport code
+	 * @return lock object
+	 */
+	public Object getLock(String iata)
+	{
+		return locks[Math.floorMod(iata.hashCode(), LOCK_STRIPES)];
+	}
+
+	/**
+	 * Queue the record for writing
+	 *
+	 * @param record record
+	 * @return completed when the record is forced to the storage device for {@link FsyncPolicy#ALWAYS} policy,
+	 * or when it is queued otherwise
+	 */
+	public CompletableFuture<Long> append(WalRecord record)
+	{
+		Entry entry = new Entry(record.encode(), fsyncPolicy == FsyncPolicy.ALWAYS ? new CompletableFuture<>() : null);
+		enqueue(entry);
+		return entry.done == null ? CompletableFuture.completedFuture(null) : entry.done;
+	}
+
+	/**
+	 * Write snapshot of the current state and delete the log segments it covers
+	 *
+	 * @param airportDatabase               airport database
+	 * @param airportAtmosphericInformation atmospheric information storage
+	 * @throws IOException if snapshot can't be written
+	 */
+	public void snapshot(AirportDatabase airportDatabase, AirportAtmosphericInformation airportAtmosphericInformation) throws IOException
+	{
+		synchronized (snapshotLock)
+		{
+			Entry rotation = new Entry(null, new CompletableFuture<>());
+			enqueue(rotation);
+			long number = rotation.done.join();
+
+			/* Changes logged to the older segments are applied before their locks are released */
+			for (Object lock : locks)
+				synchronized (lock)
+				{
+				}
+
+			Path temporary = directory.resolve(SNAPSHOT_PREFIX + number + ".tmp");
+			try (FileChannel snapshotChannel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				DataOutputStream snapshotOutput = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(snapshotChannel), BUFFER_SIZE));
+				for (String iata : airportDatabase.getAllAirportIata())
+				{
+					AirportData airportData = airportDatabase.getAirportData(iata);
+					if (airportData == null)
+						continue;
+
+					writeRecord(snapshotOutput, WalRecord.addAirport(airportData).encode());
+					TimedDataPoint[] dataPoints = new TimedDataPoint[TYPES.length];
+					boolean present = false;
+					for (DataPointType type : TYPES)
+					{
+						dataPoints[type.ordinal()] = airportAtmosphericInformation.getTimedDataPoint(airportData, type);
+						present |= dataPoints[type.ordinal()] != null;
+					}
+					if (present)
+						writeRecord(snapshotOutput, WalRecord.updateAtmosphericInformation(iata, dataPoints).encode());
+				}
+				snapshotOutput.flush();
+				snapshotChannel.force(true);
+			}
+			Files.move(temporary, getPath(SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+
+			for (long segment : getNumbers(SEGMENT_PREFIX, SEGMENT_SUFFIX))
+				if (segment < number)
+					Files.deleteIfExists(getPath(SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+			for (long snapshot : getNumbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX))
+				if (snapshot < number)
+					Files.deleteIfExists(getPath(SNAPSHOT_PREFIX, snapshot, SNAPSHOT_SUFFIX));
+		}
+	}
+
+	/**
+	 * Write all queued records, force them and stop the writer
+	 */
+	@Override
+	public void close()
+	{
+		synchronized (this)
+		{
+			if (closed || writer == null)
+				return;
+			closed = true;
+			if (snapshotExecutor != null)
+				snapshotExecutor.shutdownNow();
+		}
+		Entry close = new Entry(null, new CompletableFuture<>());
+		close.close = true;
+		put(close);
+		close.done.join();
+	}
+
+	private void enqueue(Entry entry)
+	{
+		if (closed)
+			throw new IllegalStateException("Write-ahead log is closed");
+		put(entry);
+	}
+
+	private void put(Entry entry)
+	{
+		try
+		{
+			queue.put(entry);
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while appending to write-ahead log", e);
+		}
+	}
+
+	/* Writer thread loop */
+	private void write()
+	{
+		List<Entry> batch = new ArrayList<>();
+		while (true)
+		{
+			try
+			{
+				Entry first = queue.poll(fsyncPolicy == FsyncPolicy.INTERVAL ? fsyncInterval : 1000, TimeUnit.MILLISECONDS);
+				if (first != null)
+				{
+					batch.add(first);
+					queue.drainTo(batch, MAX_BATCH);
+				}
+			} catch (InterruptedException e)
+			{
+				return;
+			}
+
+			boolean stop = false;
+			try
+			{
+				stop = writeBatch(batch);
+			} catch (IOException | RuntimeException e)
+			{
+				LOGGER.log(Level.SEVERE, "Write-ahead log failed", e);
+				for (Entry entry : batch)
+					if (entry.done != null)
+						entry.done.completeExceptionally(e);
+			}
+			batch.clear();
+			if (stop)
+				return;
+		}
+	}
+
+	/* Write the records and complete them, returns true if the log is closed */
+	private boolean writeBatch(List<Entry> batch) throws IOException
+	{
+		List<Entry> completed = new ArrayList<>();
+		boolean stop = false;
+		for (Entry entry : batch)
+		{
+			if (entry.record != null)
+			{
+				writeRecord(output, entry.record);
+				forced = false;
+				if (entry.done != null)
+					completed.add(entry);
+				continue;
+			}
+
+			/* Rotation and close force all the records before */
+			force();
+			for (Entry record : completed)
+				record.done.complete(segment);
+			completed.clear();
+			if (entry.close)
+			{
+				output.close();
+				stop = true;
+			} else
+			{
+				output.close();
+				openSegment(segment + 1);
+			}
+			entry.done.complete(segment);
+		}
+
+		output.flush();
+		long now = System.currentTimeMillis();
+		if (fsyncPolicy == FsyncPolicy.ALWAYS || fsyncPolicy == FsyncPolicy.INTERVAL && now - forceTime >= fsyncInterval)
+			force();
+		for (Entry record : completed)
+			record.done.complete(segment);
+		return stop;
+	}
+
+	private void force() throws IOException
+	{
+		output.flush();
+		if (!forced)
+			channel.force(false);
+		forced = true;
+		forceTime = System.currentTimeMillis();
+	}
+
+	private void openSegment(long number) throws IOException
+	{
+		segment = number;
+		channel = FileChannel.open(getPath(SEGMENT_PREFIX, number, SEGMENT_SUFFIX), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+		forced = true;
+	}
+
+	private static void writeRecord(DataOutputStream output, byte[] record) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		output.writeInt(record.length);
+		output.writeInt((int) crc.getValue());
+		output.write(record);
+	}
+
+	/* Read records into partitions by airport up to the end of file or the first damaged record */
+	private static int read(Path path, List<List<WalRecord>> partitions) throws IOException
+	{
+		int records = 0;
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE)))
+		{
+			while (true)
+			{
+				int length;
+				try
+				{
+					length = input.readInt();
+				} catch (EOFException e)
+				{
+					return records;
+				}
+
+				try
+				{
+					if (length <= 0 || length > MAX_RECORD_SIZE)
+						throw new IOException("Invalid record length: " + length);
+					int checksum = input.readInt();
+					byte[] bytes = new byte[length];
+					input.readFully(bytes);
+					CRC32 crc = new CRC32();
+					crc.update(bytes);
+					if ((int) crc.getValue() != checksum)
+						throw new IOException("Record checksum mismatch");
+
+					WalRecord record = WalRecord.decode(bytes);
+					partitions.get(Math.floorMod(record.getIata().hashCode(), partitions.size())).add(record);
+					records++;
+				} catch (IOException e)
+				{
+					LOGGER.warning(String.format("%s: %d records read, the rest is skipped: %s", path.getFileName(), records, e));
+					return records;
+				}
+			}
+		}
+	}
+
+	private Path getPath(String prefix, long number, String suffix)
+	{
+		return directory.resolve(String.format("%s%016d%s", prefix, number, suffix));
+	}
+
+	/* Numbers of the files with the prefix and suffix, ascending */
+	private List<Long> getNumbers(String prefix, String suffix) throws IOException
+	{
+		try (Stream<Path> files = Files.list(directory))
+		{
+			return files.map(file -> file.getFileName().toString())
+					.filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+					.map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+					.sorted()
+					.collect(Collectors.toList());
+		} catch (NumberFormatException e)
+		{
+			throw new IOException("Unexpected file in write-ahead log directory", e);
+		}
+	}
+
+	private long getLast(String prefix, String suffix) throws IOException
+	{
+		List<Long> numbers = getNumbers(prefix, suffix);
+		return numbers.isEmpty() ? -1 : numbers.get(numbers.size() - 1);
+	}
+
+	/**
+	 * Record queued for writing, or rotation/close marker without the record
+	 */
+	private static class Entry
+	{
+		private final byte[] record;
+
+		/* Completed with the segment number, when the record is written according to the policy */
+		private final CompletableFuture<Long> done;
+
+		private boolean close;
+
+		private Entry(byte[] record, CompletableFuture<Long> done)
+		{
+			this.record = record;
+			this.done = done;
+		}
+	}
+}
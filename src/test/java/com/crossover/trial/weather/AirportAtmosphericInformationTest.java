@@ -0,0 +1,605 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationCoalescing;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationExpiring;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationMemory;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationOffHeap;
+import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.airport.AirportDatabaseMemory;
+import com.crossover.trial.weather.common.FreshnessCounter;
+import com.crossover.trial.weather.common.RandomDataFactory;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.AtmosphericInformationSnapshot;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Testing atmospheric information storage updates
+ */
+public class AirportAtmosphericInformationTest
+{
+	private static final int UPDATES_NUMBER = 2000;
+
+	private static final long MS_IN_ONE_MINUTE = 60 * 1000;
+
+	private static final long MS_IN_ONE_DAY = 24 * 60 * MS_IN_ONE_MINUTE;
+
+	/**
+	 * Concurrent updates of different data point types for the same airport should never be lost
+	 */
+	@Test
+	public void testConcurrentDataPointUpdates() throws InterruptedException
+	{
+		testConcurrentDataPointUpdates(new AirportAtmosphericInformationMemory());
+		testConcurrentDataPointUpdates(new AirportAtmosphericInformationOffHeap());
+	}
+
+	private void testConcurrentDataPointUpdates(AirportAtmosphericInformation airportAtmosphericInformation) throws InterruptedException
+	{
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(RandomDataFactory.createRandomAirportData());
+		DataPointType[] types = DataPointType.values();
+		DataPoint[] lastDataPoints = new DataPoint[types.length];
+		CountDownLatch start = new CountDownLatch(1);
+
+		List<Thread> threads = new ArrayList<>();
+		for (DataPointType type : types)
+		{
+			DataPoint[] dataPoints = new DataPoint[UPDATES_NUMBER];
+			for (int i = 0; i < UPDATES_NUMBER; i++)
+				dataPoints[i] = RandomDataFactory.createDataPoint(type, i);
+			lastDataPoints[type.ordinal()] = dataPoints[UPDATES_NUMBER - 1];
+
+			threads.add(new Thread(() ->
+			{
+				try
+				{
+					start.await();
+				} catch (InterruptedException e)
+				{
+					return;
+				}
+				for (DataPoint dataPoint : dataPoints)
+				{
+					airportAtmosphericInformation.updateDataPoint(airportData, type, dataPoint);
+					/* Readers build snapshots meanwhile */
+					airportAtmosphericInformation.getAtmosphericInformation(airportData);
+				}
+			}));
+		}
+		for (Thread thread : threads)
+			thread.start();
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+
+		AtmosphericInformationSnapshot result = AtmosphericInformationSnapshot.of(airportAtmosphericInformation.getAtmosphericInformation(airportData));
+		for (DataPointType type : types)
+			assertEquals(lastDataPoints[type.ordinal()], result.get(type));
+	}
+
+	/**
+	 * Snapshot is cached until the next update
+	 */
+	@Test
+	public void testSnapshotCache()
+	{
+		AirportAtmosphericInformation airportAtmosphericInformation = new AirportAtmosphericInformationMemory();
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(RandomDataFactory.createRandomAirportData());
+		DataPoint wind = RandomDataFactory.createDataPoint(DataPointType.WIND, 1);
+		airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, wind);
+
+		AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+		assertSame(atmosphericInformation, airportAtmosphericInformation.getAtmosphericInformation(airportData));
+
+		DataPoint humidity = RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, 2);
+		airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.HUMIDITY, humidity);
+		AtmosphericInformation updated = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+		assertEquals(wind, updated.getWind());
+		assertEquals(humidity, updated.getHumidity());
+		assertEquals(null, atmosphericInformation.getHumidity());
+		assertEquals(1, airportAtmosphericInformation.size(1000));
+	}
+
+	/**
+	 * Atmospheric information is kept by airport ordinal: it stays with the airport replaced by the one with the same
+	 * iata, but not with another airport, which got the ordinal of the removed one
+	 */
+	@Test
+	public void testOrdinalReuse()
+	{
+		testOrdinalReuse(new AirportAtmosphericInformationMemory());
+		testOrdinalReuse(new AirportAtmosphericInformationOffHeap());
+	}
+
+	private void testOrdinalReuse(AirportAtmosphericInformation airportAtmosphericInformation)
+	{
+		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		AirportData bos = new AirportData("BOS", 42.364347, -71.005181);
+		AirportData jfk = new AirportData("JFK", 40.639751, -73.778925);
+		airportDatabase.addAirport(bos);
+		airportDatabase.addAirport(jfk);
+		assertEquals(0, bos.ordinal());
+		assertEquals(1, jfk.ordinal());
+
+		DataPoint wind = RandomDataFactory.createDataPoint(DataPointType.WIND, 1);
+		airportAtmosphericInformation.updateDataPoint(bos, DataPointType.WIND, wind);
+
+		AirportData bosMoved = new AirportData("BOS", 42.37, -71.01);
+		airportDatabase.addAirport(bosMoved);
+		assertEquals(0, bosMoved.ordinal());
+		assertEquals(wind, airportAtmosphericInformation.getAtmosphericInformation(bosMoved).getWind());
+
+		airportDatabase.removeAirport(bosMoved);
+		AirportData ewr = new AirportData("EWR", 40.6925, -74.168667);
+		airportDatabase.addAirport(ewr);
+		assertEquals(0, ewr.ordinal());
+		assertNull(airportAtmosphericInformation.getAtmosphericInformation(ewr));
+
+		/* Removed airport loses its ordinal, so late updates through it never reach the airport, which reused it */
+		assertEquals(-1, bosMoved.ordinal());
+		airportAtmosphericInformation.updateDataPoint(ewr, DataPointType.WIND, wind);
+		try
+		{
+			airportAtmosphericInformation.updateDataPoint(bosMoved, DataPointType.HUMIDITY, RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, 1));
+			fail("Removed airport should not be updated");
+		} catch (IllegalArgumentException e)
+		{
+			assertEquals(wind, airportAtmosphericInformation.getAtmosphericInformation(ewr).getWind());
+			assertNull(airportAtmosphericInformation.getAtmosphericInformation(ewr).getHumidity());
+		}
+
+		try
+		{
+			new AirportDatabaseMemory().addAirport(ewr);
+			fail("Airport should not be registered in two databases");
+		} catch (IllegalStateException e)
+		{
+			assertEquals(0, ewr.ordinal());
+		}
+	}
+
+	/**
+	 * Off-heap storage keeps every field of the data points, tells missing data points from the present ones and
+	 * grows beyond the first buffer chunk
+	 */
+	@Test
+	public void testOffHeapStorage()
+	{
+		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		AirportAtmosphericInformation airportAtmosphericInformation = new AirportAtmosphericInformationOffHeap();
+		List<AirportData> airports = new ArrayList<>();
+		for (int i = 0; i < 3000; i++)
+		{
+			AirportData airportData = RandomDataFactory.createRandomAirportData();
+			airportDatabase.addAirport(airportData);
+			airports.add(airportData);
+		}
+		/* Random iata codes may repeat */
+		airports.removeIf(airportData -> airportDatabase.getAirportData(airportData.getIata()) != airportData);
+
+		for (AirportData airportData : airports)
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.PRESSURE,
+					RandomDataFactory.createDataPoint(DataPointType.PRESSURE, airportData.ordinal()));
+		for (AirportData airportData : airports)
+		{
+			AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+			assertEquals(RandomDataFactory.createDataPoint(DataPointType.PRESSURE, airportData.ordinal()), atmosphericInformation.getPressure());
+			assertNull(atmosphericInformation.getWind());
+		}
+		assertEquals(airports.size(), airportAtmosphericInformation.size(1000));
+
+		AirportData airportData = airports.get(0);
+		DataPoint temperature = RandomDataFactory.createDataPoint(DataPointType.TEMPERATURE, 1);
+		airportAtmosphericInformation.updateAtmosphericInformation(airportData, AtmosphericInformationSnapshot.EMPTY.with(DataPointType.TEMPERATURE, temperature));
+		AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+		assertEquals(temperature, atmosphericInformation.getTemperature());
+		assertNull(atmosphericInformation.getPressure());
+
+		airportAtmosphericInformation.clearAtmosphericInformation(airportData);
+		assertNull(airportAtmosphericInformation.getAtmosphericInformation(airportData));
+		assertEquals(airports.size() - 1, airportAtmosphericInformation.size(1000));
+	}
+
+	/**
+	 * Objects are counted in the minute of their last update until it is out of the counted day
+	 */
+	@Test
+	public void testFreshnessCounter()
+	{
+		FreshnessCounter freshnessCounter = new FreshnessCounter();
+		long start = 1000 * MS_IN_ONE_DAY;
+		AtomicLong first = new AtomicLong();
+		AtomicLong second = new AtomicLong();
+		AtomicLong third = new AtomicLong();
+
+		freshnessCounter.update(first, start);
+		freshnessCounter.update(second, start + 10 * MS_IN_ONE_MINUTE);
+		freshnessCounter.update(third, start + 10 * MS_IN_ONE_MINUTE + 1);
+		long now = start + 20 * MS_IN_ONE_MINUTE;
+		assertEquals(3, freshnessCounter.size(MS_IN_ONE_DAY, now));
+		assertEquals(2, freshnessCounter.size(15 * MS_IN_ONE_MINUTE, now));
+		assertEquals(0, freshnessCounter.size(5 * MS_IN_ONE_MINUTE, now));
+
+		/* Moved to the later minute */
+		freshnessCounter.update(first, start + 18 * MS_IN_ONE_MINUTE);
+		assertEquals(3, freshnessCounter.size(MS_IN_ONE_DAY, now));
+		assertEquals(1, freshnessCounter.size(5 * MS_IN_ONE_MINUTE, now));
+
+		freshnessCounter.remove(second);
+		freshnessCounter.update(second, now);
+		assertEquals(2, freshnessCounter.size(MS_IN_ONE_DAY, now));
+		assertEquals(0, FreshnessCounter.getUpdateTime(second));
+
+		/* The day has passed for the third, buckets of its minute are reused for the first */
+		now = start + MS_IN_ONE_DAY + 15 * MS_IN_ONE_MINUTE;
+		freshnessCounter.update(first, start + MS_IN_ONE_DAY + 10 * MS_IN_ONE_MINUTE);
+		assertEquals(1, freshnessCounter.size(MS_IN_ONE_DAY, now));
+		freshnessCounter.remove(third);
+		assertEquals(1, freshnessCounter.size(MS_IN_ONE_DAY, now));
+
+		assertTrue(freshnessCounter.covers(MS_IN_ONE_DAY));
+		assertFalse(freshnessCounter.covers(MS_IN_ONE_DAY + 1));
+	}
+
+	/**
+	 * Size counted by the storages over the day matches the one found by the scan over longer period
+	 */
+	@Test
+	public void testFreshnessSize()
+	{
+		testFreshnessSize(new AirportAtmosphericInformationMemory());
+		testFreshnessSize(new AirportAtmosphericInformationOffHeap());
+	}
+
+	private void testFreshnessSize(AirportAtmosphericInformation airportAtmosphericInformation)
+	{
+		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		List<AirportData> airports = new ArrayList<>();
+		for (int i = 0; i < 500; i++)
+		{
+			AirportData airportData = RandomDataFactory.createRandomAirportData();
+			airportDatabase.addAirport(airportData);
+			airports.add(airportData);
+		}
+		airports.removeIf(airportData -> airportDatabase.getAirportData(airportData.getIata()) != airportData);
+
+		for (AirportData airportData : airports)
+			for (DataPointType type : DataPointType.values())
+				airportAtmosphericInformation.updateDataPoint(airportData, type, RandomDataFactory.createDataPoint(type, 1));
+		for (int i = 0; i < airports.size(); i += 3)
+			airportAtmosphericInformation.clearAtmosphericInformation(airports.get(i));
+
+		int expected = airports.size() - (airports.size() + 2) / 3;
+		assertEquals(expected, airportAtmosphericInformation.size(MS_IN_ONE_DAY));
+		assertEquals(expected, airportAtmosphericInformation.size(2 * MS_IN_ONE_DAY));
+	}
+
+	/**
+	 * Updating several data points at once leaves the other ones as is
+	 */
+	@Test
+	public void testUpdateDataPoints()
+	{
+		testUpdateDataPoints(new AirportAtmosphericInformationMemory());
+		testUpdateDataPoints(new AirportAtmosphericInformationOffHeap());
+	}
+
+	private void testUpdateDataPoints(AirportAtmosphericInformation airportAtmosphericInformation)
+	{
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(RandomDataFactory.createRandomAirportData());
+		DataPoint wind = RandomDataFactory.createDataPoint(DataPointType.WIND, 1);
+		DataPoint humidity = RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, 2);
+		DataPoint pressure = RandomDataFactory.createDataPoint(DataPointType.PRESSURE, 3);
+		airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, wind);
+
+		airportAtmosphericInformation.updateDataPoints(airportData, AtmosphericInformationSnapshot.EMPTY
+				.with(DataPointType.HUMIDITY, humidity)
+				.with(DataPointType.PRESSURE, pressure));
+		AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+		assertEquals(wind, atmosphericInformation.getWind());
+		assertEquals(humidity, atmosphericInformation.getHumidity());
+		assertEquals(pressure, atmosphericInformation.getPressure());
+		assertNull(atmosphericInformation.getTemperature());
+		assertEquals(1, airportAtmosphericInformation.size(MS_IN_ONE_DAY));
+	}
+
+	/**
+	 * Data point is expired only if it was not updated after the stated time, other data points are left as is
+	 */
+	@Test
+	public void testExpireDataPoint()
+	{
+		testExpireDataPoint(new AirportAtmosphericInformationMemory());
+		testExpireDataPoint(new AirportAtmosphericInformationOffHeap());
+	}
+
+	private void testExpireDataPoint(AirportAtmosphericInformation airportAtmosphericInformation)
+	{
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(RandomDataFactory.createRandomAirportData());
+		DataPoint wind = RandomDataFactory.createDataPoint(DataPointType.WIND, 1);
+		DataPoint humidity = RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, 1);
+		assertEquals(0, airportAtmosphericInformation.expireDataPoint(airportData, DataPointType.WIND, Long.MAX_VALUE));
+
+		long before = System.currentTimeMillis();
+		airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, wind);
+		airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.HUMIDITY, humidity);
+		assertTrue(airportAtmosphericInformation.expireDataPoint(airportData, DataPointType.WIND, before - 1) >= before);
+		assertEquals(wind, airportAtmosphericInformation.getAtmosphericInformation(airportData).getWind());
+
+		assertEquals(0, airportAtmosphericInformation.expireDataPoint(airportData, DataPointType.WIND, System.currentTimeMillis()));
+		AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+		assertNull(atmosphericInformation.getWind());
+		assertEquals(humidity, atmosphericInformation.getHumidity());
+
+		airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, wind);
+		assertEquals(wind, airportAtmosphericInformation.getAtmosphericInformation(airportData).getWind());
+	}
+
+	/**
+	 * Data points expire by the timer after their time to live, unless they are updated; types without time to live
+	 * never expire
+	 */
+	@Test
+	public void testDataPointTimeToLive() throws InterruptedException
+	{
+		testDataPointTimeToLive(new AirportAtmosphericInformationMemory());
+		testDataPointTimeToLive(new AirportAtmosphericInformationOffHeap());
+	}
+
+	private void testDataPointTimeToLive(AirportAtmosphericInformation storage) throws InterruptedException
+	{
+		Map<DataPointType, Long> timesToLive = new EnumMap<>(DataPointType.class);
+		timesToLive.put(DataPointType.WIND, 300L);
+		timesToLive.put(DataPointType.HUMIDITY, 300L);
+		try (AirportAtmosphericInformationExpiring airportAtmosphericInformation = new AirportAtmosphericInformationExpiring(storage, timesToLive, 10))
+		{
+			AirportData airportData = ConfiguredJerseyTest.registerAirport(RandomDataFactory.createRandomAirportData());
+			DataPoint wind = RandomDataFactory.createDataPoint(DataPointType.WIND, 1);
+			DataPoint humidity = RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, 1);
+			DataPoint pressure = RandomDataFactory.createDataPoint(DataPointType.PRESSURE, 1);
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, wind);
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.HUMIDITY, humidity);
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.PRESSURE, pressure);
+
+			/* Humidity is kept alive by the updates */
+			for (int i = 0; i < 10; i++)
+			{
+				Thread.sleep(50);
+				airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.HUMIDITY, humidity);
+			}
+			AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+			assertNull(atmosphericInformation.getWind());
+			assertEquals(humidity, atmosphericInformation.getHumidity());
+			assertEquals(pressure, atmosphericInformation.getPressure());
+
+			Thread.sleep(500);
+			atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+			assertNull(atmosphericInformation.getHumidity());
+			assertEquals(pressure, atmosphericInformation.getPressure());
+		}
+	}
+
+	/**
+	 * Data points kept in the storage before it was wrapped expire by their stored update time
+	 */
+	@Test
+	public void testStoredDataPointTimeToLive() throws InterruptedException
+	{
+		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		AirportData airportData = RandomDataFactory.createRandomAirportData();
+		airportDatabase.addAirport(airportData);
+		AirportAtmosphericInformation storage = new AirportAtmosphericInformationMemory();
+		DataPoint wind = RandomDataFactory.createDataPoint(DataPointType.WIND, 1);
+		DataPoint humidity = RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, 1);
+		storage.updateDataPoint(airportData, DataPointType.WIND, wind);
+		Thread.sleep(150);
+		storage.updateDataPoint(airportData, DataPointType.HUMIDITY, humidity);
+
+		Map<DataPointType, Long> timesToLive = new EnumMap<>(DataPointType.class);
+		timesToLive.put(DataPointType.WIND, 100L);
+		timesToLive.put(DataPointType.HUMIDITY, 300L);
+		try (AirportAtmosphericInformationExpiring airportAtmosphericInformation = new AirportAtmosphericInformationExpiring(storage, timesToLive, 10))
+		{
+			/* Wind is older than its time to live and is removed at once */
+			airportAtmosphericInformation.scheduleStored(airportDatabase);
+			AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+			assertNull(atmosphericInformation.getWind());
+			assertEquals(humidity, atmosphericInformation.getHumidity());
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (airportAtmosphericInformation.getAtmosphericInformation(airportData).getHumidity() != null)
+			{
+				assertTrue("Stored humidity has not expired", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	/**
+	 * Only the latest data point of the window is committed, the other updates supersede pending data points
+	 */
+	@Test
+	public void testCoalescing() throws InterruptedException
+	{
+		AirportAtmosphericInformation storage = new AirportAtmosphericInformationMemory();
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(RandomDataFactory.createRandomAirportData());
+		DataPoint humidity = RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, 1);
+		try (AirportAtmosphericInformationCoalescing airportAtmosphericInformation = new AirportAtmosphericInformationCoalescing(storage, 200))
+		{
+			DataPoint wind = null;
+			for (int i = 0; i < 10; i++)
+				airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, wind = RandomDataFactory.createDataPoint(DataPointType.WIND, 1));
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.HUMIDITY, humidity);
+			DataPoint pressure = RandomDataFactory.createDataPoint(DataPointType.PRESSURE, 1);
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.PRESSURE, RandomDataFactory.createDataPoint(DataPointType.PRESSURE, 1));
+			airportAtmosphericInformation.updateDataPoints(airportData, AtmosphericInformationSnapshot.EMPTY.with(DataPointType.PRESSURE, pressure));
+			assertNull(storage.getAtmosphericInformation(airportData).getWind());
+			assertEquals(pressure, storage.getAtmosphericInformation(airportData).getPressure());
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (airportAtmosphericInformation.getCommitted() < 2)
+			{
+				assertTrue("Pending data points are not committed", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+			AtmosphericInformation atmosphericInformation = storage.getAtmosphericInformation(airportData);
+			assertEquals(wind, atmosphericInformation.getWind());
+			assertEquals(humidity, atmosphericInformation.getHumidity());
+			assertEquals(pressure, atmosphericInformation.getPressure());
+			assertEquals(2, airportAtmosphericInformation.getCommitted());
+			assertEquals(10, airportAtmosphericInformation.getCoalesced());
+
+			/* Pending data points are committed on close */
+			humidity = RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, 1);
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.HUMIDITY, humidity);
+		}
+		assertEquals(humidity, storage.getAtmosphericInformation(airportData).getHumidity());
+	}
+
+	/**
+	 * Pending data points of the deleted airport are not committed, also to the airport which reused its ordinal
+	 */
+	@Test
+	public void testCoalescingClear() throws InterruptedException
+	{
+		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		AirportData deleted = RandomDataFactory.createRandomAirportData();
+		airportDatabase.addAirport(deleted);
+		List<AirportData> committed = new CopyOnWriteArrayList<>();
+		AirportAtmosphericInformation storage = new AirportAtmosphericInformationMemory()
+		{
+			@Override
+			public void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint)
+			{
+				committed.add(airportData);
+				super.updateDataPoint(airportData, type, dataPoint);
+			}
+		};
+		try (AirportAtmosphericInformationCoalescing airportAtmosphericInformation = new AirportAtmosphericInformationCoalescing(storage, 100))
+		{
+			airportAtmosphericInformation.updateDataPoint(deleted, DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, 1));
+			airportAtmosphericInformation.clearAtmosphericInformation(deleted);
+			int ordinal = deleted.ordinal();
+			airportDatabase.removeAirport(deleted);
+
+			AirportData added = RandomDataFactory.createRandomAirportData();
+			airportDatabase.addAirport(added);
+			assertEquals(ordinal, added.ordinal());
+
+			/* Commit of the added airport is scheduled later, so the commit of the deleted one is already done */
+			DataPoint humidity = RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, 1);
+			airportAtmosphericInformation.updateDataPoint(added, DataPointType.HUMIDITY, humidity);
+			long deadline = System.currentTimeMillis() + 5000;
+			while (airportAtmosphericInformation.getCommitted() < 1)
+			{
+				assertTrue("Pending data point is not committed", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+			AtmosphericInformation atmosphericInformation = storage.getAtmosphericInformation(added);
+			assertNull(atmosphericInformation.getWind());
+			assertEquals(humidity, atmosphericInformation.getHumidity());
+			assertEquals(Collections.singletonList(added), committed);
+		}
+	}
+
+	/**
+	 * Clear waits for the commit in progress, so the committed data point does not outlive the clear
+	 */
+	@Test
+	public void testCoalescingClearDuringCommit() throws InterruptedException
+	{
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(RandomDataFactory.createRandomAirportData());
+		CountDownLatch committing = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		AirportAtmosphericInformation storage = new AirportAtmosphericInformationMemory()
+		{
+			@Override
+			public void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint)
+			{
+				committing.countDown();
+				try
+				{
+					proceed.await();
+				} catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				super.updateDataPoint(airportData, type, dataPoint);
+			}
+		};
+		try (AirportAtmosphericInformationCoalescing airportAtmosphericInformation = new AirportAtmosphericInformationCoalescing(storage, 20))
+		{
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, 1));
+			assertTrue("Pending data point is not committed", committing.await(5, TimeUnit.SECONDS));
+
+			Thread clear = new Thread(() -> airportAtmosphericInformation.clearAtmosphericInformation(airportData));
+			clear.start();
+			clear.join(200);
+			proceed.countDown();
+			clear.join(5000);
+			assertFalse(clear.isAlive());
+			long deadline = System.currentTimeMillis() + 5000;
+			while (airportAtmosphericInformation.getCommitted() < 1)
+			{
+				assertTrue("Commit is not finished", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+			assertNull(storage.getAtmosphericInformation(airportData));
+		}
+	}
+
+	/**
+	 * Commit scheduled for the data point dropped by the other update does not commit the next data point before its
+	 * window passes
+	 */
+	@Test
+	public void testCoalescingStaleCommit() throws InterruptedException
+	{
+		AirportAtmosphericInformation storage = new AirportAtmosphericInformationMemory();
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(RandomDataFactory.createRandomAirportData());
+		try (AirportAtmosphericInformationCoalescing airportAtmosphericInformation = new AirportAtmosphericInformationCoalescing(storage, 1000))
+		{
+			long start = System.currentTimeMillis();
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, 1));
+			DataPoint batchWind = RandomDataFactory.createDataPoint(DataPointType.WIND, 1);
+			airportAtmosphericInformation.updateDataPoints(airportData, AtmosphericInformationSnapshot.EMPTY.with(DataPointType.WIND, batchWind));
+			Thread.sleep(500);
+			DataPoint wind = RandomDataFactory.createDataPoint(DataPointType.WIND, 1);
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, wind);
+
+			/* Commit of the dropped data point is due by now, the one of the next data point is not */
+			Thread.sleep(Math.max(start + 1350 - System.currentTimeMillis(), 0));
+			assertEquals(batchWind, storage.getAtmosphericInformation(airportData).getWind());
+			assertEquals(0, airportAtmosphericInformation.getCommitted());
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (airportAtmosphericInformation.getCommitted() < 1)
+			{
+				assertTrue("Pending data point is not committed", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+			assertEquals(wind, storage.getAtmosphericInformation(airportData).getWind());
+			assertEquals(1, airportAtmosphericInformation.getCoalesced());
+		}
+	}
+}
@@ -1,18 +1,31 @@
 package com.crossover.trial.weather;
 
 import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.airport.AirportDatabaseKdTree;
 import com.crossover.trial.weather.airport.AirportDatabaseMemory;
+import com.crossover.trial.weather.airport.AirportGridIndex;
 import com.crossover.trial.weather.common.Calculations;
 import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.GeoBox;
+import com.crossover.trial.weather.data.GeoPolygon;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 import static com.crossover.trial.weather.ConfiguredJerseyTest.DELTA_FOR_COMPARE_DOUBLE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Testing correct distance between airports calculation
@@ -69,9 +82,130 @@ public class AirportDatabaseTest
 	 */
 	@Test
 	public void testAirportDatabase()
+	{
+		testAirportDatabase(new AirportDatabaseMemory());
+		testAirportDatabase(new AirportDatabaseKdTree());
+	}
+
+	/**
+	 * Test radius search gives the same results as the full scan, including areas near the poles and the antimeridian
+	 */
+	@Test
+	public void testAirportsAroundMatchesFullScan()
+	{
+		testAirportsAroundMatchesFullScan(new AirportDatabaseMemory());
+		testAirportsAroundMatchesFullScan(new AirportDatabaseKdTree());
+	}
+
+	/**
+	 * Test coordinate store scan gives the same results as the distance calculation for every radius
+	 */
+	@Test
+	public void testCoordinateStoreMatchesFullScan()
+	{
+		/* Zero threshold makes every search go to the coordinate store */
+		testAirportDatabase(new AirportDatabaseMemory(AirportGridIndex::new, 0) {});
+		testAirportsAroundMatchesFullScan(new AirportDatabaseMemory(AirportGridIndex::new, 0) {});
+	}
+
+	/**
+	 * Test coordinate store split into parallel chunks and whole-globe search give the same results as the distance
+	 * calculation
+	 */
+	@Test
+	public void testParallelScanMatchesFullScan()
+	{
+		AirportDatabase airportDatabase = new AirportDatabaseMemory(AirportGridIndex::new, 0) {};
+		Random random = new Random(3);
+		List<AirportData> allAirports = new ArrayList<>();
+		for (int i = 0; i < 20000; i++)
+		{
+			AirportData airportData = new AirportData("A" + i, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+			allAirports.add(airportData);
+			airportDatabase.addAirport(airportData);
+		}
+		/* Out of range coordinates are never accepted without the exact check */
+		AirportData outlier = new AirportData("OUT", 100, 0);
+		allAirports.add(outlier);
+		airportDatabase.addAirport(outlier);
+
+		double[] distances = {5000, 15000, Calculations.MAX_DISTANCE, 50000};
+		for (double distance : distances)
+		{
+			AirportData center = allAirports.get(random.nextInt(allAirports.size() - 1));
+			Set<AirportData> airportsAround = new HashSet<>(airportDatabase.getAirportsAround(center, distance));
+			int expectedSize = 0;
+			for (AirportData ap : allAirports)
+				if (getDistance(center, ap) <= distance)
+				{
+					expectedSize++;
+					if (!airportsAround.contains(ap))
+						fail("Airport " + ap + " should be in " + distance + " km distance from " + center);
+				}
+			assertEquals(expectedSize, airportsAround.size());
+		}
+	}
+
+	/**
+	 * Test box and polygon search give the same results as checking all the airports, including boxes and polygons
+	 * crossing the antimeridian
+	 */
+	@Test
+	public void testRegionSearchMatchesFullScan()
+	{
+		testRegionSearchMatchesFullScan(new AirportDatabaseMemory());
+		testRegionSearchMatchesFullScan(new AirportDatabaseKdTree());
+	}
+
+	/**
+	 * Test search during bulk load, while the index is rebuilt and after that gives the same results as checking all
+	 * the airports
+	 */
+	@Test
+	public void testBulkLoadMatchesFullScan()
+	{
+		testBulkLoadMatchesFullScan(new AirportDatabaseMemory());
+		testBulkLoadMatchesFullScan(new AirportDatabaseKdTree());
+	}
+
+	/**
+	 * Test lookup by code, both for the packed three-letter codes and the other ones
+	 */
+	@Test
+	public void testAirportLookup()
 	{
 		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		String[] codes = {"AAA", "JFK", "ZZZ", "KJFK", "jfk", "A1B", ""};
+		for (String code : codes)
+			airportDatabase.addAirport(new AirportData(code, 10, 10));
+		for (String code : codes)
+			assertEquals(code, airportDatabase.getAirportData(code).getIata());
+		assertEquals(null, airportDatabase.getAirportData("JFL"));
+		assertEquals(null, airportDatabase.getAirportData("JF"));
 
+		AirportData jfk = new AirportData("JFK", 40.639751, -73.778925);
+		airportDatabase.addAirport(jfk);
+		assertSame(jfk, airportDatabase.getAirportData("JFK"));
+		airportDatabase.removeAirport(jfk);
+		airportDatabase.removeAirport(new AirportData("KJFK", 0, 0));
+		assertEquals(null, airportDatabase.getAirportData("JFK"));
+		assertEquals(null, airportDatabase.getAirportData("KJFK"));
+		assertEquals("jfk", airportDatabase.getAirportData("jfk").getIata());
+		assertEquals(codes.length - 2, airportDatabase.getAllAirportIata().size());
+	}
+
+	/**
+	 * Test nearest airports search gives the same order as sorting all the airports by distance
+	 */
+	@Test
+	public void testNearestAirportsMatchesSort()
+	{
+		testNearestAirportsMatchesSort(new AirportDatabaseMemory());
+		testNearestAirportsMatchesSort(new AirportDatabaseKdTree());
+	}
+
+	private void testAirportDatabase(AirportDatabase airportDatabase)
+	{
 		AirportData jfk = new AirportData("JFK", 40.639751, -73.778925);
 		AirportData dme = new AirportData("DME", 55.4086111111, 37.9061111111);
 		AirportData led = new AirportData("LED", 59.8002777778, 30.2625);
@@ -115,4 +249,176 @@ public class AirportDatabaseTest
 						airportsAround.contains(ap));
 		}
 	}
-}
\ No newline at end of file
+
+	private void testNearestAirportsMatchesSort(AirportDatabase airportDatabase)
+	{
+		Random random = new Random(2);
+		List<AirportData> allAirports = createAirports(airportDatabase, random);
+
+		int[] counts = {0, 1, 5, 40, 3000};
+		for (int i = 0; i < 200; i++)
+		{
+			AirportData center = allAirports.get(random.nextInt(allAirports.size()));
+			int count = counts[i % counts.length];
+			/* Every second search skips some airports */
+			Predicate<AirportData> filter = i % 2 == 0 ? x -> true : x -> x.getIata().hashCode() % 3 != 0;
+
+			List<AirportData> expected = new ArrayList<>();
+			for (AirportData ap : allAirports)
+				if (filter.test(ap))
+					expected.add(ap);
+			expected.sort(Comparator.comparingDouble(ap -> getDistance(center, ap)));
+
+			List<AirportData> nearest = airportDatabase.getNearestAirports(center, count, filter);
+			assertEquals(Math.min(count, expected.size()), nearest.size());
+			for (int j = 0; j < nearest.size(); j++)
+				if (getDistance(center, nearest.get(j)) != getDistance(center, expected.get(j)))
+					fail("Airport " + nearest.get(j) + " is not " + j + "-th nearest to " + center);
+		}
+	}
+
+	private void testRegionSearchMatchesFullScan(AirportDatabase airportDatabase)
+	{
+		Random random = new Random(4);
+		List<AirportData> allAirports = createAirports(airportDatabase, random);
+
+		for (int i = 0; i < 200; i++)
+		{
+			double south = random.nextDouble() * 180 - 90;
+			double north = Math.min(90, south + random.nextDouble() * (i % 2 == 0 ? 10 : 90));
+			double west = random.nextDouble() * 360 - 180;
+			double width = random.nextDouble() * (i % 4 < 2 ? 20 : 360);
+			double east = west + width > 180 ? west + width - 360 : west + width;
+
+			GeoBox box = new GeoBox(south, west, north, east);
+			checkRegion(allAirports, airportDatabase.getAirportsInBox(box), box::contains);
+
+			/* Triangle inside the box with one vertex given with longitude out of the usual range */
+			GeoPolygon polygon = new GeoPolygon(new double[][]{{south, west}, {north, west + width / 2 + 360}, {south, east}});
+			checkRegion(allAirports, airportDatabase.getAirportsInPolygon(polygon), polygon::contains);
+		}
+	}
+
+	private void testBulkLoadMatchesFullScan(AirportDatabase airportDatabase)
+	{
+		Random random = new Random(5);
+		/* Airports in the index before bulk load, replaced by the ones with the same iata then */
+		for (int i = 0; i < 500; i++)
+			airportDatabase.addAirport(new AirportData("A" + i, 0, i * 0.1));
+
+		airportDatabase.beginBulkLoad();
+		List<AirportData> allAirports = createAirports(airportDatabase, random);
+		checkSearch(airportDatabase, allAirports, random);
+
+		CompletableFuture<Void> rebuild = airportDatabase.endBulkLoad();
+		/* Airports moved while the index is rebuilt */
+		for (int i = 0; i < 100; i++)
+		{
+			AirportData airportData = allAirports.get(random.nextInt(allAirports.size()));
+			AirportData moved = new AirportData(airportData.getIata(), airportData.getLatitude() / 2, airportData.getLongitude() / 2);
+			allAirports.set(allAirports.indexOf(airportData), moved);
+			airportDatabase.addAirport(moved);
+		}
+		checkSearch(airportDatabase, allAirports, random);
+
+		rebuild.join();
+		checkSearch(airportDatabase, allAirports, random);
+	}
+
+	private void checkSearch(AirportDatabase airportDatabase, List<AirportData> allAirports, Random random)
+	{
+		double[] distances = {0, 150, 700};
+		for (int i = 0; i < 30; i++)
+		{
+			AirportData center = allAirports.get(random.nextInt(allAirports.size()));
+			double distance = distances[i % distances.length];
+			checkRegion(allAirports, airportDatabase.getAirportsAround(center, distance), ap -> getDistance(center, ap) <= distance);
+
+			GeoBox box = new GeoBox(center.getLatitude() - 5, center.getLongitude() - 5, center.getLatitude() + 5, center.getLongitude() + 5);
+			checkRegion(allAirports, airportDatabase.getAirportsInBox(box), box::contains);
+
+			List<AirportData> expected = new ArrayList<>(allAirports);
+			expected.sort(Comparator.comparingDouble(ap -> getDistance(center, ap)));
+			List<AirportData> nearest = airportDatabase.getNearestAirports(center, 10, x -> true);
+			assertEquals(10, nearest.size());
+			for (int j = 0; j < nearest.size(); j++)
+				assertEquals(getDistance(center, expected.get(j)), getDistance(center, nearest.get(j)), 0);
+		}
+	}
+
+	private static void checkRegion(List<AirportData> allAirports, List<AirportData> airportsInRegion, Predicate<AirportData> contains)
+	{
+		Set<AirportData> found = new HashSet<>(airportsInRegion);
+		int expectedSize = 0;
+		for (AirportData ap : allAirports)
+			if (contains.test(ap))
+			{
+				expectedSize++;
+				if (!found.contains(ap))
+					fail("Airport " + ap + " should be in the region");
+			}
+		assertEquals(expectedSize, found.size());
+	}
+
+	private static double getDistance(AirportData from, AirportData to)
+	{
+		return Calculations.calculateDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+	}
+
+	private void testAirportsAroundMatchesFullScan(AirportDatabase airportDatabase)
+	{
+		Random random = new Random(1);
+		List<AirportData> allAirports = createAirports(airportDatabase, random);
+
+		double[] distances = {0, 10, 150, 700, 2500, 9000, 19000, 21000};
+		for (int i = 0; i < 300; i++)
+		{
+			AirportData center = allAirports.get(random.nextInt(allAirports.size()));
+			double distance = distances[i % distances.length];
+
+			Set<AirportData> airportsAround = new HashSet<>(airportDatabase.getAirportsAround(center, distance));
+			int expectedSize = 0;
+			for (AirportData ap : allAirports)
+				if (getDistance(center, ap) <= distance)
+				{
+					expectedSize++;
+					if (!airportsAround.contains(ap))
+						fail("Airport " + ap + " should be in " + distance + " km distance from " + center);
+				}
+			assertEquals(expectedSize, airportsAround.size());
+		}
+	}
+
+	/* Airports spread randomly over the globe, with extra ones near the poles and the antimeridian, some removed */
+	private static List<AirportData> createAirports(AirportDatabase airportDatabase, Random random)
+	{
+		List<AirportData> allAirports = new ArrayList<>();
+
+		for (int i = 0; i < 3000; i++)
+		{
+			double latitude, longitude;
+			switch (i % 3)
+			{
+				case 0:
+					latitude = random.nextDouble() * 180 - 90;
+					longitude = random.nextDouble() * 360 - 180;
+					break;
+				case 1:
+					latitude = (random.nextBoolean() ? 1 : -1) * (85 + random.nextDouble() * 5);
+					longitude = random.nextDouble() * 360 - 180;
+					break;
+				default:
+					latitude = random.nextDouble() * 180 - 90;
+					longitude = (random.nextBoolean() ? 1 : -1) * (175 + random.nextDouble() * 5);
+			}
+			AirportData airportData = new AirportData("A" + i, latitude, longitude);
+			allAirports.add(airportData);
+			airportDatabase.addAirport(airportData);
+		}
+
+		/* Removed airports should disappear from the search results */
+		for (int i = 0; i < 500; i++)
+			airportDatabase.removeAirport(allAirports.remove(random.nextInt(allAirports.size())));
+		return allAirports;
+	}
+}
@@ -0,0 +1,123 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationMemory;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointBuilder;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.IngestSummary;
+import com.crossover.trial.weather.data.WeatherRecord;
+import com.crossover.trial.weather.data.WeatherRecordStatus;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing weather updates of the airport removed between its lookup and the update
+ */
+public class AirportRemovalTest extends ConfiguredJerseyTest
+{
+	/* Airport removed by the storage on its update */
+	private static final String REMOVED_IATA = "JFK";
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private DataPoint dataPoint;
+
+	@Before
+	public void init()
+	{
+		super.init();
+		createTestAirports();
+		dataPoint = new DataPointBuilder().withCount(10).withFirst(10).withSecond(20).withThird(30).withMean(22).build();
+	}
+
+	/* Storage removes the airport right before the update, as if it was deleted concurrently */
+	@Override
+	protected AirportAtmosphericInformation createAtmosphericInformation()
+	{
+		return new AirportAtmosphericInformationMemory()
+		{
+			@Override
+			public void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint)
+			{
+				removeAirport(airportData);
+				super.updateDataPoint(airportData, type, dataPoint);
+			}
+
+			@Override
+			public void updateDataPoints(AirportData airportData, AtmosphericInformation dataPoints)
+			{
+				removeAirport(airportData);
+				super.updateDataPoints(airportData, dataPoints);
+			}
+		};
+	}
+
+	/**
+	 * Single update of the removed airport fails as for the absent airport
+	 */
+	@Test
+	public void testUpdate()
+	{
+		exception.expect(BadRequestException.class);
+		exception.expectMessage(String.format("Airport not found: '%s'", REMOVED_IATA));
+		collectClientHelper.weatherPost(REMOVED_IATA, DataPointType.WIND, dataPoint);
+	}
+
+	/**
+	 * Records of the removed airport fail in the batch, the other airports are updated
+	 */
+	@Test
+	public void testBatchUpdate()
+	{
+		List<WeatherRecordStatus> statuses = collectClientHelper.weatherPostBatch(Arrays.asList(
+				new WeatherRecord(REMOVED_IATA, "wind", dataPoint),
+				new WeatherRecord("BOS", "wind", dataPoint),
+				new WeatherRecord(REMOVED_IATA, "humidity", dataPoint)));
+
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), statuses.get(0).getStatus());
+		assertEquals(String.format("Airport not found: '%s'", REMOVED_IATA), statuses.get(0).getMessage());
+		assertEquals(Response.Status.OK.getStatusCode(), statuses.get(1).getStatus());
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), statuses.get(2).getStatus());
+		assertEquals(dataPoint, queryClientHelper.weatherGet("BOS", 0).get(0).getWind());
+		assertEquals(1, queryClientHelper.historyGet("BOS", DataPointType.WIND, Long.MIN_VALUE, Long.MAX_VALUE).size());
+	}
+
+	/**
+	 * Records of the removed airport are rejected in the stream, the stream goes on
+	 */
+	@Test
+	public void testStreamUpdate()
+	{
+		IngestSummary summary = collectClientHelper.weatherPostStream(Arrays.asList(
+				new WeatherRecord(REMOVED_IATA, "wind", dataPoint),
+				new WeatherRecord("BOS", "wind", dataPoint)));
+
+		assertTrue(summary.isComplete());
+		assertEquals(1, summary.getAccepted());
+		assertEquals(1, summary.getRejected());
+		assertEquals(String.format("record 1: Airport not found: '%s'", REMOVED_IATA), summary.getErrors().get(0));
+		assertEquals(dataPoint, queryClientHelper.weatherGet("BOS", 0).get(0).getWind());
+		assertNull(airportDatabase.getAirportData(REMOVED_IATA));
+	}
+
+	private void removeAirport(AirportData airportData)
+	{
+		if (airportData.getIata().equals(REMOVED_IATA))
+			airportDatabase.removeAirport(airportData);
+	}
+}
@@ -0,0 +1,111 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationMemory;
+import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.airport.AirportDatabaseMemory;
+import com.crossover.trial.weather.client.BinaryWeatherWriter;
+import com.crossover.trial.weather.common.IataCodec;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointBuilder;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.history.WeatherHistory;
+import com.crossover.trial.weather.history.WeatherHistoryMemory;
+import com.crossover.trial.weather.ingest.BinaryIngestServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Testing weather collection with binary records
+ */
+public class BinaryIngestTest
+{
+	private static final long TIMEOUT = 10000;
+
+	private AirportDatabase airportDatabase;
+	private AirportAtmosphericInformation airportAtmosphericInformation;
+	private WeatherHistory weatherHistory;
+	private BinaryIngestServer server;
+
+	@Before
+	public void init() throws IOException
+	{
+		airportDatabase = new AirportDatabaseMemory();
+		airportDatabase.addAirport(new AirportData("BOS", 42.364347, -71.005181));
+		airportDatabase.addAirport(new AirportData("JFK", 40.639751, -73.778925));
+		airportAtmosphericInformation = new AirportAtmosphericInformationMemory();
+		weatherHistory = new WeatherHistoryMemory();
+		server = new BinaryIngestServer("localhost", 0, airportDatabase, airportAtmosphericInformation, weatherHistory);
+	}
+
+	@After
+	public void close() throws IOException
+	{
+		server.close();
+	}
+
+	/**
+	 * Records are applied in their order, invalid ones are skipped
+	 */
+	@Test
+	public void testWrite() throws IOException, InterruptedException
+	{
+		int number = 10000;
+		try (BinaryWeatherWriter writer = new BinaryWeatherWriter("localhost", server.getPort()))
+		{
+			for (int i = 0; i < number; i++)
+				writer.write(i % 2 == 0 ? "BOS" : "JFK", DataPointType.HUMIDITY, new DataPointBuilder().withMean(i % 100).withCount(i).build());
+			writer.write("LGA", DataPointType.WIND, new DataPointBuilder().withMean(10).build());
+			writer.write("BOS", DataPointType.HUMIDITY, new DataPointBuilder().withMean(200).build());
+		}
+		waitFor(number + 2);
+
+		assertEquals(number, server.getAccepted());
+		assertEquals(2, server.getRejected());
+		DataPoint humidity = airportAtmosphericInformation.getAtmosphericInformation(airportDatabase.getAirportData("JFK")).getHumidity();
+		assertEquals(99, humidity.getMean(), ConfiguredJerseyTest.DELTA_FOR_COMPARE_DOUBLE);
+		assertEquals(number - 1, humidity.getCount());
+		assertEquals(Math.min(number / 2, WeatherHistoryMemory.DEFAULT_CAPACITY), weatherHistory.getHistory(airportDatabase.getAirportData("BOS"), DataPointType.HUMIDITY, Long.MIN_VALUE, Long.MAX_VALUE).size());
+	}
+
+	/**
+	 * Record split between the reads is applied when its last part arrives, unknown type is skipped
+	 */
+	@Test
+	public void testSplitRecord() throws IOException, InterruptedException
+	{
+		ByteBuffer records = ByteBuffer.allocate(2 * BinaryIngestServer.RECORD_SIZE);
+		records.putInt(IataCodec.encode("BOS")).putInt(DataPointType.WIND.ordinal()).putDouble(5).putInt(1).putInt(2).putInt(3).putInt(4);
+		records.putInt(IataCodec.encode("BOS")).putInt(DataPointType.values().length).putDouble(5).putInt(1).putInt(2).putInt(3).putInt(4);
+
+		try (Socket socket = new Socket("localhost", server.getPort()))
+		{
+			OutputStream output = socket.getOutputStream();
+			output.write(records.array(), 0, 10);
+			output.flush();
+			Thread.sleep(100);
+			output.write(records.array(), 10, records.capacity() - 10);
+		}
+		waitFor(2);
+
+		assertEquals(1, server.getAccepted());
+		assertEquals(new DataPointBuilder().withMean(5).withFirst(1).withSecond(2).withThird(3).withCount(4).build(),
+				airportAtmosphericInformation.getAtmosphericInformation(airportDatabase.getAirportData("BOS")).getWind());
+	}
+
+	private void waitFor(long records) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (server.getAccepted() + server.getRejected() < records && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+	}
+}
@@ -7,6 +7,10 @@ import com.crossover.trial.weather.airport.AirportDatabaseMemory;
 import com.crossover.trial.weather.client.CollectClientHelper;
 import com.crossover.trial.weather.client.QueryClientHelper;
 import com.crossover.trial.weather.common.WeatherGsonFactory;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.history.WeatherHistory;
+import com.crossover.trial.weather.history.WeatherHistoryMemory;
+import com.crossover.trial.weather.ingest.IngestPipeline;
 import com.crossover.trial.weather.performance.PerformanceMonitor;
 import com.crossover.trial.weather.performance.PerformanceMonitorMemory;
 import com.google.gson.Gson;
@@ -24,10 +28,15 @@ public class ConfiguredJerseyTest extends JerseyTest
 {
 	public static final double DELTA_FOR_COMPARE_DOUBLE = 1e-15;
 
+	/* Airport database of the storage tests, which need registered airports only */
+	private static final AirportDatabase TEST_AIRPORT_DATABASE = new AirportDatabaseMemory();
+
 	/* Airport information provider */
 	protected AirportDatabase airportDatabase;
 	/* Atmospheric information provider */
 	protected AirportAtmosphericInformation airportAtmosphericInformation;
+	/* History of the collected data points */
+	protected WeatherHistory weatherHistory;
 	protected PerformanceMonitor performanceMonitor;
 	/* High-level interfaces for client requests */
 	protected QueryClientHelper queryClientHelper;
@@ -51,15 +60,51 @@ public class ConfiguredJerseyTest extends JerseyTest
 			protected void configure()
 			{
 				bind(airportDatabase = new AirportDatabaseMemory()).to(AirportDatabase.class);
-				bind(airportAtmosphericInformation = new AirportAtmosphericInformationMemory()).to(AirportAtmosphericInformation.class);
+				bind(airportAtmosphericInformation = createAtmosphericInformation()).to(AirportAtmosphericInformation.class);
+				bind(weatherHistory = new WeatherHistoryMemory()).to(WeatherHistory.class);
 				bind(performanceMonitor = new PerformanceMonitorMemory()).to(PerformanceMonitor.class);
 				bind(WeatherGsonFactory.createGson()).to(Gson.class);
+				IngestPipeline ingestPipeline = createIngestPipeline();
+				if (ingestPipeline != null)
+					bind(ingestPipeline).to(IngestPipeline.class);
 			}
 		});
 		resourceConfig.packages(true, "com.crossover.trial.weather");
 		return resourceConfig;
 	}
 
+	/**
+	 * Create atmospheric information storage of the endpoints, called when the airport database is created already
+	 *
+	 * @return storage
+	 */
+	protected AirportAtmosphericInformation createAtmosphericInformation()
+	{
+		return new AirportAtmosphericInformationMemory();
+	}
+
+	/**
+	 * Create pipeline to apply single weather updates asynchronously, called when the storages are created already
+	 *
+	 * @return pipeline, or null to apply updates synchronously
+	 */
+	protected IngestPipeline createIngestPipeline()
+	{
+		return null;
+	}
+
+	/**
+	 * Register airport in the shared airport database, as storages keep information of registered airports only
+	 *
+	 * @param airportData airport
+	 * @return the same airport
+	 */
+	public static AirportData registerAirport(AirportData airportData)
+	{
+		TEST_AIRPORT_DATABASE.addAirport(airportData);
+		return airportData;
+	}
+
 	protected void createTestAirports()
 	{
 		collectClientHelper.airportPost("BOS", 42.364347, -71.005181);
@@ -6,6 +6,9 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 /**
  * After object is requested from storage class and modified, this should not effect storage.
@@ -23,6 +26,7 @@ public class ImmutableStorageTest extends ConfiguredJerseyTest
 	public void testGetThenModify()
 	{
 		AirportData airportData = RandomDataFactory.createRandomAirportData();
+		airportDatabase.addAirport(airportData);
 		DataPoint dataPointInitial = RandomDataFactory.createDataPoint(DataPointType.CLOUDCOVER, 1);
 		AtmosphericInformation atmosphericInformation = new AtmosphericInformationHolder();
 		atmosphericInformation.setCloudCover(dataPointInitial);
@@ -45,9 +49,50 @@ public class ImmutableStorageTest extends ConfiguredJerseyTest
 		atmosphericInformationFromDB = airportAtmosphericInformation.getAtmosphericInformation(airportData);
 		assertEquals(dataPointInitial, atmosphericInformationFromDB.getCloudCover());
 
-		/* Now we change received atmosphericInformation and this should not effect storage too */
-		atmosphericInformationFromDB.setCloudCover(dataPointNew);
-		AtmosphericInformation atmosphericInformationFromDBNew = airportAtmosphericInformation.getAtmosphericInformation(airportData);
-		assertEquals(dataPointInitial, atmosphericInformationFromDBNew.getCloudCover());
+		/* Now we try to change received atmosphericInformation, it is immutable and storage is not effected */
+		try
+		{
+			atmosphericInformationFromDB.setCloudCover(dataPointNew);
+			fail("Atmospheric information received from storage should not be modifiable");
+		} catch (UnsupportedOperationException e)
+		{
+			AtmosphericInformation atmosphericInformationFromDBNew = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+			assertEquals(dataPointInitial, atmosphericInformationFromDBNew.getCloudCover());
+		}
+	}
+
+	/**
+	 * Snapshot update creates new object, stored one is returned without copying on every request
+	 */
+	@Test
+	public void testSnapshotUpdate()
+	{
+		AirportData airportData = RandomDataFactory.createRandomAirportData();
+		airportDatabase.addAirport(airportData);
+		DataPoint dataPoint = RandomDataFactory.createDataPoint(DataPointType.WIND, 1);
+		AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.EMPTY.with(DataPointType.WIND, dataPoint);
+		assertNull(AtmosphericInformationSnapshot.EMPTY.getWind());
+		assertEquals(dataPoint, snapshot.getWind());
+
+		airportAtmosphericInformation.updateAtmosphericInformation(airportData, snapshot);
+		assertEquals(dataPoint, airportAtmosphericInformation.getAtmosphericInformation(airportData).getWind());
+		assertSame(airportAtmosphericInformation.getAtmosphericInformation(airportData), airportAtmosphericInformation.getAtmosphericInformation(airportData));
+	}
+
+	/**
+	 * Snapshot built at once holds every data point under its type
+	 */
+	@Test
+	public void testSnapshotOfDataPoints()
+	{
+		DataPoint[] dataPoints = new DataPoint[DataPointType.values().length];
+		for (DataPointType type : DataPointType.values())
+			dataPoints[type.ordinal()] = RandomDataFactory.createDataPoint(type, type.ordinal());
+		AtmosphericInformationSnapshot snapshot = AtmosphericInformationSnapshot.of(dataPoints);
+
+		for (DataPointType type : DataPointType.values())
+			assertSame(dataPoints[type.ordinal()], snapshot.get(type));
+		assertSame(dataPoints[DataPointType.WIND.ordinal()], snapshot.getWind());
+		assertSame(dataPoints[DataPointType.CLOUDCOVER.ordinal()], snapshot.getCloudCover());
 	}
 }
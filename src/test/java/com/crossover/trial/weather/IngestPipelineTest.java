@@ -0,0 +1,195 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationMemory;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.CollectMetrics;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointBuilder;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.IngestSummary;
+import com.crossover.trial.weather.data.WeatherRecord;
+import com.crossover.trial.weather.data.WeatherRecordStatus;
+import com.crossover.trial.weather.ingest.IngestPipeline;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing asynchronous weather updates
+ */
+public class IngestPipelineTest extends ConfiguredJerseyTest
+{
+	private static final int QUEUE_CAPACITY = 4;
+
+	private static final long TIMEOUT = 10000;
+
+	/* Permits for the shard to apply updates, so it can be held busy */
+	private final Semaphore permits = new Semaphore(0);
+
+	private IngestPipeline ingestPipeline;
+
+	private DataPoint dataPoint;
+
+	@Before
+	public void init()
+	{
+		super.init();
+		createTestAirports();
+		dataPoint = new DataPointBuilder().withCount(10).withFirst(10).withSecond(20).withThird(30).withMean(22).build();
+	}
+
+	@After
+	public void close()
+	{
+		permits.release(Integer.MAX_VALUE / 2);
+		ingestPipeline.close();
+	}
+
+	/* Single shard, which applies updates to the storage of the endpoints when it gets permits */
+	@Override
+	protected IngestPipeline createIngestPipeline()
+	{
+		ingestPipeline = new IngestPipeline(new AirportAtmosphericInformationMemory()
+		{
+			@Override
+			public void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint)
+			{
+				permits.acquireUninterruptibly();
+				airportAtmosphericInformation.updateDataPoint(airportData, type, dataPoint);
+			}
+		}, weatherHistory, 1, QUEUE_CAPACITY);
+		return ingestPipeline;
+	}
+
+	/**
+	 * Update is accepted at once and applied later
+	 */
+	@Test
+	public void testAsyncUpdate() throws InterruptedException
+	{
+		assertEquals(Response.Status.ACCEPTED.getStatusCode(), collectClientHelper.weatherPost("BOS", DataPointType.WIND, dataPoint));
+		CollectMetrics metrics = collectClientHelper.metricsGet();
+		assertTrue(metrics.isAsync());
+		assertEquals(1, metrics.getQueueDepths().length);
+
+		permits.release();
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		/* Airport without atmospheric information is queried as null */
+		while (queryClientHelper.weatherGet("BOS", 0).get(0) == null && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertEquals(dataPoint, queryClientHelper.weatherGet("BOS", 0).get(0).getWind());
+		assertEquals(1, queryClientHelper.historyGet("BOS", DataPointType.WIND, Long.MIN_VALUE, Long.MAX_VALUE).size());
+	}
+
+	/**
+	 * Update is refused with Retry-After when the queue is full, invalid update is refused at once
+	 */
+	@Test
+	public void testQueueFull()
+	{
+		/* One update may be taken by the shard, the others fill the queue */
+		Response response = null;
+		for (int i = 0; i < QUEUE_CAPACITY + 2; i++)
+		{
+			response = target("/collect/weather/JFK/wind").request().post(Entity.entity(dataPoint, MediaType.APPLICATION_JSON));
+			response.close();
+		}
+		assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+		assertNotNull(response.getHeaderString(HttpHeaders.RETRY_AFTER));
+		assertTrue(collectClientHelper.metricsGet().getQueueDepths()[0] >= QUEUE_CAPACITY - 1);
+
+		response = target("/collect/weather/XYZP/wind").request().post(Entity.entity(dataPoint, MediaType.APPLICATION_JSON));
+		response.close();
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+	}
+
+	/**
+	 * Batch is queued in its order, once a record of the airport is refused, the later ones of this airport are
+	 * refused too
+	 */
+	@Test
+	public void testAsyncBatch() throws InterruptedException
+	{
+		List<WeatherRecord> records = new ArrayList<>();
+		records.add(new WeatherRecord("XYZP", "wind", dataPoint));
+		for (int i = 0; i < QUEUE_CAPACITY + 3; i++)
+			records.add(new WeatherRecord("JFK", "humidity", new DataPointBuilder(dataPoint).withMean(i).build()));
+
+		Response response = target("/collect/weather/batch").request().post(Entity.entity(records, MediaType.APPLICATION_JSON));
+		List<WeatherRecordStatus> statuses = new Gson().fromJson(response.readEntity(String.class),
+				new TypeToken<List<WeatherRecordStatus>>()
+				{
+				}.getType());
+		response.close();
+		assertEquals(Response.Status.ACCEPTED.getStatusCode(), response.getStatus());
+		assertNotNull(response.getHeaderString(HttpHeaders.RETRY_AFTER));
+
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), statuses.get(0).getStatus());
+		int accepted = 0;
+		while (statuses.get(accepted + 1).getStatus() == Response.Status.ACCEPTED.getStatusCode())
+			accepted++;
+		/* One update may be taken by the shard, the others fill the queue */
+		assertTrue(accepted >= QUEUE_CAPACITY);
+		for (WeatherRecordStatus status : statuses.subList(accepted + 1, statuses.size()))
+			assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), status.getStatus());
+
+		permits.release(accepted);
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (weatherHistory.getHistory(airportDatabase.getAirportData("JFK"), DataPointType.HUMIDITY, Long.MIN_VALUE, Long.MAX_VALUE).size() < accepted
+				&& System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertEquals(accepted - 1, queryClientHelper.weatherGet("JFK", 0).get(0).getHumidity().getMean(), DELTA_FOR_COMPARE_DOUBLE);
+	}
+
+	/**
+	 * Stream waits for the space in the queue, and is stopped at the record refused when the queue stays full
+	 */
+	@Test
+	public void testAsyncStream() throws InterruptedException
+	{
+		List<WeatherRecord> records = new ArrayList<>();
+		for (int i = 0; i < QUEUE_CAPACITY + 3; i++)
+			records.add(new WeatherRecord("JFK", "humidity", new DataPointBuilder(dataPoint).withMean(i).build()));
+
+		StringBuilder stream = new StringBuilder();
+		Gson gson = new Gson();
+		for (WeatherRecord record : records)
+			stream.append(gson.toJson(record)).append('\n');
+		Response response = target("/collect/weather/stream").request().post(Entity.entity(stream.toString(), MediaType.APPLICATION_OCTET_STREAM));
+		IngestSummary summary = gson.fromJson(response.readEntity(String.class), IngestSummary.class);
+		response.close();
+		assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+		assertNotNull(response.getHeaderString(HttpHeaders.RETRY_AFTER));
+		assertFalse(summary.isComplete());
+		assertTrue(summary.getAccepted() >= QUEUE_CAPACITY);
+		assertEquals(1, summary.getRejected());
+		assertEquals(summary.getAccepted() + 1, summary.getReceived());
+		long queued = summary.getAccepted();
+
+		/* Released shard makes space for the stream, which is queued in full */
+		permits.release(Integer.MAX_VALUE / 2);
+		summary = collectClientHelper.weatherPostStream(records);
+		assertTrue(summary.isComplete());
+		assertEquals(records.size(), summary.getAccepted());
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (weatherHistory.getHistory(airportDatabase.getAirportData("JFK"), DataPointType.HUMIDITY, Long.MIN_VALUE, Long.MAX_VALUE).size() <
+				queued + records.size() && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertEquals(QUEUE_CAPACITY + 2, queryClientHelper.weatherGet("JFK", 0).get(0).getHumidity().getMean(), DELTA_FOR_COMPARE_DOUBLE);
+	}
+}
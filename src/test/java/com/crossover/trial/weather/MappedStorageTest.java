@@ -0,0 +1,98 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationMapped;
+import com.crossover.trial.weather.airport.AirportDatabaseMapped;
+import com.crossover.trial.weather.common.RandomDataFactory;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Testing airports and atmospheric information restored from memory-mapped files
+ */
+public class MappedStorageTest
+{
+	private static final long MS_IN_ONE_DAY = 24 * 60 * 60 * 1000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Airports are restored with the same ordinals, along with their atmospheric information
+	 */
+	@Test
+	public void testRestart() throws IOException
+	{
+		Path directory = folder.getRoot().toPath();
+		AirportDatabaseMapped airportDatabase = new AirportDatabaseMapped(directory);
+		AirportAtmosphericInformationMapped airportAtmosphericInformation = new AirportAtmosphericInformationMapped(directory, airportDatabase);
+
+		/* More than a single chunk of records */
+		List<AirportData> airports = new ArrayList<>();
+		for (int i = 0; i < 1500; i++)
+		{
+			AirportData airportData = new AirportData(String.format("A%03d", i), i * 0.1 - 80, i * 0.2 - 150);
+			airportDatabase.addAirport(airportData);
+			airports.add(airportData);
+			airportAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, i));
+		}
+		AirportData removed = airports.get(10);
+		airportAtmosphericInformation.clearAtmosphericInformation(removed);
+		airportDatabase.removeAirport(removed);
+		airportAtmosphericInformation.clearAtmosphericInformation(airports.get(20));
+		airportAtmosphericInformation.close();
+		airportDatabase.close();
+
+		airportDatabase = new AirportDatabaseMapped(directory);
+		airportAtmosphericInformation = new AirportAtmosphericInformationMapped(directory, airportDatabase);
+		assertEquals(airports.size() - 1, airportDatabase.getAllAirportIata().size());
+		assertNull(airportDatabase.getAirportData(removed.getIata()));
+		assertEquals(airports.size() - 2, airportAtmosphericInformation.size(MS_IN_ONE_DAY));
+		for (int i = 0; i < airports.size(); i++)
+		{
+			if (i == 10)
+				continue;
+
+			AirportData airportData = airportDatabase.getAirportData(airports.get(i).getIata());
+			assertEquals(i, airportData.ordinal());
+			assertEquals(airports.get(i).getLatitude(), airportData.getLatitude(), 0);
+			assertEquals(airports.get(i).getLongitude(), airportData.getLongitude(), 0);
+			AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportData);
+			if (i == 20)
+				assertNull(atmosphericInformation);
+			else
+				assertEquals(RandomDataFactory.createDataPoint(DataPointType.WIND, i), atmosphericInformation.getWind());
+		}
+		assertEquals(1, airportDatabase.getAirportsAround(airportDatabase.getAirportData("A000"), 1).size());
+
+		/* Ordinal of the removed airport is reused, without its atmospheric information */
+		AirportData added = new AirportData("NEW", 0, 0);
+		airportDatabase.addAirport(added);
+		assertEquals(10, added.ordinal());
+		assertNull(airportAtmosphericInformation.getAtmosphericInformation(added));
+		DataPoint pressure = RandomDataFactory.createDataPoint(DataPointType.PRESSURE, 1);
+		airportAtmosphericInformation.updateDataPoint(added, DataPointType.PRESSURE, pressure);
+		airportAtmosphericInformation.close();
+		airportDatabase.close();
+
+		airportDatabase = new AirportDatabaseMapped(directory);
+		airportAtmosphericInformation = new AirportAtmosphericInformationMapped(directory, airportDatabase);
+		AtmosphericInformation atmosphericInformation = airportAtmosphericInformation.getAtmosphericInformation(airportDatabase.getAirportData("NEW"));
+		assertEquals(pressure, atmosphericInformation.getPressure());
+		assertNull(atmosphericInformation.getWind());
+		airportAtmosphericInformation.close();
+		airportDatabase.close();
+	}
+}
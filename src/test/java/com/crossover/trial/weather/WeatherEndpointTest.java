@@ -2,6 +2,7 @@ package com.crossover.trial.weather;
 
 import com.crossover.trial.weather.common.RandomDataFactory;
 import com.crossover.trial.weather.data.*;
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
 import org.junit.Before;
@@ -13,9 +14,12 @@ import javax.ws.rs.BadRequestException;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -80,6 +84,210 @@ public class WeatherEndpointTest extends ConfiguredJerseyTest
 		assertEquals(3, ais.size());
 	}
 
+	/**
+	 * Test /query/weather/point, center doesn't have to be an airport
+	 */
+	@Test
+	public void testQueryWeatherPoint()
+	{
+		collectClientHelper.weatherPost("JFK", DataPointType.WIND, _dp);
+		collectClientHelper.weatherPost("EWR", DataPointType.WIND, _dp);
+
+		assertEquals(2, queryClientHelper.weatherPointGet(40.7, -73.9, 200).size());
+		assertEquals(3, queryClientHelper.weatherPointGet(40.7, -73.9, 400).size());
+		assertEquals(0, queryClientHelper.weatherPointGet(0, 0, 400).size());
+	}
+
+	/**
+	 * Test /query/weather/point fail due to invalid coordinates
+	 */
+	@Test
+	public void testQueryWeatherPointFail()
+	{
+		exception.expect(BadRequestException.class);
+		queryClientHelper.weatherPointGet(100, -73.9, 200);
+	}
+
+	/**
+	 * Test /query/weather/box and /query/weather/polygon
+	 */
+	@Test
+	public void testQueryWeatherRegion()
+	{
+		collectClientHelper.weatherPost("JFK", DataPointType.WIND, _dp);
+		collectClientHelper.weatherPost("EWR", DataPointType.WIND, _dp);
+
+		/* New York area, BOS is to the north-east */
+		assertEquals(2, queryClientHelper.weatherBoxGet(40, -75, 41, -73).size());
+		assertEquals(3, queryClientHelper.weatherBoxGet(40, -75, 43, -70).size());
+		assertEquals(1, queryClientHelper.weatherBoxGet(40, -73, 43, -75).size());
+
+		/* Strip from EWR to BOS, passing by JFK */
+		assertEquals(2, queryClientHelper.weatherPolygonPost(new double[][]{{40.5, -74.5}, {41, -74.5}, {42.8, -70.8}, {42, -70.8}}).size());
+	}
+
+	/**
+	 * Test /query/weather/polygon fail due to invalid polygon
+	 */
+	@Test
+	public void testQueryWeatherPolygonFail()
+	{
+		exception.expect(BadRequestException.class);
+		queryClientHelper.weatherPolygonPost(new double[][]{{40, -75}, {41, -73.9}});
+	}
+
+	/**
+	 * Test /query/nearest with and without skipping airports with no weather
+	 */
+	@Test
+	public void testQueryNearest()
+	{
+		collectClientHelper.weatherPost("JFK", DataPointType.WIND, _dp);
+		DataPoint ewrDp = new DataPointBuilder(_dp).withMean(40).build();
+		collectClientHelper.weatherPost("EWR", DataPointType.WIND, ewrDp);
+
+		/* LGA is the second nearest to JFK, but has no weather */
+		List<AtmosphericInformation> ais = queryClientHelper.nearestGet("JFK", 2, false);
+		assertEquals(1, ais.size());
+		assertEquals(_dp, ais.get(0).getWind());
+
+		ais = queryClientHelper.nearestGet("JFK", 3, true);
+		assertEquals(3, ais.size());
+		assertEquals(_dp, ais.get(0).getWind());
+		assertEquals(ewrDp, ais.get(1).getWind());
+		assertEquals(_dp, ais.get(2).getWind());
+	}
+
+	/**
+	 * Test /query/history: collected data points are kept in order and filtered by time
+	 */
+	@Test
+	public void testQueryHistory()
+	{
+		long start = System.currentTimeMillis();
+		DataPoint humidity = new DataPointBuilder(_dp).withMean(40).build();
+		collectClientHelper.weatherPost("JFK", DataPointType.HUMIDITY, _dp);
+		collectClientHelper.weatherPost("JFK", DataPointType.HUMIDITY, humidity);
+		long end = System.currentTimeMillis();
+
+		List<TimedDataPoint> history = queryClientHelper.historyGet("JFK", DataPointType.HUMIDITY, start, end);
+		assertEquals(2, history.size());
+		assertEquals(_dp, history.get(0).getDataPoint());
+		assertEquals(humidity, history.get(1).getDataPoint());
+		assertTrue(history.get(0).getTime() <= history.get(1).getTime());
+
+		assertEquals(0, queryClientHelper.historyGet("JFK", DataPointType.WIND, start, end).size());
+		assertEquals(0, queryClientHelper.historyGet("JFK", DataPointType.HUMIDITY, end + 1, end + 1000).size());
+	}
+
+	@Test
+	public void testQueryHistoryFail()
+	{
+		Response response = target().path("query/history/JFK/snow").request().get();
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+		response.close();
+
+		response = target().path("query/history/JFK/wind").queryParam("from", "yesterday").request().get();
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+		response.close();
+	}
+
+	/**
+	 * Test /query/rollup: collected data points are returned as is while they fit, rolled up otherwise
+	 */
+	@Test
+	public void testQueryRollup()
+	{
+		long start = System.currentTimeMillis();
+		DataPoint humidity = new DataPointBuilder(_dp).withMean(40).build();
+		collectClientHelper.weatherPost("JFK", DataPointType.HUMIDITY, _dp);
+		collectClientHelper.weatherPost("JFK", DataPointType.HUMIDITY, humidity);
+		long end = System.currentTimeMillis();
+
+		DownsampledHistory history = queryClientHelper.rollupGet("JFK", DataPointType.HUMIDITY, start, end, 10);
+		assertEquals(0, history.getResolution());
+		assertEquals(2, history.getPoints().size());
+		assertEquals(40, history.getPoints().get(1).getMean(), 0.0);
+
+		history = queryClientHelper.rollupGet("JFK", DataPointType.HUMIDITY, start, end, 1);
+		assertTrue(history.getResolution() > 0);
+		assertEquals(1, history.getPoints().size());
+		assertEquals(40, history.getPoints().get(0).getMax(), 0.0);
+
+		Response response = target().path("query/rollup/JFK/humidity").queryParam("maxPoints", 0).request().get();
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+		response.close();
+	}
+
+	/**
+	 * Test /collect/weather/batch: valid records are stored with the other data points left as is, invalid ones get
+	 * the same status as single updates
+	 */
+	@Test
+	public void testCollectWeatherBatch()
+	{
+		DataPoint humidity = new DataPointBuilder(_dp).withMean(40).build();
+		DataPoint temperature = new DataPointBuilder(_dp).withMean(-10).build();
+		List<WeatherRecordStatus> statuses = collectClientHelper.weatherPostBatch(Arrays.asList(
+				new WeatherRecord("BOS", "humidity", humidity),
+				new WeatherRecord("JFK", "TEMPERATURE", temperature),
+				new WeatherRecord("XYZP", "wind", _dp),
+				new WeatherRecord("JFK", "snow", _dp),
+				new WeatherRecord("JFK", "humidity", new DataPointBuilder(_dp).withMean(200).build()),
+				new WeatherRecord("JFK", "wind", null)));
+
+		assertEquals(6, statuses.size());
+		assertEquals(Response.Status.OK.getStatusCode(), statuses.get(0).getStatus());
+		assertEquals(Response.Status.OK.getStatusCode(), statuses.get(1).getStatus());
+		for (WeatherRecordStatus status : statuses.subList(2, 6))
+		{
+			assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), status.getStatus());
+			assertTrue(status.getMessage() != null);
+		}
+
+		AtmosphericInformation bos = queryClientHelper.weatherGet("BOS", 0).get(0);
+		assertEquals(_dp, bos.getWind());
+		assertEquals(humidity, bos.getHumidity());
+		assertEquals(temperature, queryClientHelper.weatherGet("JFK", 0).get(0).getTemperature());
+		assertEquals(1, queryClientHelper.historyGet("JFK", DataPointType.TEMPERATURE, Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+		Response response = target("/collect/weather/batch").request().post(Entity.entity("[{", MediaType.APPLICATION_JSON));
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+		response.close();
+	}
+
+	/**
+	 * Test /collect/weather/stream: records are applied in their order, invalid ones are skipped, and malformed
+	 * stream is reported along with the records applied before it
+	 */
+	@Test
+	public void testCollectWeatherStream()
+	{
+		List<WeatherRecord> records = new ArrayList<>();
+		for (int i = 0; i < 3000; i++)
+			records.add(new WeatherRecord("JFK", "humidity", new DataPointBuilder(_dp).withMean(i % 100).build()));
+		records.add(new WeatherRecord("XYZP", "wind", _dp));
+		records.add(new WeatherRecord("BOS", "snow", _dp));
+
+		IngestSummary summary = collectClientHelper.weatherPostStream(records);
+		assertTrue(summary.isComplete());
+		assertEquals(3002, summary.getReceived());
+		assertEquals(3000, summary.getAccepted());
+		assertEquals(2, summary.getRejected());
+		assertEquals(2, summary.getErrors().size());
+		assertTrue(summary.getErrors().get(0).startsWith("record 3001: "));
+		assertEquals(99, queryClientHelper.weatherGet("JFK", 0).get(0).getHumidity().getMean(), DELTA_FOR_COMPARE_DOUBLE);
+
+		String stream = "{\"iata\":\"EWR\",\"pointType\":\"wind\",\"dataPoint\":{\"mean\":5,\"count\":1}}\n{\"iata\":";
+		Response response = target("/collect/weather/stream").request().post(Entity.entity(stream, MediaType.APPLICATION_OCTET_STREAM));
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+		summary = new Gson().fromJson(response.readEntity(String.class), IngestSummary.class);
+		response.close();
+		assertFalse(summary.isComplete());
+		assertEquals(1, summary.getAccepted());
+		assertEquals(5, queryClientHelper.weatherGet("EWR", 0).get(0).getWind().getMean(), DELTA_FOR_COMPARE_DOUBLE);
+	}
+
 	/**
 	 * Test /collect/weather
 	 */
@@ -197,6 +405,21 @@ public class WeatherEndpointTest extends ConfiguredJerseyTest
 		assertList(new String[]{"BOS", "LED", "EWR", "MMU"}, collectClientHelper.airportsGet());
 	}
 
+	/**
+	 * Test /collect/airports/bulk, airports added during bulk load are found by the geographical search
+	 */
+	@Test
+	public void testCollectAirportsBulk()
+	{
+		collectClientHelper.airportsBulkBegin();
+		collectClientHelper.airportPost("PHL", 39.871944, -75.241111);
+		collectClientHelper.weatherPost("PHL", DataPointType.WIND, _dp);
+		assertEquals(2, queryClientHelper.weatherGet("PHL", 500).size());
+		collectClientHelper.airportsBulkEnd();
+
+		assertEquals(2, queryClientHelper.weatherGet("PHL", 500).size());
+	}
+
 	/**
 	 * Test /collect/weather fail due to incorrect data
 	 */
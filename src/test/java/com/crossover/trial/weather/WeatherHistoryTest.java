@@ -0,0 +1,221 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.airport.AirportDatabaseMemory;
+import com.crossover.trial.weather.common.RandomDataFactory;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointBuilder;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.DownsampledHistory;
+import com.crossover.trial.weather.data.RollupDataPoint;
+import com.crossover.trial.weather.data.TimedDataPoint;
+import com.crossover.trial.weather.history.CompressedBlock;
+import com.crossover.trial.weather.history.WeatherHistory;
+import com.crossover.trial.weather.history.WeatherHistoryMemory;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing data point history storage
+ */
+public class WeatherHistoryTest
+{
+	private static final int CAPACITY = 10;
+
+	private static final long MS_IN_ONE_MINUTE = 60 * 1000;
+
+	private static final long MS_IN_ONE_DAY = 24 * 60 * MS_IN_ONE_MINUTE;
+
+	/**
+	 * Ring keeps the latest data points only, in the order they were added
+	 */
+	@Test
+	public void testRingOverflow()
+	{
+		WeatherHistory weatherHistory = new WeatherHistoryMemory(CAPACITY);
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(new AirportData("JFK", 40.639751, -73.778925));
+
+		for (int i = 0; i < 25; i++)
+			weatherHistory.addDataPoint(airportData, DataPointType.PRESSURE, RandomDataFactory.createDataPoint(DataPointType.PRESSURE, i), 1000 + i);
+
+		List<TimedDataPoint> history = weatherHistory.getHistory(airportData, DataPointType.PRESSURE, Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(CAPACITY, history.size());
+		for (int i = 0; i < CAPACITY; i++)
+		{
+			assertEquals(1015 + i, history.get(i).getTime());
+			assertEquals(RandomDataFactory.createDataPoint(DataPointType.PRESSURE, 15 + i), history.get(i).getDataPoint());
+		}
+
+		history = weatherHistory.getHistory(airportData, DataPointType.PRESSURE, 1020, 1022);
+		assertEquals(3, history.size());
+		assertEquals(1020, history.get(0).getTime());
+		assertEquals(0, weatherHistory.getHistory(airportData, DataPointType.WIND, Long.MIN_VALUE, Long.MAX_VALUE).size());
+	}
+
+	/**
+	 * History is cleared with the airport and is not passed to another airport, which got its ordinal
+	 */
+	@Test
+	public void testClearHistory()
+	{
+		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		WeatherHistory weatherHistory = new WeatherHistoryMemory(CAPACITY);
+		AirportData bos = new AirportData("BOS", 42.364347, -71.005181);
+		airportDatabase.addAirport(bos);
+		weatherHistory.addDataPoint(bos, DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, 1), 1000);
+
+		weatherHistory.clearHistory(bos);
+		assertEquals(0, weatherHistory.getHistory(bos, DataPointType.WIND, Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+		/* History left after the removal is not passed to the airport, which reused the ordinal */
+		weatherHistory.addDataPoint(bos, DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, 1), 2000);
+		int ordinal = bos.ordinal();
+		airportDatabase.removeAirport(bos);
+		AirportData ewr = new AirportData("EWR", 40.6925, -74.168667);
+		airportDatabase.addAirport(ewr);
+		assertEquals(ordinal, ewr.ordinal());
+		assertEquals(0, weatherHistory.getHistory(ewr, DataPointType.WIND, Long.MIN_VALUE, Long.MAX_VALUE).size());
+		assertEquals(0, weatherHistory.getHistory(bos, DataPointType.WIND, Long.MIN_VALUE, Long.MAX_VALUE).size());
+	}
+
+	/**
+	 * Downsampled history is the finest one, which covers the range and fits the number of points
+	 */
+	@Test
+	public void testRollups()
+	{
+		WeatherHistory weatherHistory = new WeatherHistoryMemory(CAPACITY);
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(new AirportData("JFK", 40.639751, -73.778925));
+
+		/* Two data points a minute for an hour, means are numbers of the data points */
+		long start = 10 * MS_IN_ONE_DAY;
+		for (int i = 0; i < 120; i++)
+			weatherHistory.addDataPoint(airportData, DataPointType.PRESSURE, new DataPointBuilder().withMean(i).build(), start + i * 30 * 1000);
+
+		/* Ring is overwritten, so minutes are used */
+		DownsampledHistory history = weatherHistory.getDownsampledHistory(airportData, DataPointType.PRESSURE, Long.MIN_VALUE, Long.MAX_VALUE, 100);
+		assertEquals(MS_IN_ONE_MINUTE, history.getResolution());
+		assertEquals(60, history.getPoints().size());
+		assertEquals(new RollupDataPoint(start + MS_IN_ONE_MINUTE, 2, 3, 2.5, 2), history.getPoints().get(1));
+
+		history = weatherHistory.getDownsampledHistory(airportData, DataPointType.PRESSURE, Long.MIN_VALUE, Long.MAX_VALUE, 10);
+		assertEquals(60 * MS_IN_ONE_MINUTE, history.getResolution());
+		assertEquals(1, history.getPoints().size());
+		assertEquals(new RollupDataPoint(start, 0, 119, 59.5, 120), history.getPoints().get(0));
+
+		/* Recent data points are still in the ring */
+		history = weatherHistory.getDownsampledHistory(airportData, DataPointType.PRESSURE, start + 57 * MS_IN_ONE_MINUTE, Long.MAX_VALUE, 10);
+		assertEquals(0, history.getResolution());
+		assertEquals(6, history.getPoints().size());
+		assertEquals(new RollupDataPoint(start + 57 * MS_IN_ONE_MINUTE, 114, 114, 114, 1), history.getPoints().get(0));
+
+		assertEquals(0, weatherHistory.getDownsampledHistory(airportData, DataPointType.WIND, Long.MIN_VALUE, Long.MAX_VALUE, 10).getPoints().size());
+	}
+
+	/**
+	 * Compressed block gives back every field of the data points as is, including irregular times and special values
+	 */
+	@Test
+	public void testCompressedBlock() throws IOException
+	{
+		int size = 100;
+		long[] times = new long[size];
+		double[] means = new double[size];
+		int[] ints = new int[size * 4];
+		Random random = new Random(1);
+		for (int i = 0; i < size; i++)
+		{
+			times[i] = i == 0 ? 1_500_000_000_000L : times[i - 1] + (i % 10 == 0 ? -random.nextInt(100_000) : random.nextInt(1 << (i % 30)));
+			means[i] = i % 7 == 0 ? Double.NaN : i % 5 == 0 ? means[i - 1] : random.nextGaussian() * 100;
+			for (int j = 0; j < 4; j++)
+				ints[i * 4 + j] = i % 13 == 0 ? Integer.MIN_VALUE : random.nextInt();
+		}
+		means[1] = Double.MAX_VALUE;
+		means[2] = -0.0;
+
+		CompressedBlock block = CompressedBlock.compress(times, means, ints, size);
+		List<Integer> visited = new ArrayList<>();
+		block.visit(3, Long.MIN_VALUE, Long.MAX_VALUE, (time, mean, first, second, third, count) ->
+		{
+			int i = visited.size() + 3;
+			visited.add(i);
+			assertEquals(times[i], time);
+			assertEquals(Double.doubleToRawLongBits(means[i]), Double.doubleToRawLongBits(mean));
+			assertEquals(ints[i * 4], first);
+			assertEquals(ints[i * 4 + 1], second);
+			assertEquals(ints[i * 4 + 2], third);
+			assertEquals(ints[i * 4 + 3], count);
+		});
+		assertEquals(size - 3, visited.size());
+
+		/* Data points collected every minute with slowly changing values take a few bytes each */
+		for (int i = 0; i < size; i++)
+		{
+			times[i] = 1_500_000_000_000L + i * MS_IN_ONE_MINUTE + random.nextInt(3);
+			means[i] = 20 + i / 10;
+			for (int j = 0; j < 4; j++)
+				ints[i * 4 + j] = 10 * j + i / 20;
+		}
+		assertTrue(CompressedBlock.compress(times, means, ints, size).bytes() < size * 8);
+	}
+
+	/**
+	 * Only the capacity of the latest data points is visible, while many blocks are closed and dropped
+	 */
+	@Test
+	public void testCompressedHistory()
+	{
+		int capacity = 300;
+		WeatherHistory weatherHistory = new WeatherHistoryMemory(capacity);
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(new AirportData("JFK", 40.639751, -73.778925));
+
+		for (int i = 0; i < 1000; i++)
+			weatherHistory.addDataPoint(airportData, DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, i), i * MS_IN_ONE_MINUTE);
+
+		List<TimedDataPoint> history = weatherHistory.getHistory(airportData, DataPointType.WIND, Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(capacity, history.size());
+		for (int i = 0; i < capacity; i++)
+			assertEquals(new TimedDataPoint((700 + i) * MS_IN_ONE_MINUTE, RandomDataFactory.createDataPoint(DataPointType.WIND, 700 + i)), history.get(i));
+
+		history = weatherHistory.getHistory(airportData, DataPointType.WIND, 800 * MS_IN_ONE_MINUTE, 899 * MS_IN_ONE_MINUTE);
+		assertEquals(100, history.size());
+		assertEquals(800 * MS_IN_ONE_MINUTE, history.get(0).getTime());
+	}
+
+	/**
+	 * Readers never see partially written data points while the ring is overwritten
+	 */
+	@Test
+	public void testConcurrentReads() throws InterruptedException
+	{
+		WeatherHistory weatherHistory = new WeatherHistoryMemory(CAPACITY);
+		AirportData airportData = ConfiguredJerseyTest.registerAirport(new AirportData("JFK", 40.639751, -73.778925));
+
+		Thread writer = new Thread(() ->
+		{
+			for (int i = 0; i < 100000; i++)
+				weatherHistory.addDataPoint(airportData, DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, i), i);
+		});
+		writer.start();
+		while (writer.isAlive())
+		{
+			long previous = -1;
+			for (TimedDataPoint timedDataPoint : weatherHistory.getHistory(airportData, DataPointType.WIND, Long.MIN_VALUE, Long.MAX_VALUE))
+			{
+				DataPoint expected = RandomDataFactory.createDataPoint(DataPointType.WIND, (int) timedDataPoint.getTime());
+				assertEquals(expected, timedDataPoint.getDataPoint());
+				assertTrue(timedDataPoint.getTime() > previous);
+				previous = timedDataPoint.getTime();
+			}
+		}
+		writer.join();
+	}
+}
@@ -0,0 +1,274 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.airport.AirportAtmosphericInformation;
+import com.crossover.trial.weather.airport.AirportAtmosphericInformationMemory;
+import com.crossover.trial.weather.airport.AirportDatabase;
+import com.crossover.trial.weather.airport.AirportDatabaseMemory;
+import com.crossover.trial.weather.common.RandomDataFactory;
+import com.crossover.trial.weather.data.AirportData;
+import com.crossover.trial.weather.data.AtmosphericInformation;
+import com.crossover.trial.weather.data.AtmosphericInformationSnapshot;
+import com.crossover.trial.weather.data.DataPoint;
+import com.crossover.trial.weather.data.DataPointType;
+import com.crossover.trial.weather.data.TimedDataPoint;
+import com.crossover.trial.weather.wal.AirportAtmosphericInformationWal;
+import com.crossover.trial.weather.wal.AirportDatabaseWal;
+import com.crossover.trial.weather.wal.FsyncPolicy;
+import com.crossover.trial.weather.wal.WriteAheadLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Testing airports and atmospheric information recovered from the write-ahead log
+ */
+public class WriteAheadLogTest
+{
+	private static final int AIRPORTS_NUMBER = 200;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Logged changes are recovered with every fsync policy
+	 */
+	@Test
+	public void testRecovery() throws IOException
+	{
+		for (FsyncPolicy fsyncPolicy : FsyncPolicy.values())
+		{
+			Path directory = folder.newFolder().toPath();
+			AirportDatabase airportDatabase = new AirportDatabaseMemory();
+			AirportAtmosphericInformation airportAtmosphericInformation = new AirportAtmosphericInformationMemory();
+			WriteAheadLog writeAheadLog = open(directory, fsyncPolicy, airportDatabase, airportAtmosphericInformation);
+			change(new AirportDatabaseWal(airportDatabase, writeAheadLog), new AirportAtmosphericInformationWal(airportAtmosphericInformation, writeAheadLog), 0);
+			writeAheadLog.close();
+
+			checkRecovered(directory, airportDatabase, airportAtmosphericInformation);
+		}
+	}
+
+	/**
+	 * Snapshot replaces the older log segments, changes made after it are replayed over it
+	 */
+	@Test
+	public void testSnapshot() throws IOException
+	{
+		Path directory = folder.getRoot().toPath();
+		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		AirportAtmosphericInformation airportAtmosphericInformation = new AirportAtmosphericInformationMemory();
+		WriteAheadLog writeAheadLog = open(directory, FsyncPolicy.NONE, airportDatabase, airportAtmosphericInformation);
+		AirportDatabase loggedAirportDatabase = new AirportDatabaseWal(airportDatabase, writeAheadLog);
+		AirportAtmosphericInformation loggedAtmosphericInformation = new AirportAtmosphericInformationWal(airportAtmosphericInformation, writeAheadLog);
+
+		change(loggedAirportDatabase, loggedAtmosphericInformation, 0);
+		writeAheadLog.snapshot(airportDatabase, airportAtmosphericInformation);
+		change(loggedAirportDatabase, loggedAtmosphericInformation, 1);
+		writeAheadLog.snapshot(airportDatabase, airportAtmosphericInformation);
+		change(loggedAirportDatabase, loggedAtmosphericInformation, 2);
+		writeAheadLog.close();
+
+		assertEquals(2, getFiles(directory).size());
+		checkRecovered(directory, airportDatabase, airportAtmosphericInformation);
+	}
+
+	/**
+	 * Change is applied when its record is written already, and is not applied if the record can't be written
+	 */
+	@Test
+	public void testWriteBeforeApply() throws IOException
+	{
+		Path directory = folder.getRoot().toPath();
+		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		List<Long> loggedSizes = new ArrayList<>();
+		AirportAtmosphericInformation airportAtmosphericInformation = new AirportAtmosphericInformationMemory()
+		{
+			@Override
+			public void updateDataPoint(AirportData airportData, DataPointType type, DataPoint dataPoint)
+			{
+				loggedSizes.add(getLoggedSize(directory));
+				super.updateDataPoint(airportData, type, dataPoint);
+			}
+		};
+		WriteAheadLog writeAheadLog = open(directory, FsyncPolicy.ALWAYS, airportDatabase, airportAtmosphericInformation);
+		AirportAtmosphericInformation loggedAtmosphericInformation = new AirportAtmosphericInformationWal(airportAtmosphericInformation, writeAheadLog);
+		AirportData airportData = new AirportData("AAA", 10, 20);
+		airportDatabase.addAirport(airportData);
+
+		loggedAtmosphericInformation.updateDataPoint(airportData, DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, 1));
+		assertEquals(1, loggedSizes.size());
+		assertTrue(loggedSizes.get(0) > 0);
+
+		writeAheadLog.close();
+		try
+		{
+			loggedAtmosphericInformation.updateDataPoint(airportData, DataPointType.HUMIDITY, RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, 1));
+			fail("Change is applied without the record");
+		} catch (IllegalStateException e)
+		{
+			assertEquals(1, loggedSizes.size());
+			assertNull(airportAtmosphericInformation.getAtmosphericInformation(airportData).getHumidity());
+		}
+	}
+
+	/**
+	 * Data points are recovered with their original update times, from the snapshot as well as from the log
+	 */
+	@Test
+	public void testUpdateTimes() throws IOException, InterruptedException
+	{
+		Path directory = folder.getRoot().toPath();
+		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		AirportAtmosphericInformation airportAtmosphericInformation = new AirportAtmosphericInformationMemory();
+		WriteAheadLog writeAheadLog = open(directory, FsyncPolicy.NONE, airportDatabase, airportAtmosphericInformation);
+		AirportAtmosphericInformation loggedAtmosphericInformation = new AirportAtmosphericInformationWal(airportAtmosphericInformation, writeAheadLog);
+		change(new AirportDatabaseWal(airportDatabase, writeAheadLog), loggedAtmosphericInformation, 0);
+		writeAheadLog.snapshot(airportDatabase, airportAtmosphericInformation);
+		AirportData updated = airportDatabase.getAirportData("A001");
+		loggedAtmosphericInformation.updateDataPoint(updated, DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, 1));
+		writeAheadLog.close();
+
+		Thread.sleep(100);
+		long recoveryTime = System.currentTimeMillis();
+		AirportDatabase recoveredDatabase = new AirportDatabaseMemory();
+		AirportAtmosphericInformation recoveredStorage = new AirportAtmosphericInformationMemory();
+		new WriteAheadLog(directory, FsyncPolicy.NONE, 0).recover(recoveredDatabase, recoveredStorage);
+
+		for (String iata : airportDatabase.getAllAirportIata())
+			for (DataPointType type : DataPointType.values())
+			{
+				TimedDataPoint expected = airportAtmosphericInformation.getTimedDataPoint(airportDatabase.getAirportData(iata), type);
+				TimedDataPoint recovered = recoveredStorage.getTimedDataPoint(recoveredDatabase.getAirportData(iata), type);
+				if (expected == null)
+				{
+					assertNull(recovered);
+					continue;
+				}
+				assertTrue(recovered.getTime() < recoveryTime);
+				/* Logged change gets its time before the storage does */
+				if (updated.getIata().equals(iata) && type == DataPointType.WIND)
+					assertTrue(recovered.getTime() <= expected.getTime() && recovered.getTime() > expected.getTime() - 1000);
+				else
+					assertEquals(expected.getTime(), recovered.getTime());
+			}
+	}
+
+	/**
+	 * Recovery stops at the damaged record in the end of the log
+	 */
+	@Test
+	public void testTornTail() throws IOException
+	{
+		Path directory = folder.getRoot().toPath();
+		AirportDatabase airportDatabase = new AirportDatabaseMemory();
+		AirportAtmosphericInformation airportAtmosphericInformation = new AirportAtmosphericInformationMemory();
+		WriteAheadLog writeAheadLog = open(directory, FsyncPolicy.INTERVAL, airportDatabase, airportAtmosphericInformation);
+		change(new AirportDatabaseWal(airportDatabase, writeAheadLog), new AirportAtmosphericInformationWal(airportAtmosphericInformation, writeAheadLog), 0);
+		writeAheadLog.close();
+
+		Path segment = getFiles(directory).get(0);
+		Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+		checkRecovered(directory, airportDatabase, airportAtmosphericInformation);
+	}
+
+	private static WriteAheadLog open(Path directory, FsyncPolicy fsyncPolicy, AirportDatabase airportDatabase,
+									  AirportAtmosphericInformation airportAtmosphericInformation) throws IOException
+	{
+		WriteAheadLog writeAheadLog = new WriteAheadLog(directory, fsyncPolicy, 10);
+		writeAheadLog.recover(airportDatabase, airportAtmosphericInformation);
+		writeAheadLog.start();
+		return writeAheadLog;
+	}
+
+	/* Add airports, update their atmospheric information, then remove and clear some of them */
+	private static void change(AirportDatabase airportDatabase, AirportAtmosphericInformation airportAtmosphericInformation, int round)
+	{
+		for (int i = 0; i < AIRPORTS_NUMBER; i++)
+		{
+			AirportData airportData = new AirportData(String.format("A%03d", i), i * 0.1 + round, i * 0.2);
+			airportDatabase.addAirport(airportData);
+			for (DataPointType type : DataPointType.values())
+				airportAtmosphericInformation.updateDataPoint(airportData, type, RandomDataFactory.createDataPoint(type, i + round));
+			if (i % 5 == 0)
+				airportAtmosphericInformation.updateAtmosphericInformation(airportData,
+						AtmosphericInformationSnapshot.EMPTY.with(DataPointType.WIND, RandomDataFactory.createDataPoint(DataPointType.WIND, -i)));
+			if (i % 3 == 0)
+				airportAtmosphericInformation.updateDataPoints(airportData,
+						AtmosphericInformationSnapshot.EMPTY.with(DataPointType.HUMIDITY, RandomDataFactory.createDataPoint(DataPointType.HUMIDITY, -i)));
+		}
+		for (int i = round; i < AIRPORTS_NUMBER; i += 7)
+		{
+			AirportData airportData = airportDatabase.getAirportData(String.format("A%03d", i));
+			airportAtmosphericInformation.clearAtmosphericInformation(airportData);
+			if (i % 2 == 0)
+				airportDatabase.removeAirport(airportData);
+		}
+	}
+
+	/* State recovered from the log matches the one it was logged from */
+	private static void checkRecovered(Path directory, AirportDatabase airportDatabase, AirportAtmosphericInformation airportAtmosphericInformation)
+			throws IOException
+	{
+		AirportDatabase recoveredDatabase = new AirportDatabaseMemory();
+		AirportAtmosphericInformation recoveredStorage = new AirportAtmosphericInformationMemory();
+		new WriteAheadLog(directory, FsyncPolicy.NONE, 0).recover(recoveredDatabase, recoveredStorage);
+
+		assertEquals(new HashSet<>(airportDatabase.getAllAirportIata()), new HashSet<>(recoveredDatabase.getAllAirportIata()));
+		for (String iata : airportDatabase.getAllAirportIata())
+		{
+			AirportData expected = airportDatabase.getAirportData(iata);
+			AirportData recovered = recoveredDatabase.getAirportData(iata);
+			assertEquals(expected.getLatitude(), recovered.getLatitude(), 0);
+			assertEquals(expected.getLongitude(), recovered.getLongitude(), 0);
+
+			AtmosphericInformation expectedInformation = airportAtmosphericInformation.getAtmosphericInformation(expected);
+			AtmosphericInformation recoveredAtmosphericInformation = recoveredStorage.getAtmosphericInformation(recovered);
+			if (expectedInformation == null)
+			{
+				assertNull(recoveredAtmosphericInformation);
+				continue;
+			}
+			for (DataPointType type : DataPointType.values())
+				assertEquals(AtmosphericInformationSnapshot.of(expectedInformation).get(type),
+						AtmosphericInformationSnapshot.of(recoveredAtmosphericInformation).get(type));
+		}
+	}
+
+	private static long getLoggedSize(Path directory)
+	{
+		try
+		{
+			long size = 0;
+			for (Path file : getFiles(directory))
+				size += Files.size(file);
+			return size;
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static List<Path> getFiles(Path directory) throws IOException
+	{
+		try (Stream<Path> files = Files.list(directory))
+		{
+			return files.sorted().collect(Collectors.toList());
+		}
+	}
+}